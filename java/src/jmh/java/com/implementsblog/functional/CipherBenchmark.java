@@ -0,0 +1,157 @@
+package com.implementsblog.functional;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Benchmarks the Caesar, Atbash, Affine and Vigen&egrave;re ciphers over
+ * texts of different sizes and kinds of characters, comparing the per-call
+ * static methods with the keyed {@link Cipher} instances and their buffer
+ * overloads.
+ * <p>
+ * Run with {@code gradle jmh}, which adds the GC profiler to report
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark
+{
+    /**
+     * The ciphers being benchmarked, each with a fixed key.
+     */
+    public enum Algorithm
+    {
+        CAESAR(
+                CaesarCipher.withShift(3),
+                text -> CaesarCipher.encrypt(text, 3)),
+        ATBASH(
+                AtbashCipher.instance(),
+                AtbashCipher::encrypt),
+        AFFINE(
+                AffineCipher.of(Key1._5, Key2._8),
+                text -> AffineCipher.encrypt(text, Key1._5, Key2._8)),
+        VIGENERE(
+                VigenereCipher.withKey("lemon"),
+                text -> VigenereCipher.encrypt(text, "lemon")),
+        AUTOKEY(
+                VigenereCipher.autokey("queenly"),
+                text -> VigenereCipher.autokey("queenly").encrypt(text)),
+        COMPOSED(
+                AtbashCipher.instance()
+                        .andThen(CaesarCipher.withShift(3))
+                        .andThen(AffineCipher.of(Key1._5, Key2._8)),
+                text -> AffineCipher.encrypt(
+                        CaesarCipher.encrypt(AtbashCipher.encrypt(text), 3),
+                        Key1._5,
+                        Key2._8));
+
+        private final Cipher cipher;
+        private final UnaryOperator<String> perCall;
+
+        Algorithm(final Cipher cipher, final UnaryOperator<String> perCall)
+        {
+            this.cipher = cipher;
+            this.perCall = perCall;
+        }
+    }
+
+    @Param({
+            "CAESAR",
+            "ATBASH",
+            "AFFINE",
+            "VIGENERE",
+            "AUTOKEY",
+            "COMPOSED" })
+    public Algorithm algorithm;
+
+    /**
+     * The number of chars, from 16 B to 16 MB.
+     */
+    @Param({ "16", "1024", "65536", "1048576", "16777216" })
+    public int size;
+
+    @Param({ "ASCII", "MIXED_CASE", "NON_ASCII", "SURROGATES" })
+    public Texts.Mix mix;
+
+    private Cipher cipher;
+    private Cipher parallel;
+    private String text;
+    private char[] chars;
+    private char[] charDestination;
+    private byte[] bytes;
+    private byte[] byteDestination;
+
+    @Setup
+    public void setUp()
+    {
+        cipher = algorithm.cipher;
+        parallel = cipher.parallel(ParallelCipher.MINIMUM_SEGMENT_SIZE);
+        text = mix.generate(size);
+        chars = text.toCharArray();
+        charDestination = new char[chars.length];
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+        byteDestination = new byte[bytes.length];
+    }
+
+    /**
+     * The static methods, which derive everything from the key on each call.
+     */
+    @Benchmark
+    public String perCall()
+    {
+        return algorithm.perCall.apply(text);
+    }
+
+    @Benchmark
+    public String instance()
+    {
+        return cipher.encrypt(text);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String instanceMultiThreaded()
+    {
+        return cipher.encrypt(text);
+    }
+
+    @Benchmark
+    public String parallel()
+    {
+        return parallel.encrypt(text);
+    }
+
+    @Benchmark
+    public char[] charBuffer()
+    {
+        cipher.encrypt(chars, 0, charDestination, 0, chars.length);
+        return charDestination;
+    }
+
+    @Benchmark
+    public byte[] utf8()
+    {
+        cipher.encrypt(bytes, 0, byteDestination, 0, bytes.length);
+        return byteDestination;
+    }
+}
@@ -0,0 +1,60 @@
+package com.implementsblog.functional;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks recovering Caesar and Affine keys from cipher texts of different
+ * lengths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptanalysisBenchmark
+{
+    /**
+     * The number of chars, from 64 B to 16 MB.
+     */
+    @Param({ "64", "4096", "1048576", "16777216" })
+    public int size;
+
+    private String caesarText;
+    private String affineText;
+
+    @Setup
+    public void setUp()
+    {
+        final String text = Texts.Mix.MIXED_CASE.generate(size);
+        caesarText = CaesarCipher.encrypt(text, 11);
+        affineText = AffineCipher.encrypt(text, Key1._7, Key2._20);
+    }
+
+    @Benchmark
+    public List<?> caesar()
+    {
+        return Cryptanalysis.caesar(caesarText);
+    }
+
+    @Benchmark
+    public List<?> affine()
+    {
+        return Cryptanalysis.affine(affineText);
+    }
+}
@@ -0,0 +1,86 @@
+package com.implementsblog.functional;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Caesar cipher over different numbers of custom code point
+ * ranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeBenchmark
+{
+    /**
+     * The number of ranges, each 16 code points wide, spread over the BMP.
+     */
+    @Param({ "1", "8", "64", "256" })
+    public int rangeCount;
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    private SortedSet<Integer> codePointRangeSet;
+    private CodePointRanges codePointRanges;
+    private Cipher cipher;
+    private String text;
+
+    @Setup
+    public void setUp()
+    {
+        codePointRangeSet = new TreeSet<>();
+        final CodePointRanges.Builder builder = CodePointRanges.builder();
+        final int spacing = 0xD000 / rangeCount;
+        for (int i = 0; i < rangeCount; i++)
+        {
+            codePointRangeSet.add(0x20 + i * spacing);
+            codePointRangeSet.add(0x20 + i * spacing + 15);
+            builder.add(0x20 + i * spacing, 0x20 + i * spacing + 15);
+        }
+        codePointRanges = builder.build();
+        cipher = CaesarCipher.withShiftInRanges(3, codePointRanges);
+        text = Texts.Mix.NON_ASCII.generate(size);
+    }
+
+    /**
+     * The static method, which validates the boxed ranges and builds one
+     * mapping function per range on each call.
+     */
+    @Benchmark
+    public String perCallSortedSet()
+    {
+        return CaesarCipher.encrypt(text, 3, codePointRangeSet);
+    }
+
+    /**
+     * The static method, with ranges that were validated once.
+     */
+    @Benchmark
+    public String perCall()
+    {
+        return CaesarCipher.encryptInRanges(text, 3, codePointRanges);
+    }
+
+    @Benchmark
+    public String instance()
+    {
+        return cipher.encrypt(text);
+    }
+}
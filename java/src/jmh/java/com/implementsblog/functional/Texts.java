@@ -0,0 +1,109 @@
+package com.implementsblog.functional;
+
+import java.util.Random;
+
+/**
+ * Generates the texts that benchmarks encrypt.
+ */
+public final class Texts
+{
+    /**
+     * The kinds of characters a text is made of.
+     */
+    public enum Mix
+    {
+        /**
+         * Printable ASCII characters, only some of which are letters.
+         */
+        ASCII
+        {
+            @Override
+            int codePoint(final Random random)
+            {
+                return ' ' + random.nextInt('~' - ' ' + 1);
+            }
+        },
+
+        /**
+         * Upper and lower case ASCII letters, all of which are encrypted.
+         */
+        MIXED_CASE
+        {
+            @Override
+            int codePoint(final Random random)
+            {
+                return (random.nextBoolean() ? 'a' : 'A') + random.nextInt(26);
+            }
+        },
+
+        /**
+         * Half ASCII letters, half Latin-1, Greek, Cyrillic and CJK.
+         */
+        NON_ASCII
+        {
+            private final int[] ranges = {
+                    0xC0, 0xFF, 0x391, 0x3C9, 0x410, 0x44F, 0x4E00, 0x9FFF };
+
+            @Override
+            int codePoint(final Random random)
+            {
+                if (random.nextBoolean())
+                {
+                    return MIXED_CASE.codePoint(random);
+                }
+                final int range = 2 * random.nextInt(ranges.length / 2);
+                return ranges[range]
+                        + random.nextInt(ranges[range + 1] - ranges[range] + 1);
+            }
+        },
+
+        /**
+         * Mostly supplementary code points (emoji and mathematical
+         * alphanumerics), encoded as surrogate pairs.
+         */
+        SURROGATES
+        {
+            @Override
+            int codePoint(final Random random)
+            {
+                switch (random.nextInt(4))
+                {
+                    case 0:
+                        return MIXED_CASE.codePoint(random);
+                    case 1:
+                        return 0x1F600 + random.nextInt(0x50);
+                    default:
+                        return 0x1D400 + random.nextInt(0x400);
+                }
+            }
+        };
+
+        abstract int codePoint(Random random);
+
+        /**
+         * @param length the number of chars in the text
+         *
+         * @return the same text for the same {@code length}.
+         */
+        String generate(final int length)
+        {
+            final Random random = new Random(length);
+            final StringBuilder text = new StringBuilder(length);
+            while (text.length() < length)
+            {
+                final int codePoint = codePoint(random);
+                if (text.length() + Character.charCount(codePoint) <= length)
+                {
+                    text.appendCodePoint(codePoint);
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    private Texts()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
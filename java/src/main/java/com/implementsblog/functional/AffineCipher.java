@@ -1,5 +1,6 @@
 package com.implementsblog.functional;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.IntUnaryOperator;
 
 /**
@@ -14,6 +15,11 @@ import java.util.function.IntUnaryOperator;
  * it only encodes upper and lower case ASCII characters (a-z and A-Z). What it
  * lacks in flexibility it gains in type-safety: all possible key values are
  * enumerated as {@link Key1} and {@link Key2}.
+ * <p>
+ * The generalised functions, e.g., {@link #withKeys(int, int,
+ * CodePointRanges)}, encode any {@link CodePointRanges}, e.g., digits, taking
+ * each range of {@code m} code points modulo {@code m}. Their {@code key1}
+ * must be coprime with the size of every range, or it can't be decrypted.
  */
 public final class AffineCipher
 {
@@ -44,7 +50,7 @@ public final class AffineCipher
             this.modularMultiplicativeInverse = modularMultiplicativeInverse;
         }
 
-        private int getValue()
+        int getValue()
         {
             return value;
         }
@@ -71,12 +77,50 @@ public final class AffineCipher
             this.value = value;
         }
 
-        private int getValue()
+        int getValue()
         {
             return value;
         }
     }
 
+    private static final int KEY2_COUNT = Key2.values().length;
+
+    /**
+     * Lazily created instances of {@link #of(Key1, Key2)}, indexed by {@code
+     * key1.ordinal() * KEY2_COUNT + key2.ordinal()}.
+     */
+    private static final AtomicReferenceArray<Cipher> INSTANCES =
+            new AtomicReferenceArray<>(Key1.values().length * KEY2_COUNT);
+
+    /**
+     * Returns the Affine cipher with the given keys. The modular inverse
+     * arithmetic needed to decrypt is done once, and the returned instances
+     * are cached.
+     *
+     * @param key1 the first key
+     * @param key2 the second key
+     *
+     * @return never {@code null}, and always the same instance for the same
+     *     keys.
+     */
+    public static Cipher of(Key1 key1, Key2 key2)
+    {
+        final int index = key1.ordinal() * KEY2_COUNT + key2.ordinal();
+        final Cipher cipher = INSTANCES.get(index);
+        if (cipher != null)
+        {
+            return cipher;
+        }
+
+        INSTANCES.compareAndSet(
+                index,
+                null,
+                new TableCipher(
+                        compileEncryption(key1, key2),
+                        compileDecryption(key1, key2)));
+        return INSTANCES.get(index);
+    }
+
     /**
      * Encrypts the given {@code text}.
      *
@@ -106,6 +150,298 @@ public final class AffineCipher
         return apply(cipherText, mmi, - mmi * key2.getValue());
     }
 
+    /**
+     * Compiles the encryption function for the given keys into a {@link
+     * SubstitutionTable}; {@code compileEncryption(k1, k2).apply(text)} is
+     * equivalent to {@code encrypt(text, k1, k2)}.
+     *
+     * @param key1 the first key
+     * @param key2 the second key
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compileEncryption(Key1 key1, Key2 key2)
+    {
+        return compile(key1.getValue(), key2.getValue());
+    }
+
+    /**
+     * Compiles the decryption function for the given keys into a {@link
+     * SubstitutionTable}; {@code compileDecryption(k1, k2).apply(cipherText)}
+     * is equivalent to {@code decrypt(cipherText, k1, k2)}.
+     *
+     * @param key1 the {@link Key1} instance used to encrypt the original text
+     * @param key2 the {@link Key2} instance used to encrypt the original text
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compileDecryption(Key1 key1, Key2 key2)
+    {
+        final int mmi = key1.getModularMultiplicativeInverse();
+        return compile(mmi, - mmi * key2.getValue());
+    }
+
+    /**
+     * Encrypts the given {@code text}, for the code points within the given
+     * {@code codePointRanges}; all other code points remain the same.
+     *
+     * @param text the text to encrypt
+     * @param key1 the first key, coprime with the size of every range
+     * @param key2 the second key
+     * @param codePointRanges the ranges of code points to encrypt, each
+     *     modulo its own size
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key1} shares a factor with
+     *     the size of any of the ranges.
+     */
+    public static String encrypt(
+            final String text,
+            final int key1,
+            final int key2,
+            final CodePointRanges codePointRanges)
+    {
+        checkKey1(key1, codePointRanges);
+        return SubstitutionCipher.encrypt(
+                text,
+                (lowest, highest) -> affine(lowest, highest, key1, key2),
+                codePointRanges);
+    }
+
+    /**
+     * Decrypts the given {@code cipherText}, as encrypted by {@link
+     * #encrypt(String, int, int, CodePointRanges)}.
+     *
+     * @param cipherText the cipher text to decrypt
+     * @param key1 the first key used to encrypt the original text
+     * @param key2 the second key used to encrypt the original text
+     * @param codePointRanges the ranges used to encrypt the original text
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key1} shares a factor with
+     *     the size of any of the ranges.
+     */
+    public static String decrypt(
+            final String cipherText,
+            final int key1,
+            final int key2,
+            final CodePointRanges codePointRanges)
+    {
+        checkKey1(key1, codePointRanges);
+        return SubstitutionCipher.encrypt(
+                cipherText,
+                (lowest, highest) -> inverseAffine(lowest, highest, key1, key2),
+                codePointRanges);
+    }
+
+    /**
+     * Compiles the encryption function for the given keys and ranges into a
+     * {@link SubstitutionTable}; {@code compileEncryption(k1, k2,
+     * r).apply(text)} is equivalent to {@code encrypt(text, k1, k2, r)}.
+     *
+     * @param key1 the first key, coprime with the size of every range
+     * @param key2 the second key
+     * @param codePointRanges the ranges of code points to encrypt
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key1} shares a factor with
+     *     the size of any of the ranges.
+     */
+    public static SubstitutionTable compileEncryption(
+            final int key1,
+            final int key2,
+            final CodePointRanges codePointRanges)
+    {
+        checkKey1(key1, codePointRanges);
+        return SubstitutionCipher.compile(
+                (lowest, highest) -> affine(lowest, highest, key1, key2),
+                codePointRanges);
+    }
+
+    /**
+     * Compiles the decryption function for the given keys and ranges into a
+     * {@link SubstitutionTable}; {@code compileDecryption(k1, k2,
+     * r).apply(cipherText)} is equivalent to {@code decrypt(cipherText, k1,
+     * k2, r)}.
+     * <p>
+     * The modular inverse of {@code key1} is computed once per range, as the
+     * table is compiled, so the table decrypts as cheaply as the encryption
+     * table encrypts.
+     *
+     * @param key1 the first key used to encrypt the original text
+     * @param key2 the second key used to encrypt the original text
+     * @param codePointRanges the ranges used to encrypt the original text
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key1} shares a factor with
+     *     the size of any of the ranges.
+     */
+    public static SubstitutionTable compileDecryption(
+            final int key1,
+            final int key2,
+            final CodePointRanges codePointRanges)
+    {
+        checkKey1(key1, codePointRanges);
+        return SubstitutionCipher.compile(
+                (lowest, highest) -> inverseAffine(lowest, highest, key1, key2),
+                codePointRanges);
+    }
+
+    /**
+     * Returns the Affine cipher with the given keys, for the code points
+     * within the given {@code codePointRanges}, e.g., {@code withKeys(7, 3,
+     * CodePointRanges.of('0', '9'))} encrypts digits to digits.
+     * <p>
+     * Unlike {@link #of(Key1, Key2)}, the returned instance is not cached;
+     * hold on to it for as long as it's needed.
+     *
+     * @param key1 the first key, coprime with the size of every range
+     * @param key2 the second key
+     * @param codePointRanges the ranges of code points to encrypt, each
+     *     modulo its own size
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key1} shares a factor with
+     *     the size of any of the ranges.
+     */
+    public static Cipher withKeys(
+            final int key1,
+            final int key2,
+            final CodePointRanges codePointRanges)
+    {
+        return new TableCipher(
+                compileEncryption(key1, key2, codePointRanges),
+                compileDecryption(key1, key2, codePointRanges));
+    }
+
+    /**
+     * Computes the modular multiplicative inverse of {@code key1}, with the
+     * extended Euclidean algorithm.
+     *
+     * @param key1 the number to invert; may be negative, or at least {@code
+     *     modulus}
+     * @param modulus the size of a range; positive
+     *
+     * @return the {@code i} in {@code [0, modulus)} for which {@code key1 * i
+     *     % modulus == 1} (or {@code 0}, if {@code modulus == 1}).
+     *
+     * @throws IllegalArgumentException if {@code key1} and {@code modulus}
+     *     aren't coprime.
+     */
+    static int inverse(final int key1, final int modulus)
+    {
+        int remainder = modulus;
+        int nextRemainder = Math.floorMod(key1, modulus);
+        int coefficient = 0;
+        int nextCoefficient = 1;
+        while (nextRemainder != 0)
+        {
+            final int quotient = remainder / nextRemainder;
+
+            final int r = remainder - quotient * nextRemainder;
+            remainder = nextRemainder;
+            nextRemainder = r;
+
+            final int c = coefficient - quotient * nextCoefficient;
+            coefficient = nextCoefficient;
+            nextCoefficient = c;
+        }
+
+        if (remainder != 1)
+        {
+            throw new IllegalArgumentException(
+                    "key1 must be coprime with the size of every range, but"
+                            + " gcd(" + key1 + ", " + modulus + ") = "
+                            + remainder);
+        }
+        return Math.floorMod(coefficient, modulus);
+    }
+
+    /**
+     * Checks that {@code key1} has an inverse modulo the size of each range,
+     * before any table is built.
+     */
+    private static void checkKey1(
+            final int key1,
+            final CodePointRanges codePointRanges)
+    {
+        for (int range = 0; range < codePointRanges.size(); range++)
+        {
+            inverse(
+                    key1,
+                    codePointRanges.highest(range)
+                            - codePointRanges.lowest(range) + 1);
+        }
+    }
+
+    /**
+     * Curries a range of code points and the keys, returning the affine
+     * function of the range; unlike {@link #shift(int, int, int, int)}, the
+     * keys may be any {@code int}, and the range any size.
+     *
+     * @param lowest Lowest code point in the range, inclusive
+     * @param highest Highest code point in the range, inclusive
+     *
+     * @return a function that maps a code point {@code c} within the range to
+     *     {@code key1 * c + key2 (mod size)}, relative to {@code lowest}.
+     */
+    private static IntUnaryOperator affine(
+            final int lowest,
+            final int highest,
+            final int key1,
+            final int key2)
+    {
+        final int modulus = highest - lowest + 1;
+        final long multiplier = Math.floorMod(key1, modulus);
+        final long offset = Math.floorMod(key2, modulus);
+        return codePoint
+                -> lowest <= codePoint && codePoint <= highest
+                ? lowest + (int) ((multiplier * (codePoint - lowest) + offset)
+                        % modulus)
+                : codePoint;
+    }
+
+    /**
+     * Curries a range of code points and the keys, returning the inverse of
+     * {@link #affine(int, int, int, int)}: the affine function with keys
+     * {@code inverse(key1)} and {@code -inverse(key1) * key2}.
+     */
+    private static IntUnaryOperator inverseAffine(
+            final int lowest,
+            final int highest,
+            final int key1,
+            final int key2)
+    {
+        final int modulus = highest - lowest + 1;
+        final int inverse = inverse(key1, modulus);
+        return affine(
+                lowest,
+                highest,
+                inverse,
+                (int) Math.floorMod(
+                        -(long) inverse * Math.floorMod(key2, modulus),
+                        (long) modulus));
+    }
+
+    /**
+     * Generic Affine function, compiled into a table.
+     *
+     * @param x key 1
+     * @param y key 2
+     *
+     * @return never {@code null}.
+     */
+    private static SubstitutionTable compile(int x, int y)
+    {
+        return SubstitutionCipher.compile(
+                (lowest, highest) -> shift(lowest, highest, x, y));
+    }
+
     /**
      * Generic Affine function.
      *
@@ -117,15 +453,9 @@ public final class AffineCipher
      */
     private static String apply(String text, int x, int y)
     {
-        return text
-                .chars()
-                .map(shift('a', 'z', x, y))
-                .map(shift('A', 'Z', x, y))
-                .collect(
-                        StringBuilder::new,
-                        StringBuilder::appendCodePoint,
-                        StringBuilder::append)
-                .toString();
+        return SubstitutionCipher.encrypt(
+                text,
+                (lowest, highest) -> shift(lowest, highest, x, y));
     }
 
     /**
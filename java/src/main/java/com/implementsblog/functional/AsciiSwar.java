@@ -0,0 +1,200 @@
+package com.implementsblog.functional;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Substitutes bytes eight at a time, with arithmetic on the byte lanes of a
+ * {@code long} (SIMD within a register), for tables whose only substitutions
+ * are a rotation of [a-z] and a rotation of [A-Z], each optionally reversed
+ * first: the Caesar and Atbash ciphers, and any composition of them.
+ * <p>
+ * Bytes outside of ASCII are never substituted, so this only applies to
+ * tables that don't substitute non-ASCII code points.
+ */
+final class AsciiSwar
+{
+    private static final int ALPHABET_SIZE = 26;
+
+    /**
+     * A {@code 1} in every byte lane.
+     */
+    private static final long ONES = 0x0101010101010101L;
+
+    /**
+     * The high bit of every byte lane.
+     */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final Lane lower;
+    private final Lane upper;
+
+    private AsciiSwar(final Lane lower, final Lane upper)
+    {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Recognises the substitution of the ASCII characters in {@code ascii}.
+     *
+     * @param ascii the substitution of each ASCII character, indexed by byte
+     *
+     * @return {@code null} if {@code ascii} substitutes anything other than
+     *     [a-z] and [A-Z], or substitutes them other than by a rotation of
+     *     each (optionally reversed first).
+     */
+    static AsciiSwar of(final byte[] ascii)
+    {
+        for (int c = 0; c < ascii.length; c++)
+        {
+            if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z') && ascii[c] != c)
+            {
+                return null;
+            }
+        }
+
+        final Lane lower = Lane.of(ascii, 'a', 'z');
+        final Lane upper = Lane.of(ascii, 'A', 'Z');
+        return lower == null || upper == null
+                ? null
+                : new AsciiSwar(lower, upper);
+    }
+
+    /**
+     * Substitutes {@code length} bytes of {@code source}, from {@code
+     * sourceIndex}, into {@code destination}, from {@code destinationIndex},
+     * eight bytes at a time, until fewer than eight remain; neither position
+     * is changed.
+     * <p>
+     * {@code source} and {@code destination} may be the same buffer, as long
+     * as {@code destinationIndex <= sourceIndex}.
+     *
+     * @return the number of bytes substituted, a multiple of eight.
+     */
+    int apply(
+            final ByteBuffer source,
+            final int sourceIndex,
+            final ByteBuffer destination,
+            final int destinationIndex,
+            final int length)
+    {
+        final int words = length & -Long.BYTES;
+        for (int i = 0; i < words; i += Long.BYTES)
+        {
+            destination.putLong(
+                    destinationIndex + i,
+                    apply(source.getLong(sourceIndex + i)));
+        }
+        return words;
+    }
+
+    /**
+     * Substitutes each of the eight bytes of {@code word}.
+     */
+    long apply(final long word)
+    {
+        // Clear the high bits, so no lane can carry or borrow into the next
+        // one, and remember which lanes were ASCII.
+        final long ascii = ~word & HIGH_BITS;
+        final long low = word & ~HIGH_BITS;
+        final long lowerMask = lower.mask(low, ascii);
+        final long upperMask = upper.mask(low, ascii);
+        return word & ~(lowerMask | upperMask)
+                | lower.apply(low) & lowerMask
+                | upper.apply(low) & upperMask;
+    }
+
+    /**
+     * The substitution of one alphabet, [a-z] or [A-Z]: {@code c} is first
+     * reversed (to {@code lowest + highest - c}) if {@code reverse}, then
+     * rotated by {@code shift}.
+     */
+    private static final class Lane
+    {
+        private final long lowest;
+        private final long limit;
+        private final long reflection;
+        private final long shift;
+        private final long overflow;
+        private final boolean reverse;
+
+        private Lane(
+                final int lowest,
+                final int highest,
+                final boolean reverse,
+                final int shift)
+        {
+            this.lowest = lowest * ONES;
+            this.limit = (0x80 + highest) * ONES;
+            this.reflection = (lowest + highest) * ONES;
+            this.shift = shift * ONES;
+            this.overflow = (0x80 - highest - 1) * ONES;
+            this.reverse = reverse;
+        }
+
+        /**
+         * Recognises the substitution of [lowest, highest] in {@code ascii}
+         * as a rotation, or a reversal and a rotation.
+         *
+         * @return {@code null} if it's neither.
+         */
+        static Lane of(final byte[] ascii, final int lowest, final int highest)
+        {
+            final int first = ascii[lowest] - lowest;
+            final Lane rotation = new Lane(lowest, highest, false, first);
+            if (rotation.matches(ascii, lowest, highest))
+            {
+                return rotation;
+            }
+            final Lane reversal = new Lane(
+                    lowest,
+                    highest,
+                    true,
+                    (first + 1) % ALPHABET_SIZE);
+            return reversal.matches(ascii, lowest, highest) ? reversal : null;
+        }
+
+        private boolean matches(
+                final byte[] ascii,
+                final int lowest,
+                final int highest)
+        {
+            final int shift = (int) (this.shift & 0xFF);
+            for (int c = lowest; c <= highest; c++)
+            {
+                final int offset = reverse ? highest - c : c - lowest;
+                if (ascii[c] != lowest + (offset + shift) % ALPHABET_SIZE)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param low a word whose lanes are all below {@code 0x80}
+         * @param ascii the high bit of each lane that was originally ASCII
+         *
+         * @return {@code 0xFF} in each lane within this alphabet, {@code 0}
+         *     in each other lane.
+         */
+        long mask(final long low, final long ascii)
+        {
+            final long atLeastLowest = (low | HIGH_BITS) - lowest;
+            final long atMostHighest = limit - low;
+            return ((atLeastLowest & atMostHighest & ascii) >>> 7) * 0xFF;
+        }
+
+        /**
+         * Substitutes every lane of {@code low} as if it were within this
+         * alphabet; the lanes that aren't are garbage, but never carry or
+         * borrow into their neighbours.
+         */
+        long apply(final long low)
+        {
+            final long shifted = (reverse ? reflection - low : low) + shift;
+            final long wrapped = (shifted + overflow) & HIGH_BITS;
+            return shifted - (wrapped >>> 7) * ALPHABET_SIZE;
+        }
+    }
+}
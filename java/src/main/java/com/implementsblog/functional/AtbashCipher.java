@@ -1,6 +1,7 @@
 package com.implementsblog.functional;
 
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.IntUnaryOperator;
 
 /**
@@ -15,6 +16,12 @@ import java.util.function.IntUnaryOperator;
  */
 public final class AtbashCipher
 {
+    /**
+     * Lazily created by {@link #instance()}.
+     */
+    private static final AtomicReference<Cipher> INSTANCE =
+            new AtomicReference<>();
+
     /**
      * Applies the atbash cipher to the given {@code string}, switching
      * code points within the [a-z] and [A-Z] ranges, all other code points
@@ -41,6 +48,23 @@ public final class AtbashCipher
     public static String encrypt(
             final String string,
             final SortedSet<Integer> codePointRanges)
+    {
+        return encryptInRanges(string, CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Applies the atbash cipher to the given {@code string}, reversing each
+     * of the given {@code codePointRanges}; all code points outside of the
+     * ranges remain unchanged.
+     *
+     * @param string the string to encrypt
+     * @param codePointRanges the ranges of code points to reverse
+     *
+     * @return never {@code null}.
+     */
+    public static String encryptInRanges(
+            final String string,
+            final CodePointRanges codePointRanges)
     {
         return SubstitutionCipher.encrypt(
                 string,
@@ -48,6 +72,109 @@ public final class AtbashCipher
                 codePointRanges);
     }
 
+    /**
+     * Compiles the atbash cipher over the [a-z] and [A-Z] ranges into a
+     * {@link SubstitutionTable}; {@code compile().apply(string)} is equivalent
+     * to {@code encrypt(string)}.
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compile()
+    {
+        return SubstitutionCipher.compile(AtbashCipher::swap);
+    }
+
+    /**
+     * Compiles the atbash cipher over the given {@code codePointRanges} into a
+     * {@link SubstitutionTable}; {@code compile(r).apply(string)} is
+     * equivalent to {@code encrypt(string, r)}.
+     *
+     * @param codePointRanges the ranges of code points to reverse
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code codePointRanges} contains an
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
+     */
+    public static SubstitutionTable compile(
+            final SortedSet<Integer> codePointRanges)
+    {
+        return compileInRanges(CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Compiles the atbash cipher over the given {@code codePointRanges} into a
+     * {@link SubstitutionTable}; {@code compileInRanges(r).apply(string)} is
+     * equivalent to {@code encryptInRanges(string, r)}.
+     *
+     * @param codePointRanges the ranges of code points to reverse
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compileInRanges(
+            final CodePointRanges codePointRanges)
+    {
+        return SubstitutionCipher.compile(
+                AtbashCipher::swap,
+                codePointRanges);
+    }
+
+    /**
+     * Returns the atbash cipher over the [a-z] and [A-Z] ranges. Since the
+     * cipher is its own inverse, {@link Cipher#encrypt(String)} and {@link
+     * Cipher#decrypt(String)} are equivalent.
+     *
+     * @return never {@code null}, and always the same instance.
+     */
+    public static Cipher instance()
+    {
+        final Cipher cipher = INSTANCE.get();
+        if (cipher != null)
+        {
+            return cipher;
+        }
+
+        final SubstitutionTable table = compile();
+        INSTANCE.compareAndSet(null, new TableCipher(table, table));
+        return INSTANCE.get();
+    }
+
+    /**
+     * Returns the atbash cipher over the given {@code codePointRanges}.
+     * <p>
+     * Unlike {@link #instance()}, the returned instance is not cached; hold on
+     * to it for as long as it's needed.
+     *
+     * @param codePointRanges the ranges of code points to reverse
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code codePointRanges} contains an
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
+     */
+    public static Cipher withRanges(final SortedSet<Integer> codePointRanges)
+    {
+        return inRanges(CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Returns the atbash cipher over the given {@code codePointRanges}.
+     * <p>
+     * Unlike {@link #instance()}, the returned instance is not cached; hold on
+     * to it for as long as it's needed.
+     *
+     * @param codePointRanges the ranges of code points to reverse
+     *
+     * @return never {@code null}.
+     */
+    public static Cipher inRanges(final CodePointRanges codePointRanges)
+    {
+        final SubstitutionTable table = compileInRanges(codePointRanges);
+        return new TableCipher(table, table);
+    }
+
     /**
      * Returns a function that reverses a given code point over the range from
      * [lowest-highest] (inclusive).
@@ -0,0 +1,201 @@
+package com.implementsblog.functional;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Contains functions that encrypt many texts with one {@link Cipher}.
+ */
+final class Batches
+{
+    /**
+     * The number of texts encrypted by a single task.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    /**
+     * The number of batches of a stream that are encrypted ahead of the
+     * texts being consumed.
+     */
+    static final int WINDOW = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Encrypts each of the {@code texts} with the {@code cipher}, in batches
+     * of {@code batchSize} texts run on the {@code executor}, and waits for
+     * them to finish.
+     *
+     * @param cipher the cipher to encrypt with
+     * @param texts the texts to encrypt
+     * @param executor runs the batches
+     * @param batchSize the number of texts encrypted by a single task
+     *
+     * @return the encrypted texts, in the same order as {@code texts}.
+     *
+     * @throws RuntimeException the first exception thrown by a batch, if any.
+     */
+    static String[] encryptAll(
+            final Cipher cipher,
+            final String[] texts,
+            final Executor executor,
+            final int batchSize)
+    {
+        final String[] encrypted = new String[texts.length];
+        final CompletableFuture<?>[] batches =
+                new CompletableFuture<?>[(texts.length + batchSize - 1)
+                        / batchSize];
+
+        for (int batch = 0; batch < batches.length; batch++)
+        {
+            final int start = batch * batchSize;
+            final int end = Math.min(start + batchSize, texts.length);
+            batches[batch] = CompletableFuture.runAsync(
+                    () -> {
+                        for (int i = start; i < end; i++)
+                        {
+                            encrypted[i] = cipher.encrypt(texts[i]);
+                        }
+                    },
+                    executor);
+        }
+
+        try
+        {
+            CompletableFuture.allOf(batches).join();
+        }
+        catch (CompletionException e)
+        {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : e;
+        }
+        return encrypted;
+    }
+
+    /**
+     * Lazily encrypts each of the {@code texts} with the {@code cipher}, in
+     * batches of {@code batchSize} texts run on the {@code executor}.
+     * <p>
+     * Texts are only read from {@code texts} as the returned stream is
+     * consumed: at most {@code window} batches are read ahead and encrypted
+     * in parallel, and a batch is only read once the oldest one has been
+     * consumed. The encrypted texts are in the same order as {@code texts}.
+     * Closing the returned stream closes {@code texts}.
+     *
+     * @param cipher the cipher to encrypt with
+     * @param texts the texts to encrypt
+     * @param executor runs the batches
+     * @param batchSize the number of texts encrypted by a single task
+     * @param window the number of batches encrypted ahead
+     *
+     * @return never {@code null}.
+     */
+    static Stream<String> encryptAll(
+            final Cipher cipher,
+            final Stream<String> texts,
+            final Executor executor,
+            final int batchSize,
+            final int window)
+    {
+        final Iterator<String> source = texts.iterator();
+        final Iterator<String> encrypted = new Iterator<String>()
+        {
+            private final Queue<CompletableFuture<String[]>> batches =
+                    new ArrayDeque<>(window);
+            private String[] batch = new String[0];
+            private int index;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (index < batch.length)
+                {
+                    return true;
+                }
+                readAhead();
+                if (batches.isEmpty())
+                {
+                    return false;
+                }
+                batch = join(batches.remove());
+                index = 0;
+                readAhead();
+                return true;
+            }
+
+            @Override
+            public String next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                return batch[index++];
+            }
+
+            private void readAhead()
+            {
+                while (batches.size() < window && source.hasNext())
+                {
+                    final String[] plain = new String[batchSize];
+                    int size = 0;
+                    while (size < batchSize && source.hasNext())
+                    {
+                        plain[size++] = source.next();
+                    }
+                    final int length = size;
+                    batches.add(CompletableFuture.supplyAsync(
+                            () -> {
+                                final String[] result = new String[length];
+                                for (int i = 0; i < length; i++)
+                                {
+                                    result[i] = cipher.encrypt(plain[i]);
+                                }
+                                return result;
+                            },
+                            executor));
+                }
+            }
+        };
+
+        return StreamSupport
+                .stream(
+                        Spliterators.spliteratorUnknownSize(
+                                encrypted,
+                                Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(texts::close);
+    }
+
+    /**
+     * Waits for the given {@code batch}, rethrowing the exception it threw,
+     * if any.
+     */
+    private static String[] join(final CompletableFuture<String[]> batch)
+    {
+        try
+        {
+            return batch.join();
+        }
+        catch (CompletionException e)
+        {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : e;
+        }
+    }
+
+    private Batches()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
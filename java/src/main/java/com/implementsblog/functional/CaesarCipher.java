@@ -1,6 +1,7 @@
 package com.implementsblog.functional;
 
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.IntUnaryOperator;
 
 /**
@@ -12,6 +13,13 @@ import java.util.function.IntUnaryOperator;
  */
 public final class CaesarCipher
 {
+    /**
+     * Lazily created instances of {@link #withShift(int)}, indexed by shift
+     * amount.
+     */
+    private static final AtomicReferenceArray<Cipher> INSTANCES =
+            new AtomicReferenceArray<>('z' - 'a' + 1);
+
     /**
      * Applies a Caesar cipher to the given {@code string}, shifting by the
      * given {@code shiftAmount}. Only the characters [a-z] and [A-Z] will be
@@ -60,12 +68,36 @@ public final class CaesarCipher
      * @return an encrypted string.
      *
      * @throws IllegalArgumentException if {@code characterRanges} contains an
-     *     odd number of elements.
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
      */
     public static String encrypt(
             final String string,
             final int shiftAmount,
             final SortedSet<Integer> codePointRanges)
+    {
+        return encryptInRanges(
+                string,
+                shiftAmount,
+                CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Applies a Caesar cipher to the given {@code string}, shifting by the
+     * given {@code shiftAmount}, for the characters within the given {@code
+     * codePointRanges}; all other characters will remain the same.
+     *
+     * @param string Any string to encrypt
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int)}, within each of the ranges
+     * @param codePointRanges the ranges of code points to shift
+     *
+     * @return an encrypted string.
+     */
+    public static String encryptInRanges(
+            final String string,
+            final int shiftAmount,
+            final CodePointRanges codePointRanges)
     {
         return SubstitutionCipher.encrypt(
                 string,
@@ -74,10 +106,168 @@ public final class CaesarCipher
                 codePointRanges);
     }
 
+    /**
+     * Compiles a Caesar cipher that shifts by the given {@code shiftAmount}
+     * into a {@link SubstitutionTable}. Only the characters [a-z] and [A-Z]
+     * will be shifted, all other characters will remain the same.
+     * <p>
+     * {@code compile(k).apply(string)} is equivalent to {@code encrypt(string,
+     * k)}, but the table can be reused to encrypt any number of strings.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int)}
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compile(final int shiftAmount)
+    {
+        return SubstitutionCipher.compile(
+                (lowerCodePoint, upperCodePoint)
+                        -> shift(lowerCodePoint, upperCodePoint, shiftAmount));
+    }
+
+    /**
+     * Compiles a Caesar cipher that shifts by the given {@code shiftAmount},
+     * for the characters within the given {@code codePointRanges}, into a
+     * {@link SubstitutionTable}.
+     * <p>
+     * {@code compile(k, r).apply(string)} is equivalent to {@code
+     * encrypt(string, k, r)}, but the table can be reused to encrypt any
+     * number of strings.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int, SortedSet)}
+     * @param codePointRanges defines the range of code points to which the
+     *     shift is applied, as in {@link #encrypt(String, int, SortedSet)}
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code codePointRanges} contains an
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
+     */
+    public static SubstitutionTable compile(
+            final int shiftAmount,
+            final SortedSet<Integer> codePointRanges)
+    {
+        return compileInRanges(
+                shiftAmount,
+                CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Compiles a Caesar cipher that shifts by the given {@code shiftAmount},
+     * for the characters within the given {@code codePointRanges}, into a
+     * {@link SubstitutionTable}; {@code compileInRanges(k, r).apply(string)}
+     * is equivalent to {@code encryptInRanges(string, k, r)}.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int)}, within each of the ranges
+     * @param codePointRanges the ranges of code points to shift
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionTable compileInRanges(
+            final int shiftAmount,
+            final CodePointRanges codePointRanges)
+    {
+        return SubstitutionCipher.compile(
+                (lowerCodePoint, upperCodePoint) ->
+                        shift(lowerCodePoint, upperCodePoint, shiftAmount),
+                codePointRanges);
+    }
+
+    /**
+     * Returns a Caesar cipher that shifts by the given {@code shiftAmount}.
+     * Only the characters [a-z] and [A-Z] will be shifted, all other
+     * characters will remain the same.
+     * <p>
+     * There are only 26 distinct shifts, and the returned instances are
+     * cached, so e.g., {@code withShift(1)} and {@code withShift(27)} return
+     * the same instance.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int)}
+     *
+     * @return never {@code null}.
+     */
+    public static Cipher withShift(final int shiftAmount)
+    {
+        final int index = Math.floorMod(shiftAmount, INSTANCES.length());
+        final Cipher cipher = INSTANCES.get(index);
+        if (cipher != null)
+        {
+            return cipher;
+        }
+
+        INSTANCES.compareAndSet(
+                index,
+                null,
+                new TableCipher(compile(index), compile(-index)));
+        return INSTANCES.get(index);
+    }
+
+    /**
+     * Returns a Caesar cipher that shifts by the given {@code shiftAmount},
+     * for the characters within the given {@code codePointRanges}.
+     * <p>
+     * Unlike {@link #withShift(int)}, the returned instance is not cached;
+     * hold on to it for as long as it's needed.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int, SortedSet)}
+     * @param codePointRanges defines the range of code points to which the
+     *     shift is applied, as in {@link #encrypt(String, int, SortedSet)}
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code codePointRanges} contains an
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
+     */
+    public static Cipher withShift(
+            final int shiftAmount,
+            final SortedSet<Integer> codePointRanges)
+    {
+        return withShiftInRanges(
+                shiftAmount,
+                CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Returns a Caesar cipher that shifts by the given {@code shiftAmount},
+     * for the characters within the given {@code codePointRanges}.
+     * <p>
+     * Unlike {@link #withShift(int)}, the returned instance is not cached;
+     * hold on to it for as long as it's needed.
+     *
+     * @param shiftAmount the amount to shift by, as in {@link #encrypt(String,
+     *     int)}, within each of the ranges
+     * @param codePointRanges the ranges of code points to shift
+     *
+     * @return never {@code null}.
+     */
+    public static Cipher withShiftInRanges(
+            final int shiftAmount,
+            final CodePointRanges codePointRanges)
+    {
+        return new TableCipher(
+                compileInRanges(shiftAmount, codePointRanges),
+                SubstitutionCipher.compile(
+                        (lowerCodePoint, upperCodePoint) -> shift(
+                                lowerCodePoint,
+                                upperCodePoint,
+                                -Math.floorMod(
+                                        shiftAmount,
+                                        upperCodePoint - lowerCodePoint + 1)),
+                        codePointRanges));
+    }
+
     /**
      * Curries a character Range of code points and a shift amount, returning a
      * function that shifts a given character by that amount if it falls within
-     * the provided range.
+     * the provided range. The shift is reduced modulo the size of the range
+     * first, so that any {@code int} shifts without overflowing.
      *
      * @param lowest Lowest character in the range, inclusive
      * @param highest Highest character in the range, inclusive
@@ -92,10 +282,10 @@ public final class CaesarCipher
             final int shiftAmount)
     {
         final int distance = highest - lowest + 1;
+        final int shift = Math.floorMod(shiftAmount, distance);
         return (codePoint)
                 -> lowest <= codePoint && codePoint <= highest
-                ? ((codePoint - lowest + shiftAmount) % distance
-                        + distance) % distance + lowest
+                ? (codePoint - lowest + shift) % distance + lowest
                 : codePoint;
     }
 
@@ -0,0 +1,612 @@
+package com.implementsblog.functional;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * A keyed cipher: the key is fixed when the instance is created, so
+ * everything derived from the key is computed once and reused by every call.
+ * <p>
+ * Implementations are immutable and thread-safe, except for the ciphers
+ * returned by {@link #session()}, which carry their position in a text from
+ * one call to the next.
+ */
+public interface Cipher
+{
+    /**
+     * Encrypts the given {@code text}.
+     *
+     * @param text the text to encrypt
+     *
+     * @return never {@code null}.
+     */
+    String encrypt(String text);
+
+    /**
+     * Decrypts the given {@code cipherText}.
+     *
+     * @param cipherText the text to decrypt
+     *
+     * @return never {@code null}.
+     */
+    String decrypt(String cipherText);
+
+    /**
+     * Encrypts {@code length} chars of {@code source}, starting at {@code
+     * sourceOffset}, into {@code destination}, starting at {@code
+     * destinationOffset}, without allocating.
+     * <p>
+     * {@code source} and {@code destination} may be the same array, as long
+     * as {@code destinationOffset <= sourceOffset}.
+     *
+     * @param source the chars to encrypt
+     * @param sourceOffset the index of the first char to encrypt
+     * @param destination where to write the encrypted chars
+     * @param destinationOffset the index of the first char to write
+     * @param length the number of chars to encrypt
+     *
+     * @throws IndexOutOfBoundsException if either range is out of the bounds
+     *     of its array.
+     */
+    void encrypt(
+            char[] source,
+            int sourceOffset,
+            char[] destination,
+            int destinationOffset,
+            int length);
+
+    /**
+     * Encrypts the chars of {@code source} from {@code start} (inclusive) to
+     * {@code end} (exclusive), appending them to {@code destination}.
+     *
+     * @param source the chars to encrypt
+     * @param start the index of the first char to encrypt
+     * @param end the index after the last char to encrypt
+     * @param destination where to append the encrypted chars
+     *
+     * @throws IndexOutOfBoundsException if {@code start} or {@code end} are
+     *     out of the bounds of {@code source}, or {@code start > end}.
+     */
+    void encrypt(
+            CharSequence source,
+            int start,
+            int end,
+            StringBuilder destination);
+
+    /**
+     * Encrypts the remaining chars of {@code source} into {@code
+     * destination}, advancing the position of both buffers.
+     *
+     * @param source the chars to encrypt
+     * @param destination where to write the encrypted chars
+     *
+     * @throws java.nio.BufferOverflowException if {@code destination} has
+     *     fewer chars remaining than {@code source}.
+     */
+    void encrypt(CharBuffer source, CharBuffer destination);
+
+    /**
+     * Encrypts {@code length} bytes of UTF-8 encoded text in {@code source},
+     * starting at {@code sourceOffset}, into {@code destination}, starting at
+     * {@code destinationOffset}, without decoding it into chars. Bytes that
+     * are not well-formed UTF-8 are copied unchanged.
+     * <p>
+     * {@code source} and {@code destination} may be the same array, as long
+     * as {@code destinationOffset <= sourceOffset}.
+     *
+     * @param source the UTF-8 bytes to encrypt
+     * @param sourceOffset the index of the first byte to encrypt
+     * @param destination where to write the encrypted bytes
+     * @param destinationOffset the index of the first byte to write
+     * @param length the number of bytes to encrypt
+     *
+     * @throws IndexOutOfBoundsException if either range is out of the bounds
+     *     of its array.
+     * @throws UnsupportedOperationException if this cipher substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    void encrypt(
+            byte[] source,
+            int sourceOffset,
+            byte[] destination,
+            int destinationOffset,
+            int length);
+
+    /**
+     * Encrypts the remaining UTF-8 encoded bytes of {@code source} into {@code
+     * destination}, advancing the position of both buffers.
+     *
+     * @param source the UTF-8 bytes to encrypt
+     * @param destination where to write the encrypted bytes
+     *
+     * @throws java.nio.BufferOverflowException if {@code destination} has
+     *     fewer bytes remaining than {@code source}.
+     * @throws UnsupportedOperationException if this cipher substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    void encrypt(ByteBuffer source, ByteBuffer destination);
+
+    /**
+     * Encrypts, in place, the remaining UTF-8 encoded bytes of {@code buffer},
+     * advancing its position to its limit.
+     *
+     * @param buffer the UTF-8 bytes to encrypt
+     *
+     * @throws UnsupportedOperationException if this cipher substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    void encrypt(ByteBuffer buffer);
+
+    /**
+     * Decrypts {@code length} chars of {@code source} into {@code
+     * destination}, as {@link #encrypt(char[], int, char[], int, int)} does.
+     *
+     * @param source the chars to decrypt
+     * @param sourceOffset the index of the first char to decrypt
+     * @param destination where to write the decrypted chars
+     * @param destinationOffset the index of the first char to write
+     * @param length the number of chars to decrypt
+     */
+    default void decrypt(
+            char[] source,
+            int sourceOffset,
+            char[] destination,
+            int destinationOffset,
+            int length)
+    {
+        inverse().encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    /**
+     * Decrypts the chars of {@code source} from {@code start} to {@code end},
+     * appending them to {@code destination}, as {@link #encrypt(CharSequence,
+     * int, int, StringBuilder)} does.
+     *
+     * @param source the chars to decrypt
+     * @param start the index of the first char to decrypt
+     * @param end the index after the last char to decrypt
+     * @param destination where to append the decrypted chars
+     */
+    default void decrypt(
+            CharSequence source,
+            int start,
+            int end,
+            StringBuilder destination)
+    {
+        inverse().encrypt(source, start, end, destination);
+    }
+
+    /**
+     * Decrypts the remaining chars of {@code source} into {@code
+     * destination}, as {@link #encrypt(CharBuffer, CharBuffer)} does.
+     *
+     * @param source the chars to decrypt
+     * @param destination where to write the decrypted chars
+     */
+    default void decrypt(CharBuffer source, CharBuffer destination)
+    {
+        inverse().encrypt(source, destination);
+    }
+
+    /**
+     * Decrypts {@code length} bytes of UTF-8 encoded text in {@code source}
+     * into {@code destination}, as {@link #encrypt(byte[], int, byte[], int,
+     * int)} does.
+     *
+     * @param source the UTF-8 bytes to decrypt
+     * @param sourceOffset the index of the first byte to decrypt
+     * @param destination where to write the decrypted bytes
+     * @param destinationOffset the index of the first byte to write
+     * @param length the number of bytes to decrypt
+     */
+    default void decrypt(
+            byte[] source,
+            int sourceOffset,
+            byte[] destination,
+            int destinationOffset,
+            int length)
+    {
+        inverse().encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    /**
+     * Decrypts the remaining UTF-8 encoded bytes of {@code source} into {@code
+     * destination}, as {@link #encrypt(ByteBuffer, ByteBuffer)} does.
+     *
+     * @param source the UTF-8 bytes to decrypt
+     * @param destination where to write the decrypted bytes
+     */
+    default void decrypt(ByteBuffer source, ByteBuffer destination)
+    {
+        inverse().encrypt(source, destination);
+    }
+
+    /**
+     * Decrypts, in place, the remaining UTF-8 encoded bytes of {@code buffer},
+     * as {@link #encrypt(ByteBuffer)} does.
+     *
+     * @param buffer the UTF-8 bytes to decrypt
+     */
+    default void decrypt(ByteBuffer buffer)
+    {
+        inverse().encrypt(buffer);
+    }
+
+    /**
+     * Encrypts each of the given {@code texts}.
+     *
+     * @param texts the texts to encrypt
+     *
+     * @return the encrypted texts, in the same order as {@code texts}; never
+     *     {@code null}.
+     */
+    default String[] encryptAll(final String[] texts)
+    {
+        final String[] encrypted = new String[texts.length];
+        for (int i = 0; i < texts.length; i++)
+        {
+            encrypted[i] = encrypt(texts[i]);
+        }
+        return encrypted;
+    }
+
+    /**
+     * Encrypts each of the given {@code texts}.
+     *
+     * @param texts the texts to encrypt
+     *
+     * @return the encrypted texts, in the same order as {@code texts}; never
+     *     {@code null}.
+     */
+    default List<String> encryptAll(final List<String> texts)
+    {
+        return Arrays.asList(encryptAll(texts.toArray(new String[0])));
+    }
+
+    /**
+     * Encrypts each of the given {@code texts} in batches run on the given
+     * {@code executor}, and waits for them all to finish.
+     *
+     * @param texts the texts to encrypt
+     * @param executor runs the batches
+     *
+     * @return the encrypted texts, in the same order as {@code texts}; never
+     *     {@code null}.
+     */
+    default List<String> encryptAll(
+            final List<String> texts,
+            final Executor executor)
+    {
+        return Arrays.asList(Batches.encryptAll(
+                this,
+                texts.toArray(new String[0]),
+                executor,
+                Batches.BATCH_SIZE));
+    }
+
+    /**
+     * Lazily encrypts each of the given {@code texts}; the returned stream is
+     * parallel if {@code texts} is, and ordered if {@code texts} is.
+     *
+     * @param texts the texts to encrypt
+     *
+     * @return never {@code null}.
+     */
+    default Stream<String> encryptAll(final Stream<String> texts)
+    {
+        return texts.map(this::encrypt);
+    }
+
+    /**
+     * Lazily encrypts each of the given {@code texts}, in batches run in
+     * parallel on the given {@code executor}, as a stage of a pipeline: texts
+     * are only read from {@code texts} as the returned stream is consumed,
+     * with a bounded number of batches encrypted ahead, and the encrypted
+     * texts are in the same order as {@code texts}. Closing the returned
+     * stream closes {@code texts}.
+     * <p>
+     * Unlike {@link #encryptAll(Stream)}, this runs in parallel even if
+     * {@code texts} is sequential, e.g., the lines of a file.
+     *
+     * @param texts the texts to encrypt
+     * @param executor runs the batches
+     *
+     * @return a sequential, ordered stream; never {@code null}.
+     */
+    default Stream<String> encryptAll(
+            final Stream<String> texts,
+            final Executor executor)
+    {
+        return Batches.encryptAll(
+                this,
+                texts,
+                executor,
+                Batches.BATCH_SIZE,
+                Batches.WINDOW);
+    }
+
+    /**
+     * Decrypts each of the given {@code cipherTexts}, as {@link
+     * #encryptAll(String[])} does.
+     *
+     * @param cipherTexts the texts to decrypt
+     *
+     * @return never {@code null}.
+     */
+    default String[] decryptAll(final String[] cipherTexts)
+    {
+        return inverse().encryptAll(cipherTexts);
+    }
+
+    /**
+     * Decrypts each of the given {@code cipherTexts}, as {@link
+     * #encryptAll(List)} does.
+     *
+     * @param cipherTexts the texts to decrypt
+     *
+     * @return never {@code null}.
+     */
+    default List<String> decryptAll(final List<String> cipherTexts)
+    {
+        return inverse().encryptAll(cipherTexts);
+    }
+
+    /**
+     * Decrypts each of the given {@code cipherTexts} in batches run on the
+     * given {@code executor}, as {@link #encryptAll(List, Executor)} does.
+     *
+     * @param cipherTexts the texts to decrypt
+     * @param executor runs the batches
+     *
+     * @return never {@code null}.
+     */
+    default List<String> decryptAll(
+            final List<String> cipherTexts,
+            final Executor executor)
+    {
+        return inverse().encryptAll(cipherTexts, executor);
+    }
+
+    /**
+     * Lazily decrypts each of the given {@code cipherTexts}, as {@link
+     * #encryptAll(Stream)} does.
+     *
+     * @param cipherTexts the texts to decrypt
+     *
+     * @return never {@code null}.
+     */
+    default Stream<String> decryptAll(final Stream<String> cipherTexts)
+    {
+        return inverse().encryptAll(cipherTexts);
+    }
+
+    /**
+     * Lazily decrypts each of the given {@code cipherTexts} in batches run on
+     * the given {@code executor}, as {@link #encryptAll(Stream, Executor)}
+     * does.
+     *
+     * @param cipherTexts the texts to decrypt
+     * @param executor runs the batches
+     *
+     * @return never {@code null}.
+     */
+    default Stream<String> decryptAll(
+            final Stream<String> cipherTexts,
+            final Executor executor)
+    {
+        return inverse().encryptAll(cipherTexts, executor);
+    }
+
+    /**
+     * Returns a cipher that splits texts of at least {@code threshold} chars
+     * (or bytes) into segments, and encrypts them in parallel with this
+     * cipher on the common {@link ForkJoinPool}. Segments never split a
+     * surrogate pair or a UTF-8 sequence, so the results are the same as this
+     * cipher's.
+     *
+     * @param threshold the length at or above which texts are encrypted in
+     *     parallel
+     *
+     * @return never {@code null}.
+     */
+    default Cipher parallel(final int threshold)
+    {
+        return parallel(threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a cipher that encrypts texts of at least {@code threshold} chars
+     * (or bytes) in parallel on the given {@code pool}, as {@link
+     * #parallel(int)} does.
+     *
+     * @param threshold the length at or above which texts are encrypted in
+     *     parallel
+     * @param pool the pool to encrypt segments on
+     *
+     * @return never {@code null}.
+     */
+    default Cipher parallel(final int threshold, final ForkJoinPool pool)
+    {
+        return new ParallelCipher(
+                this,
+                threshold,
+                pool,
+                ParallelCipher.MINIMUM_SEGMENT_SIZE);
+    }
+
+    /**
+     * Encrypts the given {@code text} on the given {@code executor}, without
+     * blocking the caller. See {@link CipherService} for a bounded executor
+     * that runs small texts inline, and rejects texts once too many are
+     * pending.
+     *
+     * @param text the text to encrypt
+     * @param executor runs the encryption
+     *
+     * @return a future that completes with the encrypted text, or with the
+     *     exception encrypting it threw; never {@code null}.
+     */
+    default CompletableFuture<String> encryptAsync(
+            final String text,
+            final Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> encrypt(text), executor);
+    }
+
+    /**
+     * Decrypts the given {@code cipherText} on the given {@code executor}, as
+     * {@link #encryptAsync(String, Executor)} does.
+     *
+     * @param cipherText the text to decrypt
+     * @param executor runs the decryption
+     *
+     * @return never {@code null}.
+     */
+    default CompletableFuture<String> decryptAsync(
+            final String cipherText,
+            final Executor executor)
+    {
+        return inverse().encryptAsync(cipherText, executor);
+    }
+
+    /**
+     * Returns a cipher that encrypts with this cipher, then encrypts the
+     * result with {@code after}; it decrypts with the inverse of {@code
+     * after}, then the inverse of this cipher. For example, {@code
+     * AtbashCipher.instance().andThen(CaesarCipher.withShift(3))}.
+     * <p>
+     * If both ciphers are precompiled substitution tables (as those returned
+     * by {@link CaesarCipher}, {@link AtbashCipher}, {@link AffineCipher} and
+     * {@link SubstitutionAlphabet} are), their tables are fused into one
+     * when this method is called, so a chain of any length costs a single
+     * lookup per code point.
+     *
+     * @param after the cipher to encrypt the result of this one with
+     *
+     * @return never {@code null}.
+     */
+    default Cipher andThen(final Cipher after)
+    {
+        return new CompositeCipher(this, after);
+    }
+
+    /**
+     * Returns a view of the given {@code text} as encrypted by this cipher,
+     * that encrypts its chars as they're read, e.g., to hash or compare a
+     * prefix of the cipher text, or to {@link CipherView#writeTo(Appendable)
+     * write} it, without creating a string of the whole cipher text.
+     * <p>
+     * By default, the text is encrypted whole the first time a char is
+     * read; ciphers backed by a {@link SubstitutionTable} encrypt each char
+     * on demand instead.
+     *
+     * @param text the text to view
+     *
+     * @return never {@code null}.
+     */
+    default CipherView view(final CharSequence text)
+    {
+        return new CipherView(text, this);
+    }
+
+    /**
+     * Returns a cipher that reports each of its operations to the given {@code
+     * listener}: whether it encrypted or decrypted, how many chars (or bytes)
+     * it processed and substituted, how long it took and how much it
+     * allocated. See {@link CipherMetrics} for a listener that counts them.
+     * <p>
+     * Only the returned cipher is instrumented; this cipher isn't changed,
+     * so uninstrumented ciphers cost nothing extra.
+     *
+     * @param listener receives an event after each operation
+     *
+     * @return never {@code null}.
+     */
+    default Cipher instrumented(final CipherListener listener)
+    {
+        return new InstrumentedCipher(this, listener);
+    }
+
+    /**
+     * Whether this cipher substitutes each code point independently of the
+     * rest of the text, as monoalphabetic ciphers do. If so, a text can be
+     * split between any two code points, and its parts encrypted separately
+     * (e.g., in parallel, or in chunks as it's read) with the same result as
+     * encrypting it whole.
+     * <p>
+     * {@link #parallel(int)}, {@link #view(CharSequence)} and {@link
+     * CipherTextSearch} rely on this, so implementations whose substitutions
+     * depend on the rest of the text (e.g., on a key stream) must override it
+     * to return {@code false}.
+     *
+     * @return {@code true} unless overridden.
+     */
+    default boolean isPositionIndependent()
+    {
+        return true;
+    }
+
+    /**
+     * Whether this cipher may substitute the given code point, or substitute
+     * another code point with it, anywhere in a text. If not, the code point
+     * is always copied unchanged, and never written in place of another, so
+     * it can safely delimit parts of the text (e.g., the fields of a record).
+     *
+     * @param codePoint the code point to check
+     *
+     * @return {@code true} if this cipher may substitute the code point; by
+     *     default, {@code true} for a cipher that isn't {@link
+     *     #isPositionIndependent() position independent}, since it can't be
+     *     checked at every position.
+     */
+    default boolean substitutes(final int codePoint)
+    {
+        if (!isPositionIndependent())
+        {
+            return true;
+        }
+        final String text = new String(Character.toChars(codePoint));
+        return !encrypt(text).equals(text) || !decrypt(text).equals(text);
+    }
+
+    /**
+     * Returns a cipher that encrypts (and decrypts) the consecutive parts of
+     * one text: each call continues where the previous one left off, so
+     * encrypting a text in parts gives the same result as encrypting it
+     * whole. Unlike this cipher, the returned cipher is not thread-safe.
+     * <p>
+     * Since a {@link #isPositionIndependent() position independent} cipher
+     * has nothing to carry from one part to the next, it returns itself.
+     *
+     * @return never {@code null}.
+     */
+    default Cipher session()
+    {
+        return this;
+    }
+
+    /**
+     * Returns the cipher that encrypts as this cipher decrypts, and vice
+     * versa. Implementations should return a cached instance, since the
+     * default methods of this interface call it on every decryption.
+     *
+     * @return never {@code null}.
+     */
+    Cipher inverse();
+}
@@ -0,0 +1,102 @@
+package com.implementsblog.functional;
+
+/**
+ * A single operation of an {@link Cipher#instrumented(CipherListener)
+ * instrumented} cipher: one call that encrypts (or decrypts) a string, array
+ * or buffer.
+ * <p>
+ * Lengths are in the units of the operation: {@code char}s for strings, char
+ * arrays and char buffers, and bytes for UTF-8 encoded arrays and buffers.
+ */
+public final class CipherEvent
+{
+    private final boolean decryption;
+    private final boolean bytes;
+    private final int length;
+    private final int substituted;
+    private final long allocatedBytes;
+    private final long nanos;
+
+    CipherEvent(
+            final boolean decryption,
+            final boolean bytes,
+            final int length,
+            final int substituted,
+            final long allocatedBytes,
+            final long nanos)
+    {
+        this.decryption = decryption;
+        this.bytes = bytes;
+        this.length = length;
+        this.substituted = substituted;
+        this.allocatedBytes = allocatedBytes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return {@code true} if the operation decrypted, {@code false} if it
+     *     encrypted.
+     */
+    public boolean isDecryption()
+    {
+        return decryption;
+    }
+
+    /**
+     * @return {@code true} if the operation processed UTF-8 bytes, {@code
+     *     false} if it processed chars.
+     */
+    public boolean isBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return the number of chars (or bytes) processed.
+     */
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * @return the number of chars (or bytes) that were substituted with a
+     *     different one; the rest were passed through unchanged.
+     */
+    public int substituted()
+    {
+        return substituted;
+    }
+
+    /**
+     * @return the number of bytes the calling thread allocated during the
+     *     operation, or {@code -1} if the JVM doesn't measure it. Allocations
+     *     on other threads, such as those of a {@link Cipher#parallel(int)
+     *     parallel} cipher, aren't included.
+     */
+    public long allocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return how long the operation took, in nanoseconds.
+     */
+    public long nanos()
+    {
+        return nanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "%s of %d %s (%d substituted) in %d ns, allocating %d bytes",
+                decryption ? "Decryption" : "Encryption",
+                length,
+                bytes ? "bytes" : "chars",
+                substituted,
+                nanos,
+                allocatedBytes);
+    }
+}
@@ -0,0 +1,160 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that encrypts the UTF-8 encoded text read from
+ * another {@code InputStream}, without decoding it into chars (see {@link
+ * Cipher#encrypt(byte[], int, byte[], int, int)}). To decrypt instead, pass
+ * the {@link Cipher#inverse() inverse} cipher.
+ * <p>
+ * Bytes are read and encrypted in chunks of a fixed size, so memory use
+ * doesn't depend on the length of the text. A UTF-8 sequence that is cut off
+ * by the end of a chunk is held back until the next chunk, so multi-byte
+ * sequences are always encrypted as a whole.
+ * <p>
+ * All chunks are encrypted with one {@link Cipher#session() session} of the
+ * cipher, so a polyalphabetic cipher's key stream carries on from one chunk
+ * to the next.
+ */
+public final class CipherInputStream extends InputStream
+{
+    private final InputStream in;
+    private final Cipher cipher;
+
+    /**
+     * Bytes from {@code start} to {@code end} are encrypted and ready to be
+     * read, and the {@code held} bytes after {@code end} are the unencrypted
+     * beginning of a UTF-8 sequence.
+     */
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private int held;
+    private boolean endOfInput;
+
+    /**
+     * @param in the stream to read UTF-8 encoded plain text from
+     * @param cipher the cipher to encrypt it with
+     */
+    public CipherInputStream(final InputStream in, final Cipher cipher)
+    {
+        this(in, cipher, CipherReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param in the stream to read UTF-8 encoded plain text from
+     * @param cipher the cipher to encrypt it with
+     * @param bufferSize the number of bytes to read and encrypt at a time
+     *
+     * @throws IllegalArgumentException if {@code bufferSize < 4}.
+     */
+    public CipherInputStream(
+            final InputStream in,
+            final Cipher cipher,
+            final int bufferSize)
+    {
+        if (bufferSize < 4)
+        {
+            throw new IllegalArgumentException(
+                    "bufferSize must hold a UTF-8 sequence: " + bufferSize);
+        }
+        this.in = in;
+        this.cipher = cipher.session();
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public synchronized int read() throws IOException
+    {
+        return start < end || fill() ? buffer[start++] & 0xFF : -1;
+    }
+
+    @Override
+    public synchronized int read(
+            final byte[] bytes,
+            final int offset,
+            final int length) throws IOException
+    {
+        SubstitutionTable.checkBounds(bytes.length, offset, length);
+        if (length == 0)
+        {
+            return 0;
+        }
+        if (start == end && !fill())
+        {
+            return -1;
+        }
+
+        final int read = Math.min(length, end - start);
+        System.arraycopy(buffer, start, bytes, offset, read);
+        start += read;
+        return read;
+    }
+
+    @Override
+    public synchronized long skip(final long n) throws IOException
+    {
+        long skipped = 0;
+        while (skipped < n && (start < end || fill()))
+        {
+            final int skip = (int) Math.min(n - skipped, end - start);
+            start += skip;
+            skipped += skip;
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available()
+    {
+        return end - start;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads and encrypts the next chunk, blocking until at least one byte is
+     * ready or the end of the input is reached.
+     *
+     * @return {@code false} if there are no more bytes to read.
+     */
+    private boolean fill() throws IOException
+    {
+        System.arraycopy(buffer, end, buffer, 0, held);
+        int length = held;
+        start = 0;
+        end = 0;
+
+        while (end == 0)
+        {
+            final int read = endOfInput
+                    ? -1
+                    : in.read(buffer, length, buffer.length - length);
+            if (read < 0)
+            {
+                endOfInput = true;
+                held = 0;
+                if (length == 0)
+                {
+                    return false;
+                }
+                end = length;
+            }
+            else if (read > 0)
+            {
+                length += read;
+                end = Utf8.completeLength(buffer, 0, length);
+                held = length - end;
+            }
+        }
+
+        cipher.encrypt(buffer, 0, buffer, 0, end);
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.implementsblog.functional;
+
+/**
+ * Receives a {@link CipherEvent} after each operation of a cipher returned by
+ * {@link Cipher#instrumented(CipherListener)}, e.g., to bridge them into a
+ * metrics system, or to record large operations as Flight Recorder events.
+ * <p>
+ * Listeners are called on the thread that performed the operation, so they
+ * must be thread-safe, and should return quickly. See {@link CipherMetrics}
+ * for a listener that aggregates events into counters.
+ */
+@FunctionalInterface
+public interface CipherListener
+{
+    /**
+     * Called after an operation completes normally.
+     *
+     * @param event what the operation did, never {@code null}
+     */
+    void completed(CipherEvent event);
+}
@@ -0,0 +1,114 @@
+package com.implementsblog.functional;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CipherListener} that counts the operations of one or more
+ * instrumented ciphers, for a metrics system to poll.
+ * <p>
+ * Latencies are recorded in a histogram with one bucket per power of two
+ * nanoseconds. Instances are thread-safe: every count, including each bucket,
+ * is a {@link LongAdder}, so threads recording events at the same time update
+ * separate cells rather than contending for one value.
+ */
+public final class CipherMetrics implements CipherListener
+{
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder substituted = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder[] latencies = new LongAdder[Long.SIZE];
+
+    public CipherMetrics()
+    {
+        for (int i = 0; i < latencies.length; i++)
+        {
+            latencies[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void completed(final CipherEvent event)
+    {
+        calls.increment();
+        processed.add(event.length());
+        substituted.add(event.substituted());
+        if (event.allocatedBytes() > 0)
+        {
+            allocatedBytes.add(event.allocatedBytes());
+        }
+        latencies[bucket(event.nanos())].increment();
+    }
+
+    /**
+     * @return the number of operations.
+     */
+    public long calls()
+    {
+        return calls.sum();
+    }
+
+    /**
+     * @return the number of chars and bytes processed.
+     */
+    public long processed()
+    {
+        return processed.sum();
+    }
+
+    /**
+     * @return the number of chars and bytes substituted with a different one.
+     */
+    public long substituted()
+    {
+        return substituted.sum();
+    }
+
+    /**
+     * @return the number of bytes allocated by operations, where the JVM
+     *     measures it.
+     */
+    public long allocatedBytes()
+    {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Returns a snapshot of the latency histogram: the element at index
+     * {@code i} is the number of operations that took from {@code 2^i} to
+     * {@code 2^(i + 1) - 1} nanoseconds (index {@code 0} also counts those
+     * that took {@code 0}).
+     *
+     * @return never {@code null}; 64 elements.
+     */
+    public long[] latencies()
+    {
+        final long[] snapshot = new long[latencies.length];
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            snapshot[i] = latencies[i].sum();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the index of the histogram bucket that counts {@code nanos}.
+     */
+    static int bucket(final long nanos)
+    {
+        return nanos <= 0
+                ? 0
+                : Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "%d calls, %d processed, %d substituted, %d bytes allocated",
+                calls(),
+                processed(),
+                substituted(),
+                allocatedBytes());
+    }
+}
@@ -0,0 +1,150 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} that encrypts UTF-8 encoded text before writing it
+ * to another {@code OutputStream}, without decoding it into chars (see {@link
+ * Cipher#encrypt(byte[], int, byte[], int, int)}). To decrypt instead, pass
+ * the {@link Cipher#inverse() inverse} cipher.
+ * <p>
+ * Bytes are buffered and encrypted in chunks of a fixed size, so memory use
+ * doesn't depend on the length of the text. An incomplete trailing UTF-8
+ * sequence is held back, even by {@link #flush()}, until the rest of it is
+ * written, so multi-byte sequences are always encrypted as a whole; {@link
+ * #close()} writes everything.
+ * <p>
+ * All chunks are encrypted with one {@link Cipher#session() session} of the
+ * cipher, so a polyalphabetic cipher's key stream carries on from one chunk
+ * to the next.
+ */
+public final class CipherOutputStream extends OutputStream
+{
+    private final OutputStream out;
+    private final Cipher cipher;
+
+    /**
+     * The first {@code length} bytes are waiting to be encrypted.
+     */
+    private final byte[] buffer;
+    private int length;
+    private boolean closed;
+
+    /**
+     * @param out the stream to write UTF-8 encoded cipher text to
+     * @param cipher the cipher to encrypt with
+     */
+    public CipherOutputStream(final OutputStream out, final Cipher cipher)
+    {
+        this(out, cipher, CipherReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out the stream to write UTF-8 encoded cipher text to
+     * @param cipher the cipher to encrypt with
+     * @param bufferSize the number of bytes to encrypt and write at a time
+     *
+     * @throws IllegalArgumentException if {@code bufferSize < 4}.
+     */
+    public CipherOutputStream(
+            final OutputStream out,
+            final Cipher cipher,
+            final int bufferSize)
+    {
+        if (bufferSize < 4)
+        {
+            throw new IllegalArgumentException(
+                    "bufferSize must hold a UTF-8 sequence: " + bufferSize);
+        }
+        this.out = out;
+        this.cipher = cipher.session();
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public synchronized void write(final int b) throws IOException
+    {
+        ensureOpen();
+        if (length == buffer.length)
+        {
+            drain(false);
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(
+            final byte[] bytes,
+            final int offset,
+            final int length) throws IOException
+    {
+        SubstitutionTable.checkBounds(bytes.length, offset, length);
+        ensureOpen();
+        for (int written = 0; written < length; )
+        {
+            if (this.length == buffer.length)
+            {
+                drain(false);
+            }
+            final int write = Math.min(
+                    length - written,
+                    buffer.length - this.length);
+            System.arraycopy(bytes, offset + written, buffer, this.length, write);
+            this.length += write;
+            written += write;
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        ensureOpen();
+        drain(false);
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            drain(true);
+            out.flush();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Encrypts and writes the buffered bytes, except for an incomplete
+     * trailing UTF-8 sequence unless {@code all} is {@code true}.
+     */
+    private void drain(final boolean all) throws IOException
+    {
+        final int drain = all
+                ? length
+                : Utf8.completeLength(buffer, 0, length);
+
+        cipher.encrypt(buffer, 0, buffer, 0, drain);
+        out.write(buffer, 0, drain);
+
+        System.arraycopy(buffer, drain, buffer, 0, length - drain);
+        length -= drain;
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+    }
+}
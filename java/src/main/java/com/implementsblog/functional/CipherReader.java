@@ -0,0 +1,169 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link Reader} that encrypts the chars read from another {@code Reader}.
+ * To decrypt instead, pass the {@link Cipher#inverse() inverse} cipher.
+ * <p>
+ * Chars are read and encrypted in chunks of a fixed size, so memory use
+ * doesn't depend on the length of the text. A high surrogate at the end of a
+ * chunk is held back until the next chunk, so surrogate pairs are always
+ * encrypted as a whole.
+ * <p>
+ * All chunks are encrypted with one {@link Cipher#session() session} of the
+ * cipher, so a polyalphabetic cipher's key stream carries on from one chunk
+ * to the next.
+ */
+public final class CipherReader extends Reader
+{
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final Cipher cipher;
+
+    /**
+     * Chars from {@code start} to {@code end} are encrypted and ready to be
+     * read, and if {@code held} is {@code true}, the char at {@code end} is an
+     * unencrypted high surrogate.
+     */
+    private final char[] buffer;
+    private int start;
+    private int end;
+    private boolean held;
+    private boolean endOfInput;
+
+    /**
+     * @param in the reader to read plain text from
+     * @param cipher the cipher to encrypt it with
+     */
+    public CipherReader(final Reader in, final Cipher cipher)
+    {
+        this(in, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param in the reader to read plain text from
+     * @param cipher the cipher to encrypt it with
+     * @param bufferSize the number of chars to read and encrypt at a time
+     *
+     * @throws IllegalArgumentException if {@code bufferSize < 2}.
+     */
+    public CipherReader(
+            final Reader in,
+            final Cipher cipher,
+            final int bufferSize)
+    {
+        super(in);
+        if (bufferSize < 2)
+        {
+            throw new IllegalArgumentException(
+                    "bufferSize must hold a surrogate pair: " + bufferSize);
+        }
+        this.in = in;
+        this.cipher = cipher.session();
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    public int read(final char[] chars, final int offset, final int length)
+            throws IOException
+    {
+        SubstitutionTable.checkBounds(chars.length, offset, length);
+        synchronized (lock)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (start == end && !fill())
+            {
+                return -1;
+            }
+
+            final int read = Math.min(length, end - start);
+            System.arraycopy(buffer, start, chars, offset, read);
+            start += read;
+            return read;
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        if (n < 0)
+        {
+            throw new IllegalArgumentException("n is negative: " + n);
+        }
+        synchronized (lock)
+        {
+            long skipped = 0;
+            while (skipped < n && (start < end || fill()))
+            {
+                final int skip = (int) Math.min(n - skipped, end - start);
+                start += skip;
+                skipped += skip;
+            }
+            return skipped;
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException
+    {
+        synchronized (lock)
+        {
+            return start < end || in.ready();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads and encrypts the next chunk, blocking until at least one char is
+     * ready or the end of the input is reached.
+     *
+     * @return {@code false} if there are no more chars to read.
+     */
+    private boolean fill() throws IOException
+    {
+        if (held)
+        {
+            buffer[0] = buffer[end];
+        }
+        int length = held ? 1 : 0;
+        start = 0;
+        end = 0;
+
+        while (end == 0)
+        {
+            final int read = endOfInput
+                    ? -1
+                    : in.read(buffer, length, buffer.length - length);
+            if (read < 0)
+            {
+                endOfInput = true;
+                held = false;
+                if (length == 0)
+                {
+                    return false;
+                }
+                end = length;
+            }
+            else if (read > 0)
+            {
+                length += read;
+                held = Character.isHighSurrogate(buffer[length - 1]);
+                end = held ? length - 1 : length;
+            }
+        }
+
+        cipher.encrypt(buffer, 0, buffer, 0, end);
+        return true;
+    }
+}
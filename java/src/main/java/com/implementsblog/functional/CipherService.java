@@ -0,0 +1,330 @@
+package com.implementsblog.functional;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Encrypts texts asynchronously, so that callers (e.g., request threads)
+ * aren't blocked by large texts:
+ * <ul>
+ *     <li>texts shorter than the inline threshold are encrypted on the
+ *     calling thread, since handing them off would cost more than
+ *     encrypting them;</li>
+ *     <li>longer texts are encrypted on the service's executor, a fixed pool
+ *     of platform threads, or optionally one virtual thread per text;</li>
+ *     <li>once the maximum number of texts are pending, further texts are
+ *     rejected immediately, rather than queued without bound, so callers can
+ *     shed load or retry.</li>
+ * </ul>
+ * <p>
+ * Instances are thread-safe; {@link #close()} shuts down the executor the
+ * service created (but not one that was given to it).
+ */
+public final class CipherService implements AutoCloseable
+{
+    private final ExecutorService ownedExecutor;
+    private final Executor executor;
+    private final boolean virtualThreads;
+    private final int maximumPending;
+    private final Semaphore pending;
+    private final int inlineThreshold;
+
+    private CipherService(final Builder builder)
+    {
+        ExecutorService ownedExecutor = null;
+        if (builder.executor == null && builder.virtualThreads)
+        {
+            ownedExecutor = newVirtualThreadPerTaskExecutor();
+        }
+        this.virtualThreads = ownedExecutor != null;
+        if (builder.executor == null && ownedExecutor == null)
+        {
+            ownedExecutor = Executors.newFixedThreadPool(
+                    builder.threads,
+                    new DaemonThreadFactory());
+        }
+
+        this.ownedExecutor = ownedExecutor;
+        this.executor = ownedExecutor != null
+                ? ownedExecutor
+                : builder.executor;
+        this.maximumPending = builder.maximumPending;
+        this.pending = new Semaphore(builder.maximumPending);
+        this.inlineThreshold = builder.inlineThreshold;
+    }
+
+    /**
+     * @return a builder with the default settings: one thread per processor,
+     *     at most 1024 pending texts, and texts shorter than 8192 chars
+     *     encrypted inline.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Encrypts the given {@code text} with the given {@code cipher}.
+     *
+     * @param cipher the cipher to encrypt with
+     * @param text the text to encrypt
+     *
+     * @return a future that completes with the encrypted text, or with the
+     *     exception encrypting it threw, or with a {@link
+     *     RejectedExecutionException} if too many texts are pending or the
+     *     service is closed; never {@code null}.
+     */
+    public CompletableFuture<String> encrypt(
+            final Cipher cipher,
+            final String text)
+    {
+        return submit(cipher::encrypt, text);
+    }
+
+    /**
+     * Decrypts the given {@code cipherText} with the given {@code cipher}, as
+     * {@link #encrypt(Cipher, String)} does.
+     *
+     * @param cipher the cipher the text was encrypted with
+     * @param cipherText the text to decrypt
+     *
+     * @return never {@code null}.
+     */
+    public CompletableFuture<String> decrypt(
+            final Cipher cipher,
+            final String cipherText)
+    {
+        return submit(cipher::decrypt, cipherText);
+    }
+
+    /**
+     * @return the number of texts that have been submitted to the executor,
+     *     but haven't finished.
+     */
+    public int pending()
+    {
+        return maximumPending - pending.availablePermits();
+    }
+
+    /**
+     * @return whether texts are encrypted on virtual threads; {@code false}
+     *     if they weren't requested, or the JVM doesn't support them.
+     */
+    public boolean usesVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    /**
+     * Shuts down the executor the service created, after the pending texts
+     * are encrypted; texts submitted afterwards are rejected. An executor
+     * given to the {@link Builder#executor(Executor) builder} is left
+     * running.
+     */
+    @Override
+    public void close()
+    {
+        if (ownedExecutor != null)
+        {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private CompletableFuture<String> submit(
+            final UnaryOperator<String> operation,
+            final String text)
+    {
+        if (text.length() < inlineThreshold)
+        {
+            try
+            {
+                return CompletableFuture.completedFuture(
+                        operation.apply(text));
+            }
+            catch (RuntimeException e)
+            {
+                return failed(e);
+            }
+        }
+
+        if (!pending.tryAcquire())
+        {
+            return failed(new RejectedExecutionException(
+                    "Too many texts are pending: " + pending()));
+        }
+        try
+        {
+            return CompletableFuture
+                    .supplyAsync(() -> operation.apply(text), executor)
+                    .whenComplete((result, exception) -> pending.release());
+        }
+        catch (RejectedExecutionException e)
+        {
+            pending.release();
+            return failed(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable exception)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    /**
+     * Calls {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively,
+     * since it only exists from Java 21.
+     *
+     * @return {@code null} if the JVM doesn't support virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Names the service's threads, and doesn't let them keep the JVM alive.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger SERVICES = new AtomicInteger();
+
+        private final int service = SERVICES.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(
+                    runnable,
+                    "cipher-service-" + service + "-"
+                            + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Configures a {@link CipherService}.
+     */
+    public static final class Builder
+    {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int maximumPending = Batches.BATCH_SIZE;
+        private int inlineThreshold = ParallelCipher.MINIMUM_SEGMENT_SIZE;
+        private boolean virtualThreads;
+        private Executor executor;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * @param threads the number of platform threads to encrypt on
+         *
+         * @return this builder.
+         *
+         * @throws IllegalArgumentException if {@code threads < 1}.
+         */
+        public Builder threads(final int threads)
+        {
+            if (threads < 1)
+            {
+                throw new IllegalArgumentException(
+                        "threads must be positive: " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param maximumPending the number of texts that can be submitted to
+         *     the executor before further texts are rejected
+         *
+         * @return this builder.
+         *
+         * @throws IllegalArgumentException if {@code maximumPending < 1}.
+         */
+        public Builder maximumPending(final int maximumPending)
+        {
+            if (maximumPending < 1)
+            {
+                throw new IllegalArgumentException(
+                        "maximumPending must be positive: " + maximumPending);
+            }
+            this.maximumPending = maximumPending;
+            return this;
+        }
+
+        /**
+         * @param inlineThreshold the length below which texts are encrypted
+         *     on the calling thread; {@code 0} to never encrypt inline
+         *
+         * @return this builder.
+         *
+         * @throws IllegalArgumentException if {@code inlineThreshold < 0}.
+         */
+        public Builder inlineThreshold(final int inlineThreshold)
+        {
+            if (inlineThreshold < 0)
+            {
+                throw new IllegalArgumentException(
+                        "inlineThreshold must not be negative: "
+                                + inlineThreshold);
+            }
+            this.inlineThreshold = inlineThreshold;
+            return this;
+        }
+
+        /**
+         * @param virtualThreads whether to encrypt each text on its own
+         *     virtual thread, rather than on a fixed pool; ignored (in favour
+         *     of the pool) if the JVM doesn't support virtual threads
+         *
+         * @return this builder.
+         */
+        public Builder virtualThreads(final boolean virtualThreads)
+        {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * @param executor the executor to encrypt on, instead of one the
+         *     service creates (and closes); the service still limits the
+         *     number of pending texts
+         *
+         * @return this builder.
+         */
+        public Builder executor(final Executor executor)
+        {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return never {@code null}.
+         */
+        public CipherService build()
+        {
+            return new CipherService(this);
+        }
+    }
+}
@@ -0,0 +1,770 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches cipher text for a plain text literal or pattern, without
+ * decrypting it.
+ * <p>
+ * A {@link Cipher#isPositionIndependent() position independent} cipher, such
+ * as the Caesar, Atbash or Affine cipher, substitutes each code point with
+ * the same code point wherever it occurs, one for one. So a plain text
+ * literal occurs in a plain text exactly where the encrypted literal occurs
+ * in the cipher text, and a pattern can be translated into the cipher text
+ * once, by encrypting each of its literal characters and the members of
+ * each of its character classes.
+ * <p>
+ * Literals are searched for with the Boyer-Moore-Horspool algorithm; within
+ * files, their UTF-8 encoding is searched for in the raw bytes, which are
+ * never decoded except for the lines that match. Files are searched in
+ * parallel segments of whole lines. Since {@code .}, {@code ^} and {@code $}
+ * depend on where lines end, ciphers that substitute line terminators are
+ * rejected.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class CipherTextSearch
+{
+    /**
+     * The largest number of bytes of a file searched by a single task, not
+     * counting the rest of the line the segment ends in.
+     */
+    static final int SEGMENT_SIZE = 1 << 24;
+
+    /**
+     * The chars that end a line for the {@code .}, {@code ^} and {@code $} of
+     * a regular expression, none of which a searchable cipher may substitute.
+     * {@link #matchingLines(Path)} only splits a file into lines at {@code
+     * \n}, dropping a {@code \r} before it.
+     */
+    private static final String LINE_TERMINATORS =
+            "\n\r\u0085\u2028\u2029";
+
+    /**
+     * The encrypted literal, or {@code null} if searching for a pattern.
+     */
+    private final String literal;
+    private final byte[] literalBytes;
+    private final int[] charShifts;
+    private final int[] byteShifts;
+
+    /**
+     * The encrypted pattern; for a literal, it matches the same text.
+     */
+    private final Pattern pattern;
+
+    private CipherTextSearch(final String literal)
+    {
+        this.literal = literal;
+        this.literalBytes = literal.getBytes(StandardCharsets.UTF_8);
+        this.charShifts = new int[0x100];
+        this.byteShifts = new int[0x100];
+        this.pattern = Pattern.compile(Pattern.quote(literal));
+
+        final int length = literal.length();
+        Arrays.fill(charShifts, Math.max(length, 1));
+        for (int i = 0; i < length - 1; i++)
+        {
+            charShifts[literal.charAt(i) & 0xFF] = length - 1 - i;
+        }
+        final int byteLength = literalBytes.length;
+        Arrays.fill(byteShifts, Math.max(byteLength, 1));
+        for (int i = 0; i < byteLength - 1; i++)
+        {
+            byteShifts[literalBytes[i] & 0xFF] = byteLength - 1 - i;
+        }
+    }
+
+    private CipherTextSearch(final Pattern pattern)
+    {
+        this.literal = null;
+        this.literalBytes = null;
+        this.charShifts = null;
+        this.byteShifts = null;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Returns a search for the given plain text {@code literal}, in text
+     * encrypted with the given {@code cipher}.
+     *
+     * @param cipher the cipher the text to search was encrypted with
+     * @param literal the plain text to search for
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code cipher} isn't position
+     *     independent, or substitutes a line terminator.
+     */
+    public static CipherTextSearch literal(
+            final Cipher cipher,
+            final String literal)
+    {
+        checkCipher(cipher);
+        return new CipherTextSearch(cipher.encrypt(literal));
+    }
+
+    /**
+     * Returns a search for the given plain text regular expression, in text
+     * encrypted with the given {@code cipher}.
+     * <p>
+     * Only the parts of a regular expression that match characters are
+     * translated: literal characters (escaped if need be, or as {@code \t},
+     * {@code \n} and {@code \r}), character classes such as {@code [a-z0-9]}
+     * and {@code [^,]}, and the predefined {@code \d}, {@code \w} and {@code
+     * \s} (and their negations). The rest, i.e., {@code .}, quantifiers,
+     * alternation, groups and the anchors {@code ^} and {@code $}, are kept
+     * as they are, since they don't depend on the characters they match.
+     * Other constructs, e.g., word boundaries, back references, flags and
+     * class intersections, are rejected.
+     *
+     * @param cipher the cipher the text to search was encrypted with
+     * @param regex the plain text regular expression to search for
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code cipher} isn't position
+     *     independent or substitutes a line terminator, or {@code regex}
+     *     isn't valid or uses unsupported constructs.
+     */
+    public static CipherTextSearch regex(
+            final Cipher cipher,
+            final String regex)
+    {
+        checkCipher(cipher);
+        return new CipherTextSearch(
+                Pattern.compile(new Translator(cipher, regex).translate()));
+    }
+
+    /**
+     * @return the pattern that matches the cipher text, e.g., to use with
+     *     other APIs; never {@code null}.
+     */
+    public Pattern pattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Finds the first match in the given {@code cipherText}, starting at
+     * {@code fromIndex}.
+     *
+     * @param cipherText the text to search
+     * @param fromIndex the index to start searching from
+     *
+     * @return the index of the first char of the match, or {@code -1} if
+     *     there is none.
+     */
+    public int indexOf(final CharSequence cipherText, final int fromIndex)
+    {
+        final int from = Math.max(fromIndex, 0);
+        if (literal == null)
+        {
+            final Matcher matcher = pattern.matcher(cipherText);
+            return from <= cipherText.length() && matcher.find(from)
+                    ? matcher.start()
+                    : -1;
+        }
+
+        final String literal = this.literal;
+        final int[] shifts = charShifts;
+        final int length = literal.length();
+        final int last = cipherText.length() - length;
+        for (int i = from; i <= last; )
+        {
+            int j = length - 1;
+            while (j >= 0 && cipherText.charAt(i + j) == literal.charAt(j))
+            {
+                j--;
+            }
+            if (j < 0)
+            {
+                return i;
+            }
+            i += shifts[cipherText.charAt(i + length - 1) & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the lines of the given UTF-8 encoded {@code file} that match,
+     * using the common {@link ForkJoinPool}.
+     *
+     * @param file the cipher text file to search
+     *
+     * @return the matching lines, still encrypted and without the {@code \n}
+     *     (or {@code \r\n}) that ends each, in the order they occur in the
+     *     file; never {@code null}.
+     *
+     * @throws IOException if the file can't be read.
+     */
+    public List<String> matchingLines(final Path file) throws IOException
+    {
+        return matchingLines(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the lines of the given UTF-8 encoded {@code file} that match,
+     * searching segments of the file in parallel on the given {@code pool}.
+     *
+     * @param file the cipher text file to search
+     * @param pool the pool to search the segments of the file on
+     *
+     * @return the matching lines, as in {@link #matchingLines(Path)}.
+     *
+     * @throws IOException if the file can't be read.
+     */
+    public List<String> matchingLines(final Path file, final ForkJoinPool pool)
+            throws IOException
+    {
+        return matchingLines(file, pool, SEGMENT_SIZE);
+    }
+
+    /**
+     * Searches {@code file} in segments of at least {@code segmentSize}
+     * bytes, each extended to the end of its last line.
+     */
+    List<String> matchingLines(
+            final Path file,
+            final ForkJoinPool pool,
+            final int segmentSize) throws IOException
+    {
+        try (FileChannel channel =
+                     FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final long size = channel.size();
+            final List<ForkJoinTask<List<String>>> segments =
+                    new ArrayList<>();
+            for (long start = 0, end; start < size; start = end)
+            {
+                end = size - start <= segmentSize
+                        ? size
+                        : nextLine(channel, start + segmentSize, size);
+                final long segmentStart = start;
+                final long segmentEnd = end;
+                segments.add(pool.submit(() -> {
+                    try
+                    {
+                        return matchingLines(channel.map(
+                                MapMode.READ_ONLY,
+                                segmentStart,
+                                segmentEnd - segmentStart));
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+
+            final List<String> lines = new ArrayList<>();
+            for (final ForkJoinTask<List<String>> segment : segments)
+            {
+                lines.addAll(segment.join());
+            }
+            return lines;
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the cipher text pattern.
+     */
+    @Override
+    public String toString()
+    {
+        return pattern.pattern();
+    }
+
+    /**
+     * Finds the matching lines of a segment of whole lines.
+     */
+    private List<String> matchingLines(final ByteBuffer segment)
+    {
+        final List<String> lines = new ArrayList<>();
+        final int end = segment.limit();
+        if (literal != null)
+        {
+            for (int i = indexOf(segment, 0); i >= 0; )
+            {
+                final int lineStart = lineStart(segment, i);
+                final int lineEnd = lineEnd(segment, i);
+                final int textEnd = textEnd(segment, lineStart, lineEnd);
+                if (i + literalBytes.length > textEnd)
+                {
+                    // A match that spans the end of its line isn't within
+                    // any line, as a pattern's never is.
+                    i = indexOf(segment, i + 1);
+                    continue;
+                }
+                lines.add(decode(segment, lineStart, textEnd));
+                // As for a pattern, no line starts after the last line feed.
+                i = lineEnd + 1 < end ? indexOf(segment, lineEnd + 1) : -1;
+            }
+            return lines;
+        }
+
+        final CharBuffer chars = StandardCharsets.UTF_8.decode(segment);
+        final Matcher matcher = pattern.matcher("");
+        for (int start = 0; start < chars.limit(); )
+        {
+            int lineEnd = start;
+            while (lineEnd < chars.limit() && chars.get(lineEnd) != '\n')
+            {
+                lineEnd++;
+            }
+            final int textEnd = lineEnd > start
+                    && chars.get(lineEnd - 1) == '\r'
+                    ? lineEnd - 1
+                    : lineEnd;
+            final CharSequence line = chars.subSequence(start, textEnd);
+            if (matcher.reset(line).find())
+            {
+                lines.add(line.toString());
+            }
+            start = lineEnd + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the UTF-8 encoded literal in {@code bytes}, from {@code
+     * fromIndex}, with the Boyer-Moore-Horspool algorithm.
+     */
+    private int indexOf(final ByteBuffer bytes, final int fromIndex)
+    {
+        final byte[] literal = literalBytes;
+        final int[] shifts = byteShifts;
+        final int length = literal.length;
+        final int last = bytes.limit() - length;
+        for (int i = fromIndex; i <= last; )
+        {
+            int j = length - 1;
+            while (j >= 0 && bytes.get(i + j) == literal[j])
+            {
+                j--;
+            }
+            if (j < 0)
+            {
+                return i;
+            }
+            i += shifts[bytes.get(i + length - 1) & 0xFF];
+        }
+        return -1;
+    }
+
+    private static int lineStart(final ByteBuffer bytes, final int index)
+    {
+        int start = index;
+        while (start > 0 && bytes.get(start - 1) != '\n')
+        {
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * @return the index of the line feed that ends the line containing
+     *     {@code index}, or the end of {@code bytes}.
+     */
+    private static int lineEnd(final ByteBuffer bytes, final int index)
+    {
+        int end = index;
+        while (end < bytes.limit() && bytes.get(end) != '\n')
+        {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return the end of the text of the line from {@code start} to {@code
+     *     end}, before the carriage return that precedes its line feed, if
+     *     any.
+     */
+    private static int textEnd(
+            final ByteBuffer bytes,
+            final int start,
+            final int end)
+    {
+        return end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static String decode(
+            final ByteBuffer bytes,
+            final int start,
+            final int end)
+    {
+        final byte[] line = new byte[end - start];
+        for (int i = 0; i < line.length; i++)
+        {
+            line[i] = bytes.get(start + i);
+        }
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the index after the first line feed at or after {@code index},
+     *     or {@code size} if there is none.
+     */
+    private static long nextLine(
+            final FileChannel channel,
+            final long index,
+            final long size) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long position = index; position < size; )
+        {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read < 0)
+            {
+                break;
+            }
+            for (int i = 0; i < read; i++)
+            {
+                if (buffer.get(i) == '\n')
+                {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code cipher} isn't position
+     *     independent, or {@link Cipher#substitutes(int) substitutes} a line
+     *     terminator.
+     */
+    private static void checkCipher(final Cipher cipher)
+    {
+        if (!cipher.isPositionIndependent())
+        {
+            throw new IllegalArgumentException(
+                    "Only a position independent cipher substitutes each"
+                            + " character the same way wherever it occurs.");
+        }
+        for (final char c : LINE_TERMINATORS.toCharArray())
+        {
+            if (cipher.substitutes(c))
+            {
+                throw new IllegalArgumentException(String.format(
+                        "The cipher substitutes U+%04X, which terminates"
+                                + " lines.",
+                        (int) c));
+            }
+        }
+    }
+
+    /**
+     * Translates a plain text regular expression into one that matches the
+     * cipher text.
+     */
+    private static final class Translator
+    {
+        private static final String DIGITS = "0-9";
+        private static final String WORD = "a-zA-Z_0-9";
+        private static final String SPACE = " \t\n\u000B\f\r";
+
+        private final Cipher cipher;
+        private final String regex;
+        private final StringBuilder result = new StringBuilder();
+        private int index;
+
+        Translator(final Cipher cipher, final String regex)
+        {
+            this.cipher = cipher;
+            this.regex = regex;
+        }
+
+        String translate()
+        {
+            while (index < regex.length())
+            {
+                final int c = regex.codePointAt(index);
+                index += Character.charCount(c);
+                switch (c)
+                {
+                    case '\\':
+                        escape();
+                        break;
+                    case '[':
+                        characterClass();
+                        break;
+                    case '(':
+                        if (regex.startsWith("?:", index))
+                        {
+                            result.append("(?:");
+                            index += 2;
+                        }
+                        else if (regex.startsWith("?", index))
+                        {
+                            throw unsupported("(?");
+                        }
+                        else
+                        {
+                            result.append('(');
+                        }
+                        break;
+                    case '{':
+                        final int close = regex.indexOf('}', index);
+                        if (close < 0)
+                        {
+                            throw unsupported("{");
+                        }
+                        result.append(regex, index - 1, close + 1);
+                        index = close + 1;
+                        break;
+                    case '.':
+                    case ')':
+                    case '|':
+                    case '*':
+                    case '+':
+                    case '?':
+                    case '^':
+                    case '$':
+                        result.append((char) c);
+                        break;
+                    default:
+                        appendEncrypted(c);
+                }
+            }
+            return result.toString();
+        }
+
+        private void escape()
+        {
+            if (index >= regex.length())
+            {
+                throw unsupported("\\");
+            }
+            final int c = regex.codePointAt(index);
+            index += Character.charCount(c);
+            final String members = predefined(c);
+            if (members != null)
+            {
+                appendClass(
+                        Character.isUpperCase(c),
+                        members(members));
+            }
+            else
+            {
+                appendEncrypted(escaped(c));
+            }
+        }
+
+        private void characterClass()
+        {
+            final boolean negated = regex.startsWith("^", index);
+            if (negated)
+            {
+                index++;
+            }
+            final StringBuilder members = new StringBuilder();
+            while (index < regex.length() && regex.charAt(index) != ']')
+            {
+                int c = regex.codePointAt(index);
+                index += Character.charCount(c);
+                if (c == '[' || c == '&' && regex.startsWith("&", index))
+                {
+                    throw unsupported("nested class");
+                }
+                if (c == '\\')
+                {
+                    if (index >= regex.length())
+                    {
+                        throw unsupported("\\");
+                    }
+                    c = regex.codePointAt(index);
+                    index += Character.charCount(c);
+                    final String predefined = predefined(c);
+                    if (predefined != null)
+                    {
+                        if (Character.isUpperCase(c))
+                        {
+                            throw unsupported("negated class within a class");
+                        }
+                        members.append(predefined);
+                        continue;
+                    }
+                    c = escaped(c);
+                    // Escape the member, in case it's a dash.
+                    members.append('\\');
+                }
+                members.appendCodePoint(c);
+            }
+            if (index >= regex.length())
+            {
+                throw unsupported("[");
+            }
+            index++;
+            appendClass(negated, members(members.toString()));
+        }
+
+        /**
+         * Expands members such as {@code a-z0} into the code points they
+         * contain; a dash is a literal if it's escaped, or first or last.
+         */
+        private static int[] members(final String members)
+        {
+            final List<Integer> codePoints = new ArrayList<>();
+            for (int i = 0; i < members.length(); )
+            {
+                if (members.charAt(i) == '\\')
+                {
+                    i++;
+                }
+                final int first = members.codePointAt(i);
+                i += Character.charCount(first);
+
+                if (i + 1 < members.length() && members.charAt(i) == '-')
+                {
+                    i++;
+                    if (members.charAt(i) == '\\')
+                    {
+                        i++;
+                    }
+                    final int last = members.codePointAt(i);
+                    i += Character.charCount(last);
+                    if (last < first)
+                    {
+                        throw new IllegalArgumentException(String.format(
+                                "Illegal character range U+%04X-U+%04X",
+                                first,
+                                last));
+                    }
+                    for (int c = first; c <= last; c++)
+                    {
+                        codePoints.add(c);
+                    }
+                }
+                else
+                {
+                    codePoints.add(first);
+                }
+            }
+            return codePoints.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Appends a class of the encrypted {@code members}, as ranges of
+         * consecutive code points.
+         */
+        private void appendClass(final boolean negated, final int[] members)
+        {
+            final int[] encrypted = new int[members.length];
+            for (int i = 0; i < members.length; i++)
+            {
+                encrypted[i] = encrypt(members[i]);
+            }
+            Arrays.sort(encrypted);
+
+            result.append(negated ? "[^" : "[");
+            for (int i = 0; i < encrypted.length; )
+            {
+                int j = i;
+                while (j + 1 < encrypted.length
+                        && encrypted[j + 1] <= encrypted[j] + 1)
+                {
+                    j++;
+                }
+                appendCodePoint(encrypted[i]);
+                if (encrypted[j] != encrypted[i])
+                {
+                    result.append('-');
+                    appendCodePoint(encrypted[j]);
+                }
+                i = j + 1;
+            }
+            if (encrypted.length == 0)
+            {
+                throw unsupported("empty class");
+            }
+            result.append(']');
+        }
+
+        private void appendEncrypted(final int codePoint)
+        {
+            appendCodePoint(encrypt(codePoint));
+        }
+
+        private void appendCodePoint(final int codePoint)
+        {
+            result.append(String.format("\\x{%X}", codePoint));
+        }
+
+        private int encrypt(final int codePoint)
+        {
+            return cipher
+                    .encrypt(new String(Character.toChars(codePoint)))
+                    .codePointAt(0);
+        }
+
+        /**
+         * @return the members of the predefined class {@code \c} (or its
+         *     negation), or {@code null} if it isn't one.
+         */
+        private static String predefined(final int c)
+        {
+            switch (Character.toLowerCase(c))
+            {
+                case 'd':
+                    return DIGITS;
+                case 'w':
+                    return WORD;
+                case 's':
+                    return SPACE;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return the character {@code \c} matches.
+         */
+        private int escaped(final int c)
+        {
+            switch (c)
+            {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                default:
+                    if (Character.isLetterOrDigit(c))
+                    {
+                        throw unsupported("\\" + (char) c);
+                    }
+                    return c;
+            }
+        }
+
+        private IllegalArgumentException unsupported(final String construct)
+        {
+            return new IllegalArgumentException(
+                    "Unsupported or invalid " + construct + " in " + regex);
+        }
+    }
+}
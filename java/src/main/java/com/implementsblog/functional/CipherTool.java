@@ -0,0 +1,578 @@
+package com.implementsblog.functional;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The command line tool of the runnable jar: encrypts or decrypts a file, a
+ * directory tree, or standard input, with any of the ciphers, e.g.,
+ * <pre>
+ *     java -jar functional.jar -t 8 vigenere:lemon in/ out/
+ *     java -jar functional.jar -d caesar:3 &lt; secret.txt
+ * </pre>
+ * Files are streamed through a {@link CipherInputStream}, so they're never
+ * read into memory as a whole, and the files of a directory tree are
+ * processed concurrently on a fixed number of threads. Once done, the
+ * throughput is printed to standard error.
+ */
+public final class CipherTool
+{
+    /**
+     * The number of bytes read, encrypted and written at a time.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String USAGE = String.join(
+            System.lineSeparator(),
+            "Usage: java -jar functional.jar [options] <cipher> [source"
+                    + " [destination]]",
+            "",
+            "Encrypts the UTF-8 encoded source file, or every file of the"
+                    + " source",
+            "directory into the same path under the destination directory."
+                    + " The source",
+            "and destination default to standard input and output, as does"
+                    + " '-'.",
+            "",
+            "Ciphers:",
+            "  caesar:<shift>",
+            "  atbash",
+            "  affine:<key1>:<key2>",
+            "  vigenere:<key>",
+            "  beaufort:<key>",
+            "  autokey:<key>",
+            "",
+            "Options:",
+            "  -d, --decrypt        decrypt rather than encrypt",
+            "  -t, --threads <n>    the number of files processed at once"
+                    + " (default: one",
+            "                       per processor)",
+            "  -r, --ranges <r,...> the code points to encrypt (default:"
+                    + " ascii), each",
+            "                       ascii, latin1, greek, cyrillic, or a range"
+                    + " such as",
+            "                       0-9 or U+0391-U+03A9");
+
+    /**
+     * Runs the tool, and exits with its status.
+     *
+     * @param args the command line arguments, as described by {@code
+     *     --help}
+     */
+    public static void main(final String[] args)
+    {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args the command line arguments
+     * @param in standard input
+     * @param out standard output
+     * @param err standard error, for the throughput, errors and usage
+     *
+     * @return the exit status: {@code 0} if successful, {@code 1} if any
+     *     file couldn't be processed, or {@code 2} if the arguments are
+     *     invalid.
+     */
+    static int run(
+            final String[] args,
+            final InputStream in,
+            final OutputStream out,
+            final PrintStream err)
+    {
+        boolean decrypt = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        CodePointRanges ranges = null;
+        final List<String> operands = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-h":
+                    case "--help":
+                        err.println(USAGE);
+                        return 0;
+                    case "-d":
+                    case "--decrypt":
+                        decrypt = true;
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        if (threads < 1)
+                        {
+                            throw new IllegalArgumentException(
+                                    "threads must be positive: " + threads);
+                        }
+                        break;
+                    case "-r":
+                    case "--ranges":
+                        ranges = parseRanges(value(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("-") && args[i].length() > 1)
+                        {
+                            throw new IllegalArgumentException(
+                                    "unknown option: " + args[i]);
+                        }
+                        operands.add(args[i]);
+                }
+            }
+            if (operands.isEmpty() || operands.size() > 3)
+            {
+                throw new IllegalArgumentException(
+                        "expected a cipher, and an optional source and"
+                                + " destination");
+            }
+
+            final Cipher encryption = parseCipher(operands.get(0), ranges);
+            final Cipher cipher = decrypt
+                    ? encryption.inverse()
+                    : encryption;
+            final Path source = path(operands, 1);
+            final Path destination = path(operands, 2);
+            if (source != null && Files.isDirectory(source)
+                    && destination == null)
+            {
+                throw new IllegalArgumentException(
+                        "a destination directory is needed to "
+                                + (decrypt ? "decrypt" : "encrypt")
+                                + " a directory");
+            }
+
+            final long start = System.nanoTime();
+            final Totals totals = source != null && Files.isDirectory(source)
+                    ? applyTree(cipher, source, destination, threads, err)
+                    : apply(cipher, source, destination, in, out);
+            err.println(totals.report(
+                    decrypt ? "Decrypted" : "Encrypted",
+                    System.nanoTime() - start));
+            return totals.failures == 0 ? 0 : 1;
+        }
+        catch (IllegalArgumentException e)
+        {
+            err.println("error: " + e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            err.println("error: " + e);
+            return 1;
+        }
+    }
+
+    /**
+     * Parses a cipher, as listed by {@code --help}.
+     *
+     * @param spec the cipher, e.g., {@code affine:5:8}
+     * @param ranges the code points to encrypt, or {@code null} for [a-z]
+     *     and [A-Z]
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code spec} isn't a valid cipher.
+     */
+    static Cipher parseCipher(final String spec, final CodePointRanges ranges)
+    {
+        final CodePointRanges codePointRanges = ranges == null
+                ? CodePointRanges.ASCII_LETTERS
+                : ranges;
+        final String[] parts = spec.split(":", -1);
+        final String name = parts[0].toLowerCase(Locale.ROOT);
+        switch (name)
+        {
+            case "caesar":
+                checkParts(spec, parts, 2);
+                return CaesarCipher.withShiftInRanges(
+                        Integer.parseInt(parts[1]),
+                        codePointRanges);
+            case "atbash":
+                checkParts(spec, parts, 1);
+                return AtbashCipher.inRanges(codePointRanges);
+            case "affine":
+                checkParts(spec, parts, 3);
+                return AffineCipher.withKeys(
+                        Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]),
+                        codePointRanges);
+            case "vigenere":
+            case "beaufort":
+            case "autokey":
+                final String key = spec.substring(name.length() + 1);
+                if (parts.length < 2 || key.isEmpty())
+                {
+                    throw new IllegalArgumentException(
+                            "expected " + name + ":<key>: " + spec);
+                }
+                return name.equals("vigenere")
+                        ? VigenereCipher.withKey(key, codePointRanges)
+                        : name.equals("beaufort")
+                                ? VigenereCipher.beaufort(key, codePointRanges)
+                                : VigenereCipher.autokey(key, codePointRanges);
+            default:
+                throw new IllegalArgumentException("unknown cipher: " + spec);
+        }
+    }
+
+    /**
+     * Parses comma separated code point ranges, each a name ({@code ascii},
+     * {@code latin1}, {@code greek} or {@code cyrillic}), or two code points
+     * separated by a dash, each a single character or {@code U+} and its
+     * hexadecimal value, e.g., {@code a-f} or {@code U+0391-U+03A9}.
+     *
+     * @param spec the ranges
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code spec} isn't a valid list of
+     *     ranges, or the ranges overlap.
+     */
+    static CodePointRanges parseRanges(final String spec)
+    {
+        final CodePointRanges.Builder builder = CodePointRanges.builder();
+        for (final String range : spec.split(","))
+        {
+            switch (range.toLowerCase(Locale.ROOT))
+            {
+                case "ascii":
+                    builder.add(CodePointRanges.ASCII_LETTERS);
+                    break;
+                case "latin1":
+                    builder.add(CodePointRanges.LATIN_1_LETTERS);
+                    break;
+                case "greek":
+                    builder.add(CodePointRanges.GREEK_LETTERS);
+                    break;
+                case "cyrillic":
+                    builder.add(CodePointRanges.CYRILLIC_LETTERS);
+                    break;
+                default:
+                    final int dash = range.isEmpty()
+                            ? -1
+                            : range.indexOf('-', Character.charCount(
+                                    range.codePointAt(0)));
+                    if (dash < 0)
+                    {
+                        throw new IllegalArgumentException(
+                                "unknown range: " + range);
+                    }
+                    builder.add(
+                            codePoint(range.substring(0, dash)),
+                            codePoint(range.substring(dash + 1)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encrypts every regular file under {@code source} into the same path
+     * under {@code destination}, on {@code threads} threads.
+     */
+    private static Totals applyTree(
+            final Cipher cipher,
+            final Path source,
+            final Path destination,
+            final int threads,
+            final PrintStream err) throws IOException
+    {
+        final List<Path> files;
+        try (Stream<Path> paths = Files.walk(source))
+        {
+            files = paths
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<Long>> results = new ArrayList<>(files.size());
+            for (final Path file : files)
+            {
+                final Path target = destination.resolve(
+                        source.relativize(file).toString());
+                results.add(executor.submit(() -> {
+                    Files.createDirectories(
+                            target.toAbsolutePath().getParent());
+                    return apply(cipher, file, target);
+                }));
+            }
+
+            final Totals totals = new Totals();
+            for (int i = 0; i < files.size(); i++)
+            {
+                try
+                {
+                    totals.add(getUninterruptibly(results.get(i)));
+                }
+                catch (ExecutionException e)
+                {
+                    err.println("error: " + files.get(i) + ": " + e.getCause());
+                    totals.failures++;
+                }
+            }
+            return totals;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Encrypts a single file, or standard input, on the calling thread.
+     */
+    private static Totals apply(
+            final Cipher cipher,
+            final Path source,
+            final Path destination,
+            final InputStream in,
+            final OutputStream out) throws IOException
+    {
+        final Totals totals = new Totals();
+        if (source != null && destination != null)
+        {
+            totals.add(apply(cipher, source, destination));
+            return totals;
+        }
+
+        try (InputStream input = source == null
+                ? new NonClosingInputStream(in)
+                : Files.newInputStream(source);
+             OutputStream output = destination == null
+                     ? new NonClosingOutputStream(out)
+                     : Files.newOutputStream(destination))
+        {
+            totals.add(copy(cipher, input, output));
+        }
+        return totals;
+    }
+
+    /**
+     * Encrypts the {@code source} file into the {@code destination} file.
+     *
+     * @return the number of bytes encrypted.
+     */
+    private static long apply(
+            final Cipher cipher,
+            final Path source,
+            final Path destination) throws IOException
+    {
+        if (Files.exists(destination) && Files.isSameFile(source, destination))
+        {
+            throw new IOException(
+                    "Can't stream a file into itself; use FileCipher to"
+                            + " encrypt it in place: " + source);
+        }
+        try (InputStream input = Files.newInputStream(source);
+             OutputStream output = Files.newOutputStream(destination))
+        {
+            return copy(cipher, input, output);
+        }
+    }
+
+    /**
+     * @return the number of bytes encrypted.
+     */
+    private static long copy(
+            final Cipher cipher,
+            final InputStream in,
+            final OutputStream out) throws IOException
+    {
+        final InputStream encrypted =
+                new CipherInputStream(in, cipher, BUFFER_SIZE);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        for (int read; (read = encrypted.read(buffer)) >= 0; )
+        {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        out.flush();
+        return total;
+    }
+
+    private static <T> T getUninterruptibly(final Future<T> future)
+            throws ExecutionException
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the path of the {@code index}-th operand, or {@code null} if
+     *     it's missing or {@code -}.
+     */
+    private static Path path(final List<String> operands, final int index)
+    {
+        return index < operands.size() && !operands.get(index).equals("-")
+                ? Paths.get(operands.get(index))
+                : null;
+    }
+
+    private static String value(final String[] args, final int index)
+    {
+        if (index >= args.length)
+        {
+            throw new IllegalArgumentException(
+                    "missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void checkParts(
+            final String spec,
+            final String[] parts,
+            final int expected)
+    {
+        if (parts.length != expected)
+        {
+            throw new IllegalArgumentException(
+                    "expected " + (expected - 1) + " key(s): " + spec);
+        }
+    }
+
+    private static int codePoint(final String codePoint)
+    {
+        if (codePoint.startsWith("U+") || codePoint.startsWith("u+"))
+        {
+            return Integer.parseInt(codePoint.substring(2), 16);
+        }
+        if (codePoint.codePointCount(0, codePoint.length()) != 1)
+        {
+            throw new IllegalArgumentException(
+                    "expected a character or U+<hex>: " + codePoint);
+        }
+        return codePoint.codePointAt(0);
+    }
+
+    /**
+     * The number of files and bytes processed, and of files that failed.
+     */
+    private static final class Totals
+    {
+        private long files;
+        private long bytes;
+        private long failures;
+
+        void add(final long fileBytes)
+        {
+            files++;
+            bytes += fileBytes;
+        }
+
+        /**
+         * @return e.g., {@code Encrypted 12 files (345.6 MB) in 1.234 s:
+         *     280.1 MB/s, 9.7 files/s}.
+         */
+        String report(final String verb, final long nanos)
+        {
+            final double seconds = Math.max(nanos, 1) / 1e9;
+            final double megabytes = bytes / 1e6;
+            return String.format(
+                    Locale.ROOT,
+                    "%s %d file%s (%.1f MB) in %.3f s: %.1f MB/s,"
+                            + " %.1f files/s%s",
+                    verb,
+                    files,
+                    files == 1 ? "" : "s",
+                    megabytes,
+                    seconds,
+                    megabytes / seconds,
+                    files / seconds,
+                    failures == 0 ? "" : "; " + failures + " failed");
+        }
+    }
+
+    /**
+     * Keeps standard input open after the tool is done with it.
+     */
+    private static final class NonClosingInputStream
+            extends FilterInputStream
+    {
+        NonClosingInputStream(final InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Keeps standard output open after the tool is done with it.
+     */
+    private static final class NonClosingOutputStream
+            extends FilterOutputStream
+    {
+        NonClosingOutputStream(final OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(
+                final byte[] bytes,
+                final int offset,
+                final int length) throws IOException
+        {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+    }
+
+    private CipherTool()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
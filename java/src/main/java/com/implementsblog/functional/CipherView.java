@@ -0,0 +1,299 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A read-only view of a text as encrypted by a {@link Cipher}, that encrypts
+ * its chars as they're read, rather than copying the whole text; see {@link
+ * Cipher#view(CharSequence)}.
+ * <p>
+ * Ciphers backed by a {@link SubstitutionTable}, e.g., the Caesar, Atbash and
+ * Affine ciphers, are applied to each char on demand, so {@link #charAt(int)}
+ * and {@link #subSequence(int, int)} are as cheap as they are on the text,
+ * and {@link #writeTo(Appendable)} encrypts through a small buffer. Other
+ * ciphers (e.g., the Vigen&egrave;re cipher, whose key depends on the
+ * position of each letter) are applied to the whole text the first time a
+ * char is read, and only {@link #writeTo(Appendable)} of the whole view
+ * avoids that copy.
+ * <p>
+ * A surrogate pair is encrypted as the code point it encodes, even if the
+ * view only includes one of its chars. The view reads the text every time,
+ * so it reflects changes to a mutable text, e.g., a {@link StringBuilder}
+ * (other than of its length), only for ciphers backed by a table.
+ */
+public final class CipherView implements CharSequence
+{
+    /**
+     * The number of chars encrypted at a time by {@link #writeTo(Appendable)}.
+     */
+    static final int BUFFER_SIZE = 1024;
+
+    private final CharSequence text;
+    private final int start;
+    private final int end;
+
+    /**
+     * The table to apply to each char, or {@code null} to apply the {@code
+     * cipher} to the whole text.
+     */
+    private final SubstitutionTable table;
+    private final Cipher cipher;
+
+    /**
+     * The view of the whole text, that caches the encrypted text for the
+     * views of its parts; {@code this} for the view of the whole text.
+     */
+    private final CipherView root;
+    private volatile String encrypted;
+
+    /**
+     * @param text the text to view
+     * @param table the table that encrypts each char
+     */
+    CipherView(final CharSequence text, final SubstitutionTable table)
+    {
+        this.text = text;
+        this.start = 0;
+        this.end = text.length();
+        this.table = table;
+        this.cipher = null;
+        this.root = this;
+    }
+
+    /**
+     * @param text the text to view
+     * @param cipher the cipher that encrypts the whole text
+     */
+    CipherView(final CharSequence text, final Cipher cipher)
+    {
+        this.text = text;
+        this.start = 0;
+        this.end = text.length();
+        this.table = null;
+        this.cipher = cipher;
+        this.root = this;
+    }
+
+    private CipherView(final CipherView root, final int start, final int end)
+    {
+        this.text = root.text;
+        this.start = start;
+        this.end = end;
+        this.table = root.table;
+        this.cipher = root.cipher;
+        this.root = root;
+    }
+
+    @Override
+    public int length()
+    {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0 || index >= end - start)
+        {
+            throw new IndexOutOfBoundsException(
+                    "index " + index + ", length " + (end - start));
+        }
+        return table == null
+                ? root.encrypted().charAt(start + index)
+                : substitute(start + index);
+    }
+
+    /**
+     * @return a view of the given part of this view, sharing its text (and
+     *     its encryption, if the cipher isn't backed by a table); never
+     *     {@code null}.
+     */
+    @Override
+    public CipherView subSequence(final int start, final int end)
+    {
+        if (start < 0 || start > end || end > length())
+        {
+            throw new IndexOutOfBoundsException(
+                    "start " + start + ", end " + end + ", length "
+                            + length());
+        }
+        return new CipherView(root, this.start + start, this.start + end);
+    }
+
+    /**
+     * Appends the encrypted chars of this view to {@code appendable},
+     * without creating a string of them; {@link Writer}s and {@link
+     * StringBuilder}s are written to directly from the buffer.
+     *
+     * @param appendable where to append the encrypted chars
+     *
+     * @throws IOException if {@code appendable} throws it.
+     */
+    public void writeTo(final Appendable appendable) throws IOException
+    {
+        if (table == null)
+        {
+            if (root.encrypted != null || this != root)
+            {
+                appendable.append(root.encrypted(), start, end);
+            }
+            else
+            {
+                writeTo(appendable, cipher.session());
+            }
+            return;
+        }
+
+        // The first and last chars may be half of a pair that straddles the
+        // bounds of this view, which the table can't see in the buffer.
+        int index = start;
+        if (index < end && Character.isLowSurrogate(text.charAt(index)))
+        {
+            appendable.append(substitute(index++));
+        }
+        final int limit = index < end
+                && Character.isHighSurrogate(text.charAt(end - 1))
+                ? end - 1
+                : end;
+
+        final char[] buffer = new char[Math.min(BUFFER_SIZE, limit - index)];
+        while (index < limit)
+        {
+            final int length = chunk(index, limit, buffer.length);
+            for (int i = 0; i < length; i++)
+            {
+                buffer[i] = text.charAt(index + i);
+            }
+            table.apply(buffer, 0, buffer, 0, length);
+            append(appendable, buffer, length);
+            index += length;
+        }
+        if (limit < end)
+        {
+            appendable.append(substitute(limit));
+        }
+    }
+
+    /**
+     * @return the encrypted chars of this view; never {@code null}.
+     */
+    @Override
+    public String toString()
+    {
+        if (table == null)
+        {
+            return root.encrypted().substring(start, end);
+        }
+
+        final StringBuilder builder = new StringBuilder(length());
+        try
+        {
+            writeTo(builder);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Encrypts the whole text with a session of the cipher, a buffer at a
+     * time.
+     */
+    private void writeTo(final Appendable appendable, final Cipher session)
+            throws IOException
+    {
+        final StringBuilder buffer = new StringBuilder(
+                Math.min(BUFFER_SIZE, end));
+        for (int index = 0; index < end; )
+        {
+            final int length = chunk(index, end, BUFFER_SIZE);
+            buffer.setLength(0);
+            session.encrypt(text, index, index + length, buffer);
+            appendable.append(buffer);
+            index += length;
+        }
+    }
+
+    /**
+     * @return the number of chars from {@code index} to encrypt at once: at
+     *     most {@code maximum}, and not ending between the chars of a
+     *     surrogate pair, unless at {@code limit}.
+     */
+    private int chunk(final int index, final int limit, final int maximum)
+    {
+        int length = Math.min(maximum, limit - index);
+        if (index + length < limit
+                && length > 1
+                && Character.isHighSurrogate(text.charAt(index + length - 1)))
+        {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Encrypts the char of the text at {@code index}, with the other half of
+     * its surrogate pair, if any.
+     */
+    private char substitute(final int index)
+    {
+        final char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < text.length())
+        {
+            final char low = text.charAt(index + 1);
+            if (Character.isLowSurrogate(low))
+            {
+                return Character.highSurrogate(table.applyAsInt(
+                        Character.toCodePoint(c, low)));
+            }
+        }
+        else if (Character.isLowSurrogate(c) && index > 0)
+        {
+            final char high = text.charAt(index - 1);
+            if (Character.isHighSurrogate(high))
+            {
+                return Character.lowSurrogate(table.applyAsInt(
+                        Character.toCodePoint(high, c)));
+            }
+        }
+        return Character.isSurrogate(c) ? c : (char) table.applyAsInt(c);
+    }
+
+    /**
+     * @return the whole text, encrypted the first time it's needed.
+     */
+    private String encrypted()
+    {
+        String encrypted = this.encrypted;
+        if (encrypted == null)
+        {
+            encrypted = cipher.encrypt(text.toString());
+            this.encrypted = encrypted;
+        }
+        return encrypted;
+    }
+
+    private static void append(
+            final Appendable appendable,
+            final char[] buffer,
+            final int length) throws IOException
+    {
+        if (appendable instanceof Writer)
+        {
+            ((Writer) appendable).write(buffer, 0, length);
+        }
+        else if (appendable instanceof StringBuilder)
+        {
+            ((StringBuilder) appendable).append(buffer, 0, length);
+        }
+        else
+        {
+            appendable.append(CharBuffer.wrap(buffer, 0, length));
+        }
+    }
+}
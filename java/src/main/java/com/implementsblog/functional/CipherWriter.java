@@ -0,0 +1,198 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that encrypts chars before writing them to another {@code
+ * Writer}. To decrypt instead, pass the {@link Cipher#inverse() inverse}
+ * cipher.
+ * <p>
+ * Chars are buffered and encrypted in chunks of a fixed size, so memory use
+ * doesn't depend on the length of the text. A trailing high surrogate is held
+ * back, even by {@link #flush()}, until the char after it is written, so
+ * surrogate pairs are always encrypted as a whole; {@link #close()} writes
+ * everything.
+ * <p>
+ * All chunks are encrypted with one {@link Cipher#session() session} of the
+ * cipher, so a polyalphabetic cipher's key stream carries on from one chunk
+ * to the next.
+ */
+public final class CipherWriter extends Writer
+{
+    private final Writer out;
+    private final Cipher cipher;
+
+    /**
+     * The first {@code length} chars are waiting to be encrypted.
+     */
+    private final char[] buffer;
+    private int length;
+    private boolean closed;
+
+    /**
+     * @param out the writer to write cipher text to
+     * @param cipher the cipher to encrypt with
+     */
+    public CipherWriter(final Writer out, final Cipher cipher)
+    {
+        this(out, cipher, CipherReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out the writer to write cipher text to
+     * @param cipher the cipher to encrypt with
+     * @param bufferSize the number of chars to encrypt and write at a time
+     *
+     * @throws IllegalArgumentException if {@code bufferSize < 2}.
+     */
+    public CipherWriter(
+            final Writer out,
+            final Cipher cipher,
+            final int bufferSize)
+    {
+        super(out);
+        if (bufferSize < 2)
+        {
+            throw new IllegalArgumentException(
+                    "bufferSize must hold a surrogate pair: " + bufferSize);
+        }
+        this.out = out;
+        this.cipher = cipher.session();
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    public void write(final int c) throws IOException
+    {
+        synchronized (lock)
+        {
+            ensureOpen();
+            if (length == buffer.length)
+            {
+                drain(false);
+            }
+            buffer[length++] = (char) c;
+        }
+    }
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length)
+            throws IOException
+    {
+        SubstitutionTable.checkBounds(chars.length, offset, length);
+        synchronized (lock)
+        {
+            ensureOpen();
+            for (int written = 0; written < length; )
+            {
+                if (this.length == buffer.length)
+                {
+                    drain(false);
+                }
+                final int write = Math.min(
+                        length - written,
+                        buffer.length - this.length);
+                System.arraycopy(
+                        chars,
+                        offset + written,
+                        buffer,
+                        this.length,
+                        write);
+                this.length += write;
+                written += write;
+            }
+        }
+    }
+
+    @Override
+    public void write(final String string, final int offset, final int length)
+            throws IOException
+    {
+        SubstitutionTable.checkBounds(string.length(), offset, length);
+        synchronized (lock)
+        {
+            ensureOpen();
+            for (int written = 0; written < length; )
+            {
+                if (this.length == buffer.length)
+                {
+                    drain(false);
+                }
+                final int write = Math.min(
+                        length - written,
+                        buffer.length - this.length);
+                string.getChars(
+                        offset + written,
+                        offset + written + write,
+                        buffer,
+                        this.length);
+                this.length += write;
+                written += write;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        synchronized (lock)
+        {
+            ensureOpen();
+            drain(false);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (lock)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            try
+            {
+                drain(true);
+                out.flush();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Encrypts and writes the buffered chars, except for a trailing high
+     * surrogate unless {@code all} is {@code true}.
+     */
+    private void drain(final boolean all) throws IOException
+    {
+        final int drain = !all
+                && length > 0
+                && Character.isHighSurrogate(buffer[length - 1])
+                ? length - 1
+                : length;
+
+        cipher.encrypt(buffer, 0, buffer, 0, drain);
+        out.write(buffer, 0, drain);
+
+        if (drain < length)
+        {
+            buffer[0] = buffer[drain];
+        }
+        length -= drain;
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+    }
+}
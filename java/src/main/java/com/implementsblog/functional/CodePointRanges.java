@@ -0,0 +1,345 @@
+package com.implementsblog.functional;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+
+/**
+ * An immutable set of non-overlapping, inclusive ranges of code points, such
+ * as [A-Z] and [a-z], that a substitution cipher is applied within.
+ * <p>
+ * Each range is substituted separately, e.g., a Caesar cipher over [A-Z] and
+ * [a-z] turns 'Z' into 'A' rather than into 'a', so adjacent ranges are kept
+ * apart rather than merged.
+ * <p>
+ * The ranges are validated once, when they're created, and are held in sorted
+ * {@code int} arrays, so looking up the range containing a code point is a
+ * binary search that doesn't allocate.
+ */
+public final class CodePointRanges
+{
+    /**
+     * The ranges [A-Z] and [a-z].
+     */
+    public static final CodePointRanges ASCII_LETTERS =
+            of('A', 'Z', 'a', 'z');
+
+    /**
+     * The letters of ISO 8859-1: the {@link #ASCII_LETTERS}, the upper case
+     * letters [U+00C0-U+00D6] and [U+00D8-U+00DE], and the lower case letters
+     * [U+00DF-U+00F6] and [U+00F8-U+00FF].
+     */
+    public static final CodePointRanges LATIN_1_LETTERS = builder()
+            .add(ASCII_LETTERS)
+            .add(0xC0, 0xD6)
+            .add(0xD8, 0xDE)
+            .add(0xDF, 0xF6)
+            .add(0xF8, 0xFF)
+            .build();
+
+    /**
+     * The modern Greek alphabet: the upper case letters [U+0391-U+03A1] and
+     * [U+03A3-U+03A9] (skipping the unassigned U+03A2), and the lower case
+     * letters [U+03B1-U+03C9].
+     */
+    public static final CodePointRanges GREEK_LETTERS =
+            of(0x391, 0x3A1, 0x3A3, 0x3A9, 0x3B1, 0x3C9);
+
+    /**
+     * The basic Russian alphabet: the upper case letters [U+0410-U+042F] and
+     * the lower case letters [U+0430-U+044F].
+     */
+    public static final CodePointRanges CYRILLIC_LETTERS =
+            of(0x410, 0x42F, 0x430, 0x44F);
+
+    /**
+     * The first and last code point of each range, in ascending order.
+     */
+    private final int[] lowest;
+    private final int[] highest;
+
+    /**
+     * Whether every code point in the ranges is a single, non-surrogate char.
+     */
+    private final boolean bmpOnly;
+
+    private CodePointRanges(final int[] lowest, final int[] highest)
+    {
+        this.lowest = lowest;
+        this.highest = highest;
+
+        boolean bmpOnly = true;
+        for (int range = 0; range < lowest.length; range++)
+        {
+            bmpOnly &= highest[range] < Character.MIN_SURROGATE
+                    || lowest[range] > Character.MAX_SURROGATE
+                    && highest[range] <= Character.MAX_VALUE;
+        }
+        this.bmpOnly = bmpOnly;
+    }
+
+    /**
+     * Creates ranges from pairs of code points, where even indices designate
+     * the beginning (inclusive) of a range, and odd indices designate the
+     * ending (inclusive) of that range. The ranges can be given in any order.
+     *
+     * @param bounds the first and last code point of each range
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code bounds} contains an odd
+     *     number of elements, or see {@link Builder#build()}.
+     */
+    public static CodePointRanges of(final int... bounds)
+    {
+        if (bounds.length % 2 != 0)
+        {
+            throw new IllegalArgumentException(
+                    "bounds must come in pairs: " + bounds.length);
+        }
+
+        final Builder builder = new Builder();
+        for (int i = 0; i < bounds.length; i += 2)
+        {
+            builder.add(bounds[i], bounds[i + 1]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates ranges from a sorted set of code points, where even indices
+     * designate the beginning (inclusive) of a range, and odd indices
+     * designate the ending (inclusive) of that range; this is the form taken
+     * by e.g., {@link CaesarCipher#encrypt(String, int, SortedSet)}.
+     *
+     * @param bounds the first and last code point of each range
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code bounds} contains an odd
+     *     number of elements, or see {@link Builder#build()}.
+     */
+    public static CodePointRanges of(final SortedSet<Integer> bounds)
+    {
+        return of(bounds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * @return a builder of new ranges, never {@code null}.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of ranges.
+     */
+    public int size()
+    {
+        return lowest.length;
+    }
+
+    /**
+     * @param range the index of a range, from {@code 0} to {@code size() - 1}
+     *
+     * @return the first code point of the range.
+     */
+    public int lowest(final int range)
+    {
+        return lowest[range];
+    }
+
+    /**
+     * @param range the index of a range, from {@code 0} to {@code size() - 1}
+     *
+     * @return the last code point of the range.
+     */
+    public int highest(final int range)
+    {
+        return highest[range];
+    }
+
+    /**
+     * @param codePoint any code point
+     *
+     * @return the index of the range that contains {@code codePoint}, or
+     *     {@code -1} if none does.
+     */
+    public int indexOf(final int codePoint)
+    {
+        int range = Arrays.binarySearch(lowest, codePoint);
+        if (range < 0)
+        {
+            // The range with the greatest beginning below the code point.
+            range = -range - 2;
+        }
+        return range >= 0 && codePoint <= highest[range] ? range : -1;
+    }
+
+    /**
+     * @param codePoint any code point
+     *
+     * @return whether any of the ranges contains {@code codePoint}.
+     */
+    public boolean contains(final int codePoint)
+    {
+        return indexOf(codePoint) >= 0;
+    }
+
+    /**
+     * Whether every code point in these ranges is in the Basic Multilingual
+     * Plane, and isn't a surrogate. If so, a text can be substituted one
+     * {@code char} at a time, without decoding surrogate pairs, since no
+     * supplementary code point (nor half of one) is within the ranges.
+     *
+     * @return {@code true} if no range contains a surrogate or a
+     *     supplementary code point.
+     */
+    public boolean isBmpOnly()
+    {
+        return bmpOnly;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (!(o instanceof CodePointRanges))
+        {
+            return false;
+        }
+        final CodePointRanges other = (CodePointRanges) o;
+        return Arrays.equals(lowest, other.lowest)
+                && Arrays.equals(highest, other.highest);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Arrays.hashCode(lowest) + Arrays.hashCode(highest);
+    }
+
+    /**
+     * @return the ranges, e.g., {@code [U+0041-U+005A, U+0061-U+007A]}.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int range = 0; range < lowest.length; range++)
+        {
+            if (range > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(String.format(
+                    "U+%04X-U+%04X",
+                    lowest[range],
+                    highest[range]));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Collects ranges in any order, and validates them once they're all
+     * known.
+     */
+    public static final class Builder
+    {
+        /**
+         * Each range, packed as its lowest code point in the high 32 bits and
+         * its highest code point in the low 32 bits, so that sorting the
+         * packed ranges sorts them by their lowest code point.
+         */
+        private long[] ranges = new long[8];
+        private int size;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Adds the range from {@code lowest} to {@code highest}, inclusive.
+         *
+         * @param lowest the first code point of the range
+         * @param highest the last code point of the range
+         *
+         * @return this builder.
+         */
+        public Builder add(final int lowest, final int highest)
+        {
+            if (size == ranges.length)
+            {
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = (long) lowest << 32 | highest & 0xFFFFFFFFL;
+            return this;
+        }
+
+        /**
+         * Adds each of the given {@code codePointRanges}.
+         *
+         * @param codePointRanges the ranges to add
+         *
+         * @return this builder.
+         */
+        public Builder add(final CodePointRanges codePointRanges)
+        {
+            for (int range = 0; range < codePointRanges.size(); range++)
+            {
+                add(codePointRanges.lowest[range],
+                        codePointRanges.highest[range]);
+            }
+            return this;
+        }
+
+        /**
+         * @return the ranges added so far, never {@code null}.
+         *
+         * @throws IllegalArgumentException if a range contains an invalid
+         *     code point, ends before it begins, or overlaps another range.
+         */
+        public CodePointRanges build()
+        {
+            final long[] sorted = Arrays.copyOf(ranges, size);
+            Arrays.sort(sorted);
+
+            final int[] lowest = new int[size];
+            final int[] highest = new int[size];
+            for (int range = 0; range < size; range++)
+            {
+                lowest[range] = (int) (sorted[range] >> 32);
+                highest[range] = (int) sorted[range];
+
+                if (!Character.isValidCodePoint(lowest[range])
+                        || !Character.isValidCodePoint(highest[range]))
+                {
+                    throw new IllegalArgumentException(String.format(
+                            "Range contains an invalid code point: %d-%d",
+                            lowest[range],
+                            highest[range]));
+                }
+                if (lowest[range] > highest[range])
+                {
+                    throw new IllegalArgumentException(String.format(
+                            "Range ends before it begins: U+%04X-U+%04X",
+                            lowest[range],
+                            highest[range]));
+                }
+                if (range > 0 && lowest[range] <= highest[range - 1])
+                {
+                    throw new IllegalArgumentException(String.format(
+                            "Ranges overlap: U+%04X-U+%04X and U+%04X-U+%04X",
+                            lowest[range - 1],
+                            highest[range - 1],
+                            lowest[range],
+                            highest[range]));
+                }
+            }
+            return new CodePointRanges(lowest, highest);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.implementsblog.functional;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Cipher} that encrypts with one cipher, then encrypts the result
+ * with another; see {@link Cipher#andThen(Cipher)}.
+ * <p>
+ * Each part is encrypted by the first cipher into the destination, then by
+ * the second cipher in place, except where the second cipher can't encrypt
+ * in place (a {@link CharBuffer} or {@link StringBuilder} destination), in
+ * which case the intermediate text is copied.
+ */
+final class CompositeCipher implements Cipher
+{
+    private final Cipher first;
+    private final Cipher second;
+    private final CompositeCipher inverse;
+
+    /**
+     * @param first the cipher to encrypt with first
+     * @param second the cipher to encrypt the result of {@code first} with
+     */
+    CompositeCipher(final Cipher first, final Cipher second)
+    {
+        this.first = first;
+        this.second = second;
+        this.inverse = new CompositeCipher(
+                second.inverse(),
+                first.inverse(),
+                this);
+    }
+
+    private CompositeCipher(
+            final Cipher first,
+            final Cipher second,
+            final CompositeCipher inverse)
+    {
+        this.first = first;
+        this.second = second;
+        this.inverse = inverse;
+    }
+
+    @Override
+    public String encrypt(final String text)
+    {
+        return second.encrypt(first.encrypt(text));
+    }
+
+    @Override
+    public String decrypt(final String cipherText)
+    {
+        return inverse.encrypt(cipherText);
+    }
+
+    @Override
+    public void encrypt(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        first.encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+        second.encrypt(
+                destination,
+                destinationOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        final StringBuilder intermediate = new StringBuilder(end - start);
+        first.encrypt(source, start, end, intermediate);
+        second.encrypt(intermediate, 0, intermediate.length(), destination);
+    }
+
+    @Override
+    public void encrypt(final CharBuffer source, final CharBuffer destination)
+    {
+        if (destination.remaining() < source.remaining())
+        {
+            throw new BufferOverflowException();
+        }
+        final CharBuffer intermediate = CharBuffer.allocate(source.remaining());
+        first.encrypt(source, intermediate);
+        intermediate.flip();
+        second.encrypt(intermediate, destination);
+    }
+
+    @Override
+    public void encrypt(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        first.encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+        second.encrypt(
+                destination,
+                destinationOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        final int start = destination.position();
+        first.encrypt(source, destination);
+        final ByteBuffer written = destination.duplicate();
+        written.limit(destination.position());
+        written.position(start);
+        second.encrypt(written);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        first.encrypt(buffer);
+        final ByteBuffer written = buffer.duplicate();
+        written.position(start);
+        second.encrypt(written);
+    }
+
+    @Override
+    public boolean isPositionIndependent()
+    {
+        return first.isPositionIndependent() && second.isPositionIndependent();
+    }
+
+    @Override
+    public boolean substitutes(final int codePoint)
+    {
+        return first.substitutes(codePoint) || second.substitutes(codePoint);
+    }
+
+    @Override
+    public Cipher session()
+    {
+        return isPositionIndependent()
+                ? this
+                : new CompositeCipher(first.session(), second.session());
+    }
+
+    @Override
+    public Cipher inverse()
+    {
+        return inverse;
+    }
+}
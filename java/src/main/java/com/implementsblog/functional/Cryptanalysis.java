@@ -0,0 +1,328 @@
+package com.implementsblog.functional;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Contains functions that recover the key of a Caesar or Affine cipher text
+ * by brute force, ranking every possible key by how closely the text it
+ * decrypts to matches the letter frequencies of English.
+ * <p>
+ * The cipher text is only read once, to count its letters; each key is then
+ * scored from those 26 counts alone, using the chi-squared statistic, without
+ * decrypting the text. Both ciphers substitute letters one for one, so the
+ * text a key decrypts to has the same counts, only permuted.
+ * <p>
+ * Long texts are counted in parallel, on the common {@link
+ * java.util.concurrent.ForkJoinPool}. All functions are thread-safe, so many
+ * cipher texts can also be analysed concurrently, e.g., from a parallel
+ * stream.
+ */
+public final class Cryptanalysis
+{
+    private static final int ALPHABET_SIZE = 26;
+
+    /**
+     * The length at or above which texts are counted in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The relative frequency of each letter, 'a' to 'z', in English text.
+     */
+    private static final double[] ENGLISH = {
+            0.08167, 0.01492, 0.02782, 0.04253, 0.12702, 0.02228, 0.02015,
+            0.06094, 0.06966, 0.00153, 0.00772, 0.04025, 0.02406, 0.06749,
+            0.07507, 0.01929, 0.00095, 0.05987, 0.06327, 0.09056, 0.02758,
+            0.00978, 0.02360, 0.00150, 0.01974, 0.00074,
+    };
+
+    /**
+     * The letter of each ASCII character, from {@code 0} ('a' or 'A') to
+     * {@code 25} ('z' or 'Z'), or {@code 26} for characters that aren't
+     * letters.
+     */
+    private static final byte[] LETTERS = new byte[0x80];
+
+    static
+    {
+        Arrays.fill(LETTERS, (byte) ALPHABET_SIZE);
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++)
+        {
+            LETTERS['a' + letter] = (byte) letter;
+            LETTERS['A' + letter] = (byte) letter;
+        }
+    }
+
+    /**
+     * A possible key, and how well the text it decrypts to matches English.
+     *
+     * @param <K> the type of the key
+     */
+    public static final class Candidate<K>
+    {
+        private final K key;
+        private final Cipher cipher;
+        private final double score;
+
+        private Candidate(final K key, final Cipher cipher, final double score)
+        {
+            this.key = key;
+            this.cipher = cipher;
+            this.score = score;
+        }
+
+        /**
+         * @return never {@code null}.
+         */
+        public K key()
+        {
+            return key;
+        }
+
+        /**
+         * @return the cipher with this candidate's key, never {@code null};
+         *     use {@link Cipher#decrypt(String)} to decrypt the cipher text.
+         */
+        public Cipher cipher()
+        {
+            return cipher;
+        }
+
+        /**
+         * @return the chi-squared statistic of the letters of the decrypted
+         *     text against English; lower is better, and {@code 0} is a
+         *     perfect match.
+         */
+        public double score()
+        {
+            return score;
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + " (" + score + ")";
+        }
+    }
+
+    /**
+     * The pair of keys of an Affine cipher.
+     */
+    public static final class AffineKey
+    {
+        private final Key1 key1;
+        private final Key2 key2;
+
+        private AffineKey(final Key1 key1, final Key2 key2)
+        {
+            this.key1 = key1;
+            this.key2 = key2;
+        }
+
+        /**
+         * @return never {@code null}.
+         */
+        public Key1 key1()
+        {
+            return key1;
+        }
+
+        /**
+         * @return never {@code null}.
+         */
+        public Key2 key2()
+        {
+            return key2;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof AffineKey))
+            {
+                return false;
+            }
+            final AffineKey other = (AffineKey) o;
+            return key1 == other.key1 && key2 == other.key2;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(key1, key2);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "(" + key1 + ", " + key2 + ")";
+        }
+    }
+
+    /**
+     * Ranks all 26 shifts of the Caesar cipher for the given {@code
+     * cipherText}, as passed to {@link CaesarCipher#withShift(int)}.
+     *
+     * @param cipherText text encrypted with {@link CaesarCipher#encrypt(String,
+     *     int)}
+     *
+     * @return the candidates, best first; never {@code null}.
+     */
+    public static List<Candidate<Integer>> caesar(
+            final CharSequence cipherText)
+    {
+        final long[] counts = count(cipherText);
+        final List<Candidate<Integer>> candidates =
+                new ArrayList<>(ALPHABET_SIZE);
+        for (int shift = 0; shift < ALPHABET_SIZE; shift++)
+        {
+            candidates.add(new Candidate<>(
+                    shift,
+                    CaesarCipher.withShift(shift),
+                    score(counts, 1, ALPHABET_SIZE - shift)));
+        }
+        return rank(candidates);
+    }
+
+    /**
+     * Ranks all 312 pairs of keys of the Affine cipher for the given {@code
+     * cipherText}.
+     *
+     * @param cipherText text encrypted with {@link AffineCipher#encrypt(String,
+     *     Key1, Key2)}
+     *
+     * @return the candidates, best first; never {@code null}.
+     */
+    public static List<Candidate<AffineKey>> affine(
+            final CharSequence cipherText)
+    {
+        final long[] counts = count(cipherText);
+        final List<Candidate<AffineKey>> candidates = new ArrayList<>(
+                Key1.values().length * Key2.values().length);
+        for (final Key1 key1 : Key1.values())
+        {
+            final int inverse = key1.getModularMultiplicativeInverse();
+            for (final Key2 key2 : Key2.values())
+            {
+                candidates.add(new Candidate<>(
+                        new AffineKey(key1, key2),
+                        AffineCipher.of(key1, key2),
+                        score(counts, inverse, -inverse * key2.getValue())));
+            }
+        }
+        return rank(candidates);
+    }
+
+    /**
+     * Counts each letter of {@code text}, regardless of case.
+     *
+     * @return the number of each letter, 'a' to 'z'.
+     */
+    static long[] count(final CharSequence text)
+    {
+        final int length = text.length();
+        if (length < PARALLEL_THRESHOLD)
+        {
+            return count(text, 0, length);
+        }
+
+        final int segments = (length + PARALLEL_THRESHOLD - 1)
+                / PARALLEL_THRESHOLD;
+        return IntStream
+                .range(0, segments)
+                .parallel()
+                .mapToObj(segment -> count(
+                        text,
+                        segment * PARALLEL_THRESHOLD,
+                        Math.min(length, (segment + 1) * PARALLEL_THRESHOLD)))
+                .reduce(new long[ALPHABET_SIZE + 1], (left, right) -> {
+                    final long[] sum = new long[left.length];
+                    for (int letter = 0; letter < sum.length; letter++)
+                    {
+                        sum[letter] = left[letter] + right[letter];
+                    }
+                    return sum;
+                });
+    }
+
+    /**
+     * Counts each letter of {@code text} from {@code start} to {@code end};
+     * index {@code 26} counts the characters that aren't letters.
+     */
+    private static long[] count(
+            final CharSequence text,
+            final int start,
+            final int end)
+    {
+        final byte[] letters = LETTERS;
+        final long[] counts = new long[ALPHABET_SIZE + 1];
+        for (int i = start; i < end; i++)
+        {
+            final char c = text.charAt(i);
+            counts[c < letters.length ? letters[c] : ALPHABET_SIZE]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Scores the decryption that maps each cipher text letter {@code x} to
+     * the plain text letter {@code multiplier * x + offset (mod 26)}.
+     *
+     * @param counts the number of each cipher text letter
+     *
+     * @return the chi-squared statistic of the plain text letters.
+     */
+    private static double score(
+            final long[] counts,
+            final int multiplier,
+            final int offset)
+    {
+        long total = 0;
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++)
+        {
+            total += counts[letter];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        double score = 0;
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++)
+        {
+            final int plain = Math.floorMod(
+                    multiplier * letter + offset,
+                    ALPHABET_SIZE);
+            final double expected = total * ENGLISH[plain];
+            final double difference = counts[letter] - expected;
+            score += difference * difference / expected;
+        }
+        return score;
+    }
+
+    private static <K> List<Candidate<K>> rank(
+            final List<Candidate<K>> candidates)
+    {
+        candidates.sort(Comparator.comparingDouble(Candidate::score));
+        return Collections.unmodifiableList(candidates);
+    }
+
+    private Cryptanalysis()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
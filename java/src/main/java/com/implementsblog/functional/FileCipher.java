@@ -0,0 +1,383 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Contains functions that encrypt UTF-8 encoded files.
+ * <p>
+ * Files are memory-mapped and split into segments, whose boundaries never
+ * fall within a UTF-8 sequence, and the segments are encrypted in parallel on
+ * a {@link ForkJoinPool}. Since every code point is substituted independently
+ * of the others, the result is the same as encrypting the whole file at once.
+ * A polyalphabetic cipher's segments are encrypted in parallel from their key
+ * positions if its key stream is periodic, and one after the other if not.
+ * <p>
+ * The bytes are encrypted with {@link Cipher#encrypt(ByteBuffer, ByteBuffer)},
+ * so the cipher must not substitute a code point with one of a different
+ * UTF-8 length; for such ciphers, use a {@link CipherInputStream} instead.
+ */
+public final class FileCipher
+{
+    /**
+     * The largest number of bytes encrypted by a single task.
+     */
+    static final int SEGMENT_SIZE = 1 << 24;
+
+    /**
+     * Encrypts the {@code source} file into the {@code destination} file,
+     * using the common {@link ForkJoinPool}.
+     *
+     * @param source the file containing UTF-8 encoded plain text
+     * @param destination the file to write the cipher text to; it's created,
+     *     or truncated if it exists. It may be the same file as {@code
+     *     source}, in which case the file is encrypted in place.
+     * @param cipher the cipher to encrypt with
+     *
+     * @throws IOException if either file can't be read or written.
+     * @throws UnsupportedOperationException if {@code cipher} substitutes a
+     *     code point with one that has a different UTF-8 length.
+     */
+    public static void encrypt(
+            final Path source,
+            final Path destination,
+            final Cipher cipher) throws IOException
+    {
+        encrypt(source, destination, cipher, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encrypts the {@code source} file into the {@code destination} file, as
+     * {@link #encrypt(Path, Path, Cipher)} does, using the given {@code pool}.
+     *
+     * @param source the file containing UTF-8 encoded plain text
+     * @param destination the file to write the cipher text to
+     * @param cipher the cipher to encrypt with
+     * @param pool the pool to encrypt the segments of the file on
+     *
+     * @throws IOException if either file can't be read or written.
+     */
+    public static void encrypt(
+            final Path source,
+            final Path destination,
+            final Cipher cipher,
+            final ForkJoinPool pool) throws IOException
+    {
+        apply(source, destination, cipher, pool, SEGMENT_SIZE);
+    }
+
+    /**
+     * Decrypts the {@code source} file into the {@code destination} file,
+     * using the common {@link ForkJoinPool}.
+     *
+     * @param source the file containing UTF-8 encoded cipher text
+     * @param destination the file to write the plain text to, as in {@link
+     *     #encrypt(Path, Path, Cipher)}
+     * @param cipher the cipher the file was encrypted with
+     *
+     * @throws IOException if either file can't be read or written.
+     */
+    public static void decrypt(
+            final Path source,
+            final Path destination,
+            final Cipher cipher) throws IOException
+    {
+        decrypt(source, destination, cipher, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypts the {@code source} file into the {@code destination} file,
+     * using the given {@code pool}.
+     *
+     * @param source the file containing UTF-8 encoded cipher text
+     * @param destination the file to write the plain text to
+     * @param cipher the cipher the file was encrypted with
+     * @param pool the pool to decrypt the segments of the file on
+     *
+     * @throws IOException if either file can't be read or written.
+     */
+    public static void decrypt(
+            final Path source,
+            final Path destination,
+            final Cipher cipher,
+            final ForkJoinPool pool) throws IOException
+    {
+        apply(source, destination, cipher.inverse(), pool, SEGMENT_SIZE);
+    }
+
+    /**
+     * Encrypts {@code source} into {@code destination} in segments of at most
+     * {@code segmentSize} bytes.
+     */
+    static void apply(
+            final Path source,
+            final Path destination,
+            final Cipher cipher,
+            final ForkJoinPool pool,
+            final int segmentSize) throws IOException
+    {
+        final boolean inPlace = Files.exists(destination)
+                && Files.isSameFile(source, destination);
+
+        try (FileChannel in = FileChannel.open(
+                source,
+                inPlace
+                        ? new StandardOpenOption[] {
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE }
+                        : new StandardOpenOption[] {
+                                StandardOpenOption.READ });
+             FileChannel out = inPlace
+                     ? in
+                     : FileChannel.open(
+                             destination,
+                             StandardOpenOption.READ,
+                             StandardOpenOption.WRITE,
+                             StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            final long size = in.size();
+            if (size == 0)
+            {
+                return;
+            }
+            if (!inPlace)
+            {
+                // Grow the destination up front, rather than as a side effect
+                // of mapping each segment.
+                out.write(ByteBuffer.allocate(1), size - 1);
+            }
+
+            if (cipher.isPositionIndependent())
+            {
+                pool.invoke(new Segment(
+                        in,
+                        segmentSize,
+                        0,
+                        size,
+                        (start, end) -> encrypt(
+                                in,
+                                out,
+                                inPlace,
+                                cipher,
+                                start,
+                                end)));
+            }
+            else if (cipher instanceof KeyStreamCipher
+                    && ((KeyStreamCipher) cipher).isPeriodic())
+            {
+                applyPeriodic(
+                        in,
+                        out,
+                        inPlace,
+                        (KeyStreamCipher) cipher,
+                        pool,
+                        segmentSize,
+                        size);
+            }
+            else
+            {
+                // Each segment continues from the one before it.
+                final Cipher session = cipher.session();
+                for (long start = 0, end; start < size; start = end)
+                {
+                    end = size - start <= segmentSize
+                            ? size
+                            : boundary(in, start + segmentSize);
+                    encrypt(in, out, inPlace, session, start, end);
+                }
+            }
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Encrypts a file with a periodic {@link KeyStreamCipher}, in parallel
+     * segments that each start from the key position the file before them
+     * ends at: the letters of every segment are counted first. The segments
+     * are the same in both passes, since splitting is deterministic and
+     * encrypting never changes the UTF-8 lengths that boundaries depend on.
+     */
+    private static void applyPeriodic(
+            final FileChannel in,
+            final FileChannel out,
+            final boolean inPlace,
+            final KeyStreamCipher cipher,
+            final ForkJoinPool pool,
+            final int segmentSize,
+            final long size)
+    {
+        final Map<Long, Long> counts = new ConcurrentHashMap<>();
+        pool.invoke(new Segment(
+                in,
+                segmentSize,
+                0,
+                size,
+                (start, end) -> {
+                    final ByteBuffer bytes =
+                            in.map(MapMode.READ_ONLY, start, end - start);
+                    counts.put(
+                            start,
+                            cipher.keyPositions(bytes, 0, bytes.limit()));
+                }));
+
+        final Map<Long, Long> positions = new HashMap<>();
+        long position = 0;
+        for (final long start : new TreeSet<>(counts.keySet()))
+        {
+            positions.put(start, position);
+            position += counts.get(start);
+        }
+        pool.invoke(new Segment(
+                in,
+                segmentSize,
+                0,
+                size,
+                (start, end) -> encrypt(
+                        in,
+                        out,
+                        inPlace,
+                        cipher.session(positions.get(start)),
+                        start,
+                        end)));
+    }
+
+    /**
+     * Encrypts the bytes of a file from {@code start} (inclusive) to {@code
+     * end} (exclusive).
+     */
+    private static void encrypt(
+            final FileChannel in,
+            final FileChannel out,
+            final boolean inPlace,
+            final Cipher cipher,
+            final long start,
+            final long end) throws IOException
+    {
+        final MappedByteBuffer destination =
+                out.map(MapMode.READ_WRITE, start, end - start);
+        if (inPlace)
+        {
+            cipher.encrypt(destination);
+        }
+        else
+        {
+            cipher.encrypt(
+                    in.map(MapMode.READ_ONLY, start, end - start),
+                    destination);
+        }
+    }
+
+    /**
+     * Returns the first index, at or after {@code index}, that isn't a UTF-8
+     * continuation byte, looking at most 3 bytes ahead (the longest a
+     * well-formed sequence can continue for).
+     */
+    private static long boundary(final FileChannel in, final long index)
+            throws IOException
+    {
+        final ByteBuffer bytes = ByteBuffer.allocate(3);
+        int read = 0;
+        while (bytes.hasRemaining() && read >= 0)
+        {
+            read = in.read(bytes, index + bytes.position());
+        }
+
+        int continuations = 0;
+        while (continuations < bytes.position()
+                && (bytes.get(continuations) & 0xC0) == 0x80)
+        {
+            continuations++;
+        }
+        return index + continuations;
+    }
+
+    /**
+     * Applies an action to a range of a file.
+     */
+    @FunctionalInterface
+    private interface Action
+    {
+        void apply(long start, long end) throws IOException;
+    }
+
+    /**
+     * Applies an {@link Action} to the bytes of a file from {@code start}
+     * (inclusive) to {@code end} (exclusive), splitting them in two if there
+     * are too many.
+     */
+    private static final class Segment extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel in;
+        private final int segmentSize;
+        private final long start;
+        private final long end;
+        private final Action action;
+
+        Segment(
+                final FileChannel in,
+                final int segmentSize,
+                final long start,
+                final long end,
+                final Action action)
+        {
+            this.in = in;
+            this.segmentSize = segmentSize;
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                if (end - start <= segmentSize)
+                {
+                    action.apply(start, end);
+                    return;
+                }
+
+                final long middle = boundary(in, start + (end - start) / 2);
+                if (middle >= end)
+                {
+                    action.apply(start, end);
+                    return;
+                }
+
+                invokeAll(
+                        new Segment(in, segmentSize, start, middle, action),
+                        new Segment(in, segmentSize, middle, end, action));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private FileCipher()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
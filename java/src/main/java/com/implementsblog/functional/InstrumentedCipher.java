@@ -0,0 +1,415 @@
+package com.implementsblog.functional;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link Cipher} that reports a {@link CipherEvent} to a {@link
+ * CipherListener} after each operation of another cipher; see {@link
+ * Cipher#instrumented(CipherListener)}.
+ * <p>
+ * Counting the substituted chars (or bytes) compares the output of each
+ * operation with its input, so an operation that may overwrite its input
+ * (e.g., in place, or into a buffer sharing its array) copies it first. That
+ * copy isn't counted as allocated, nor timed.
+ */
+final class InstrumentedCipher implements Cipher
+{
+    /**
+     * Measures the bytes allocated by a thread, or {@code null} if the JVM
+     * doesn't support it.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            allocations();
+
+    private final Cipher cipher;
+    private final CipherListener listener;
+    private final boolean decryption;
+    private final InstrumentedCipher inverse;
+
+    /**
+     * @param cipher the cipher to instrument
+     * @param listener receives an event after each operation
+     */
+    InstrumentedCipher(final Cipher cipher, final CipherListener listener)
+    {
+        this.cipher = cipher;
+        this.listener = listener;
+        this.decryption = false;
+        this.inverse = new InstrumentedCipher(this);
+    }
+
+    private InstrumentedCipher(final InstrumentedCipher inverse)
+    {
+        this.cipher = inverse.cipher.inverse();
+        this.listener = inverse.listener;
+        this.decryption = !inverse.decryption;
+        this.inverse = inverse;
+    }
+
+    @Override
+    public String encrypt(final String text)
+    {
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        final String encrypted = cipher.encrypt(text);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+        completed(
+                false,
+                text.length(),
+                differences(text, 0, encrypted, 0, text.length()),
+                allocated,
+                nanos);
+        return encrypted;
+    }
+
+    @Override
+    public String decrypt(final String cipherText)
+    {
+        return inverse.encrypt(cipherText);
+    }
+
+    @Override
+    public void encrypt(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(source.length, sourceOffset, length);
+        final CharSequence original = source == destination
+                ? new String(source, sourceOffset, length)
+                : CharBuffer.wrap(source, sourceOffset, length);
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        cipher.encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+        completed(
+                false,
+                length,
+                differences(
+                        original,
+                        0,
+                        CharBuffer.wrap(destination),
+                        destinationOffset,
+                        length),
+                allocated,
+                nanos);
+    }
+
+    @Override
+    public void encrypt(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        final int destinationStart = destination.length();
+        final long allocatedBefore = allocatedBytes();
+        final long startNanos = System.nanoTime();
+        cipher.encrypt(source, start, end, destination);
+        final long nanos = System.nanoTime() - startNanos;
+        final long allocated = allocatedSince(allocatedBefore);
+        completed(
+                false,
+                end - start,
+                differences(
+                        source,
+                        start,
+                        destination,
+                        destinationStart,
+                        end - start),
+                allocated,
+                nanos);
+    }
+
+    @Override
+    public void encrypt(final CharBuffer source, final CharBuffer destination)
+    {
+        final CharSequence original = mayShare(source, destination)
+                ? source.toString()
+                : source.duplicate();
+        final int destinationStart = destination.position();
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        cipher.encrypt(source, destination);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+
+        final CharBuffer written = destination.duplicate();
+        written.flip().position(destinationStart);
+        completed(
+                false,
+                original.length(),
+                differences(original, 0, written, 0, original.length()),
+                allocated,
+                nanos);
+    }
+
+    @Override
+    public void encrypt(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(source.length, sourceOffset, length);
+        final ByteBuffer original = source == destination
+                ? ByteBuffer.wrap(Arrays.copyOfRange(
+                        source,
+                        sourceOffset,
+                        sourceOffset + length))
+                : ByteBuffer.wrap(source, sourceOffset, length).slice();
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        cipher.encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+        completed(
+                true,
+                length,
+                differences(
+                        original,
+                        ByteBuffer.wrap(destination, destinationOffset, length)
+                                .slice()),
+                allocated,
+                nanos);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        final ByteBuffer original = mayShare(source, destination)
+                ? copy(source)
+                : source.duplicate();
+        final int destinationStart = destination.position();
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        cipher.encrypt(source, destination);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+
+        final ByteBuffer written = destination.duplicate();
+        written.flip().position(destinationStart);
+        completed(
+                true,
+                original.remaining(),
+                differences(original, written),
+                allocated,
+                nanos);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer buffer)
+    {
+        final ByteBuffer original = copy(buffer);
+        final int bufferStart = buffer.position();
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        cipher.encrypt(buffer);
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedSince(allocatedBefore);
+
+        final ByteBuffer written = buffer.duplicate();
+        written.position(bufferStart);
+        completed(
+                true,
+                original.remaining(),
+                differences(original, written),
+                allocated,
+                nanos);
+    }
+
+    /**
+     * Instruments the parallel cipher as a whole, so each operation is
+     * reported once, rather than once per segment.
+     */
+    @Override
+    public Cipher parallel(final int threshold, final ForkJoinPool pool)
+    {
+        return new InstrumentedCipher(
+                cipher.parallel(threshold, pool),
+                listener);
+    }
+
+    @Override
+    public boolean isPositionIndependent()
+    {
+        return cipher.isPositionIndependent();
+    }
+
+    @Override
+    public boolean substitutes(final int codePoint)
+    {
+        return cipher.substitutes(codePoint);
+    }
+
+    @Override
+    public Cipher session()
+    {
+        final Cipher session = cipher.session();
+        return session == cipher
+                ? this
+                : new InstrumentedCipher(session, listener);
+    }
+
+    @Override
+    public Cipher inverse()
+    {
+        return inverse;
+    }
+
+    private void completed(
+            final boolean bytes,
+            final int length,
+            final int substituted,
+            final long allocated,
+            final long nanos)
+    {
+        listener.completed(new CipherEvent(
+                decryption,
+                bytes,
+                length,
+                substituted,
+                allocated,
+                nanos));
+    }
+
+    /**
+     * Called right after the operation, so that comparing its output with its
+     * input isn't counted.
+     *
+     * @return the number of bytes the current thread has allocated since it
+     *     measured {@code allocatedBefore}, or {@code -1} if the JVM doesn't
+     *     measure it.
+     */
+    private static long allocatedSince(final long allocatedBefore)
+    {
+        final long allocatedAfter = allocatedBytes();
+        return allocatedBefore < 0 || allocatedAfter < 0
+                ? -1
+                : allocatedAfter - allocatedBefore;
+    }
+
+    /**
+     * @return the number of bytes the current thread has allocated, or {@code
+     *     -1} if the JVM doesn't measure it.
+     */
+    private static long allocatedBytes()
+    {
+        return ALLOCATIONS == null
+                ? -1
+                : ALLOCATIONS.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocations()
+    {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            final com.sun.management.ThreadMXBean allocations =
+                    (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported()
+                    && allocations.isThreadAllocatedMemoryEnabled())
+            {
+                return allocations;
+            }
+        }
+        return null;
+    }
+
+    private static int differences(
+            final CharSequence before,
+            final int beforeStart,
+            final CharSequence after,
+            final int afterStart,
+            final int length)
+    {
+        int differences = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (before.charAt(beforeStart + i) != after.charAt(afterStart + i))
+            {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Compares the remaining bytes of the buffers, without changing their
+     * positions.
+     */
+    private static int differences(
+            final ByteBuffer before,
+            final ByteBuffer after)
+    {
+        int differences = 0;
+        for (int i = 0; i < before.remaining(); i++)
+        {
+            if (before.get(before.position() + i)
+                    != after.get(after.position() + i))
+            {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Buffers of the same kind may share their contents unless both have
+     * accessible arrays, and these differ: e.g., direct buffers may be views
+     * of the same memory, and a read-only buffer hides its array.
+     *
+     * @return whether writing to {@code destination} may change {@code
+     *     source}.
+     */
+    private static boolean mayShare(
+            final Buffer source,
+            final Buffer destination)
+    {
+        if (source.isDirect() != destination.isDirect())
+        {
+            return false;
+        }
+        return !source.hasArray()
+                || !destination.hasArray()
+                || source.array() == destination.array();
+    }
+
+    /**
+     * @return a heap copy of the remaining bytes of {@code buffer}, without
+     *     changing its position.
+     */
+    private static ByteBuffer copy(final ByteBuffer buffer)
+    {
+        final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+}
@@ -0,0 +1,743 @@
+package com.implementsblog.functional;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A polyalphabetic {@link Cipher}: each letter (a code point within one of the
+ * ranges) is substituted using the row of a tableau selected by the next shift
+ * of a key stream, and all other code points are copied unchanged, without
+ * advancing the key stream.
+ * <p>
+ * The tableau is precomputed with one row per shift, each a dense table from
+ * every letter to its substitute, so a letter costs the same few array
+ * lookups as it does in a {@link SubstitutionTable}. Letters are never
+ * surrogates, so chars are substituted one at a time, without decoding
+ * surrogate pairs.
+ * <p>
+ * The key stream starts with the shifts of the key's letters. A periodic key
+ * stream repeats them, so the shift of a letter depends only on how many
+ * letters precede it (its key position); an autokey stream continues with the
+ * shifts of the plain text's letters instead.
+ */
+final class KeyStreamCipher implements Cipher
+{
+    /**
+     * The largest number of chars in a tableau.
+     */
+    static final int MAXIMUM_TABLEAU_SIZE = 1 << 24;
+
+    /**
+     * How a letter's substitute is derived from its offset within its range
+     * and a shift.
+     */
+    enum Tableau
+    {
+        /**
+         * Adds the shift to the offset.
+         */
+        VIGENERE
+        {
+            @Override
+            int encrypt(final int offset, final int shift, final int size)
+            {
+                return Math.floorMod(offset + shift, size);
+            }
+
+            @Override
+            int decrypt(final int offset, final int shift, final int size)
+            {
+                return Math.floorMod(offset - shift, size);
+            }
+        },
+
+        /**
+         * Subtracts the offset from the shift; this is its own inverse.
+         */
+        BEAUFORT
+        {
+            @Override
+            int encrypt(final int offset, final int shift, final int size)
+            {
+                return Math.floorMod(shift - offset, size);
+            }
+
+            @Override
+            int decrypt(final int offset, final int shift, final int size)
+            {
+                return encrypt(offset, shift, size);
+            }
+        };
+
+        abstract int encrypt(int offset, int shift, int size);
+
+        abstract int decrypt(int offset, int shift, int size);
+    }
+
+    /**
+     * Indexed by shift, then by char; chars that aren't letters are mapped to
+     * themselves.
+     */
+    private final char[][] rows;
+
+    /**
+     * Indexed by char, the offset of each letter within its range, or {@code
+     * -1} for chars that aren't letters.
+     */
+    private final int[] shifts;
+
+    /**
+     * The shifts of the key's letters.
+     */
+    private final int[] key;
+    private final boolean autokey;
+
+    /**
+     * Whether this cipher decrypts, so that the plain text an autokey stream
+     * continues with is the output rather than the input.
+     */
+    private final boolean decrypts;
+    private final boolean preservesUtf8Length;
+    private final KeyStreamCipher inverse;
+
+    /**
+     * @param key the key, whose code points must all be letters
+     * @param codePointRanges the ranges of letters; they must not contain
+     *     surrogates or supplementary code points
+     * @param tableau how letters are substituted
+     * @param autokey whether the key stream continues with the plain text,
+     *     rather than repeating the key
+     *
+     * @throws IllegalArgumentException if {@code key} is empty or contains a
+     *     code point that isn't a letter, if {@code codePointRanges} contains
+     *     surrogates or supplementary code points, or if the tableau would
+     *     have more than {@link #MAXIMUM_TABLEAU_SIZE} chars.
+     */
+    KeyStreamCipher(
+            final String key,
+            final CodePointRanges codePointRanges,
+            final Tableau tableau,
+            final boolean autokey)
+    {
+        int length = 0;
+        int rowCount = 0;
+        boolean preservesUtf8Length = true;
+        for (int range = 0; range < codePointRanges.size(); range++)
+        {
+            final int lowest = codePointRanges.lowest(range);
+            final int highest = codePointRanges.highest(range);
+            if (highest > Character.MAX_VALUE
+                    || lowest <= Character.MAX_SURROGATE
+                    && highest >= Character.MIN_SURROGATE)
+            {
+                throw new IllegalArgumentException(String.format(
+                        "Letters must be BMP code points other than "
+                                + "surrogates: U+%04X-U+%04X",
+                        lowest,
+                        highest));
+            }
+            length = highest + 1;
+            rowCount = Math.max(rowCount, highest - lowest + 1);
+            preservesUtf8Length &= Utf8.length(lowest) == Utf8.length(highest);
+        }
+        if ((long) length * rowCount > MAXIMUM_TABLEAU_SIZE)
+        {
+            throw new IllegalArgumentException(
+                    "The ranges are too large for a tableau: "
+                            + codePointRanges);
+        }
+
+        final int[] shifts = new int[length];
+        Arrays.fill(shifts, -1);
+        final char[][] encryption = new char[rowCount][length];
+        final char[][] decryption = new char[rowCount][length];
+        for (int shift = 0; shift < rowCount; shift++)
+        {
+            for (int c = 0; c < length; c++)
+            {
+                encryption[shift][c] = (char) c;
+                decryption[shift][c] = (char) c;
+            }
+        }
+        for (int range = 0; range < codePointRanges.size(); range++)
+        {
+            final int lowest = codePointRanges.lowest(range);
+            final int size = codePointRanges.highest(range) - lowest + 1;
+            for (int offset = 0; offset < size; offset++)
+            {
+                shifts[lowest + offset] = offset;
+                for (int shift = 0; shift < rowCount; shift++)
+                {
+                    encryption[shift][lowest + offset] = (char) (lowest
+                            + tableau.encrypt(offset, shift, size));
+                    decryption[shift][lowest + offset] = (char) (lowest
+                            + tableau.decrypt(offset, shift, size));
+                }
+            }
+        }
+
+        if (key.isEmpty())
+        {
+            throw new IllegalArgumentException("The key is empty.");
+        }
+        this.key = key.codePoints().map(codePoint -> {
+            if (codePoint >= shifts.length || shifts[codePoint] < 0)
+            {
+                throw new IllegalArgumentException(String.format(
+                        "The key contains U+%04X, which isn't within %s",
+                        codePoint,
+                        codePointRanges));
+            }
+            return shifts[codePoint];
+        }).toArray();
+
+        this.rows = encryption;
+        this.shifts = shifts;
+        this.autokey = autokey;
+        this.decrypts = false;
+        this.preservesUtf8Length = preservesUtf8Length;
+        this.inverse = new KeyStreamCipher(decryption, this);
+    }
+
+    private KeyStreamCipher(
+            final char[][] rows,
+            final KeyStreamCipher inverse)
+    {
+        this.rows = rows;
+        this.shifts = inverse.shifts;
+        this.key = inverse.key;
+        this.autokey = inverse.autokey;
+        this.decrypts = !inverse.decrypts;
+        this.preservesUtf8Length = inverse.preservesUtf8Length;
+        this.inverse = inverse;
+    }
+
+    @Override
+    public String encrypt(final String text)
+    {
+        return session().encrypt(text);
+    }
+
+    @Override
+    public String decrypt(final String cipherText)
+    {
+        return inverse.encrypt(cipherText);
+    }
+
+    @Override
+    public void encrypt(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        session().encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        session().encrypt(source, start, end, destination);
+    }
+
+    @Override
+    public void encrypt(final CharBuffer source, final CharBuffer destination)
+    {
+        session().encrypt(source, destination);
+    }
+
+    @Override
+    public void encrypt(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        session().encrypt(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        session().encrypt(source, destination);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer buffer)
+    {
+        session().encrypt(buffer);
+    }
+
+    /**
+     * Returns a cipher that splits texts into segments, and encrypts them in
+     * parallel, each from the key position it starts at. An autokey stream
+     * depends on all of the plain text before a segment, so an autokey
+     * cipher returns itself.
+     */
+    @Override
+    public Cipher parallel(final int threshold, final ForkJoinPool pool)
+    {
+        return autokey ? this : Cipher.super.parallel(threshold, pool);
+    }
+
+    @Override
+    public boolean isPositionIndependent()
+    {
+        return false;
+    }
+
+    /**
+     * Letters are substituted with letters of the same range, so only they
+     * may be substituted, at any key position.
+     */
+    @Override
+    public boolean substitutes(final int codePoint)
+    {
+        return codePoint >= 0
+                && codePoint < shifts.length
+                && shifts[codePoint] >= 0;
+    }
+
+    @Override
+    public Cipher session()
+    {
+        return new Session(this, new KeyStream(key, autokey, 0));
+    }
+
+    @Override
+    public Cipher inverse()
+    {
+        return inverse;
+    }
+
+    /**
+     * @return whether the key stream repeats the key, so that a text can be
+     *     split into segments that are encrypted from their key position with
+     *     {@link #session(long)}.
+     */
+    boolean isPeriodic()
+    {
+        return !autokey;
+    }
+
+    /**
+     * @param position the number of letters before the text to encrypt
+     *
+     * @return a session that starts at the given key position.
+     *
+     * @throws UnsupportedOperationException if the key stream isn't
+     *     {@link #isPeriodic() periodic}.
+     */
+    Cipher session(final long position)
+    {
+        if (autokey)
+        {
+            throw new UnsupportedOperationException(
+                    "An autokey stream depends on the whole plain text.");
+        }
+        return new Session(this, new KeyStream(key, false, position));
+    }
+
+    /**
+     * @return the number of letters in {@code length} chars of {@code text},
+     *     starting at {@code offset}.
+     */
+    long keyPositions(final char[] text, final int offset, final int length)
+    {
+        final int[] shifts = this.shifts;
+        long letters = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            final char c = text[i];
+            if (c < shifts.length && shifts[c] >= 0)
+            {
+                letters++;
+            }
+        }
+        return letters;
+    }
+
+    /**
+     * @return the number of letters in the UTF-8 encoded bytes of {@code
+     *     text}, from {@code start} (inclusive) to {@code end} (exclusive).
+     */
+    long keyPositions(final ByteBuffer text, final int start, final int end)
+    {
+        final int[] shifts = this.shifts;
+        long letters = 0;
+        for (int i = start; i < end; )
+        {
+            final byte b = text.get(i);
+            final int codePoint = b >= 0 ? b : Utf8.decode(text, i, end);
+            if (codePoint < 0)
+            {
+                i++;
+                continue;
+            }
+            if (codePoint < shifts.length && shifts[codePoint] >= 0)
+            {
+                letters++;
+            }
+            i += Utf8.length(codePoint);
+        }
+        return letters;
+    }
+
+    /**
+     * The shifts still to come, and for an autokey stream, the plain text
+     * that determines them; it's shared by a {@link Session} and its
+     * inverse.
+     */
+    private static final class KeyStream
+    {
+        /**
+         * For a periodic stream, the key; for an autokey stream, the next
+         * {@code shifts.length} shifts, starting at {@code index}.
+         */
+        private final int[] shifts;
+        private final boolean autokey;
+        private int index;
+
+        KeyStream(final int[] key, final boolean autokey, final long position)
+        {
+            this.shifts = autokey ? key.clone() : key;
+            this.autokey = autokey;
+            this.index = (int) (position % key.length);
+        }
+
+        int shift()
+        {
+            return shifts[index];
+        }
+
+        /**
+         * Moves on to the next shift, after a letter whose offset in the plain
+         * text is {@code plainShift}.
+         */
+        void advance(final int plainShift)
+        {
+            if (autokey)
+            {
+                shifts[index] = plainShift;
+            }
+            if (++index == shifts.length)
+            {
+                index = 0;
+            }
+        }
+    }
+
+    /**
+     * Encrypts (and decrypts) consecutive parts of one text, carrying the key
+     * stream from one call to the next.
+     */
+    private static final class Session implements Cipher
+    {
+        private final KeyStreamCipher cipher;
+        private final KeyStream keyStream;
+        private Session inverse;
+
+        Session(final KeyStreamCipher cipher, final KeyStream keyStream)
+        {
+            this.cipher = cipher;
+            this.keyStream = keyStream;
+        }
+
+        @Override
+        public String encrypt(final String text)
+        {
+            final char[] chars = text.toCharArray();
+            substitute(chars, 0, chars, 0, chars.length);
+            return new String(chars);
+        }
+
+        @Override
+        public String decrypt(final String cipherText)
+        {
+            return inverse().encrypt(cipherText);
+        }
+
+        @Override
+        public void encrypt(
+                final char[] source,
+                final int sourceOffset,
+                final char[] destination,
+                final int destinationOffset,
+                final int length)
+        {
+            SubstitutionTable.checkBounds(
+                    source.length,
+                    sourceOffset,
+                    length);
+            SubstitutionTable.checkBounds(
+                    destination.length,
+                    destinationOffset,
+                    length);
+            substitute(
+                    source,
+                    sourceOffset,
+                    destination,
+                    destinationOffset,
+                    length);
+        }
+
+        @Override
+        public void encrypt(
+                final CharSequence source,
+                final int start,
+                final int end,
+                final StringBuilder destination)
+        {
+            SubstitutionTable.checkBounds(
+                    source.length(),
+                    start,
+                    end - start);
+            destination.ensureCapacity(destination.length() + end - start);
+            for (int i = start; i < end; i++)
+            {
+                destination.append(substitute(source.charAt(i)));
+            }
+        }
+
+        @Override
+        public void encrypt(
+                final CharBuffer source,
+                final CharBuffer destination)
+        {
+            final int length = source.remaining();
+            if (destination.remaining() < length)
+            {
+                throw new BufferOverflowException();
+            }
+
+            if (source.hasArray() && destination.hasArray())
+            {
+                substitute(
+                        source.array(),
+                        source.arrayOffset() + source.position(),
+                        destination.array(),
+                        destination.arrayOffset() + destination.position(),
+                        length);
+                source.position(source.position() + length);
+                destination.position(destination.position() + length);
+                return;
+            }
+
+            while (source.hasRemaining())
+            {
+                destination.put(substitute(source.get()));
+            }
+        }
+
+        @Override
+        public void encrypt(
+                final byte[] source,
+                final int sourceOffset,
+                final byte[] destination,
+                final int destinationOffset,
+                final int length)
+        {
+            SubstitutionTable.checkBounds(
+                    source.length,
+                    sourceOffset,
+                    length);
+            SubstitutionTable.checkBounds(
+                    destination.length,
+                    destinationOffset,
+                    length);
+            substitute(
+                    ByteBuffer.wrap(source),
+                    sourceOffset,
+                    ByteBuffer.wrap(destination),
+                    destinationOffset,
+                    length);
+        }
+
+        @Override
+        public void encrypt(
+                final ByteBuffer source,
+                final ByteBuffer destination)
+        {
+            final int length = source.remaining();
+            if (destination.remaining() < length)
+            {
+                throw new BufferOverflowException();
+            }
+
+            substitute(
+                    source,
+                    source.position(),
+                    destination,
+                    destination.position(),
+                    length);
+            source.position(source.position() + length);
+            destination.position(destination.position() + length);
+        }
+
+        @Override
+        public void encrypt(final ByteBuffer buffer)
+        {
+            substitute(
+                    buffer,
+                    buffer.position(),
+                    buffer,
+                    buffer.position(),
+                    buffer.remaining());
+            buffer.position(buffer.limit());
+        }
+
+        /**
+         * A session can't be split, since each part continues from the one
+         * before it.
+         */
+        @Override
+        public Cipher parallel(final int threshold, final ForkJoinPool pool)
+        {
+            return this;
+        }
+
+        @Override
+        public boolean isPositionIndependent()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean substitutes(final int codePoint)
+        {
+            return cipher.substitutes(codePoint);
+        }
+
+        @Override
+        public Cipher session()
+        {
+            return this;
+        }
+
+        /**
+         * @return a session of the inverse cipher that shares this session's
+         *     key stream.
+         */
+        @Override
+        public Cipher inverse()
+        {
+            if (inverse == null)
+            {
+                inverse = new Session(cipher.inverse, keyStream);
+                inverse.inverse = this;
+            }
+            return inverse;
+        }
+
+        private char substitute(final char c)
+        {
+            final int[] shifts = cipher.shifts;
+            if (c >= shifts.length || shifts[c] < 0)
+            {
+                return c;
+            }
+
+            final char substitute = cipher.rows[keyStream.shift()][c];
+            keyStream.advance(shifts[cipher.decrypts ? substitute : c]);
+            return substitute;
+        }
+
+        private void substitute(
+                final char[] source,
+                final int sourceOffset,
+                final char[] destination,
+                final int destinationOffset,
+                final int length)
+        {
+            final int[] shifts = cipher.shifts;
+            final char[][] rows = cipher.rows;
+            final KeyStream keyStream = this.keyStream;
+            final boolean decrypts = cipher.decrypts;
+            for (int i = 0; i < length; i++)
+            {
+                final char c = source[sourceOffset + i];
+                if (c < shifts.length && shifts[c] >= 0)
+                {
+                    final char substitute = rows[keyStream.shift()][c];
+                    keyStream.advance(shifts[decrypts ? substitute : c]);
+                    destination[destinationOffset + i] = substitute;
+                }
+                else
+                {
+                    destination[destinationOffset + i] = c;
+                }
+            }
+        }
+
+        /**
+         * Substitutes {@code length} UTF-8 encoded bytes of {@code source},
+         * from {@code sourceIndex}, into {@code destination}, from {@code
+         * destinationIndex}, decoding multi-byte sequences.
+         */
+        private void substitute(
+                final ByteBuffer source,
+                final int sourceIndex,
+                final ByteBuffer destination,
+                final int destinationIndex,
+                final int length)
+        {
+            if (!cipher.preservesUtf8Length)
+            {
+                throw new UnsupportedOperationException(
+                        "This cipher substitutes code points with ones that "
+                                + "have a different UTF-8 length, so it can't "
+                                + "be applied to UTF-8 bytes directly.");
+            }
+
+            final int end = sourceIndex + length;
+            for (int i = sourceIndex, j = destinationIndex; i < end; )
+            {
+                final byte b = source.get(i);
+                if (b >= 0)
+                {
+                    destination.put(j++, (byte) substitute((char) b));
+                    i++;
+                    continue;
+                }
+
+                final int codePoint = Utf8.decode(source, i, end);
+                if (codePoint < 0)
+                {
+                    destination.put(j++, b);
+                    i++;
+                    continue;
+                }
+
+                final int sequenceLength = Utf8.length(codePoint);
+                Utf8.encode(
+                        codePoint <= Character.MAX_VALUE
+                                ? substitute((char) codePoint)
+                                : codePoint,
+                        destination,
+                        j,
+                        sequenceLength);
+                i += sequenceLength;
+                j += sequenceLength;
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.implementsblog.functional;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A {@link Cipher} that splits texts of at least {@code threshold} chars (or
+ * bytes) into segments, and encrypts the segments in parallel with another
+ * cipher.
+ * <p>
+ * Segment boundaries never fall within a surrogate pair or a UTF-8 sequence,
+ * so the result is the same as encrypting the text with the other cipher
+ * directly.
+ */
+final class ParallelCipher implements Cipher
+{
+    /**
+     * The smallest number of chars (or bytes) encrypted by a single task.
+     */
+    static final int MINIMUM_SEGMENT_SIZE = 1 << 13;
+
+    private final Cipher cipher;
+    private final int threshold;
+    private final ForkJoinPool pool;
+    private final int minimumSegmentSize;
+    private final ParallelCipher inverse;
+
+    /**
+     * @param cipher the cipher that encrypts each segment
+     * @param threshold the length at or above which texts are split
+     * @param pool the pool to encrypt the segments on
+     * @param minimumSegmentSize the smallest number of chars (or bytes)
+     *     encrypted by a single task
+     *
+     * @throws IllegalArgumentException if {@code minimumSegmentSize < 1}.
+     */
+    ParallelCipher(
+            final Cipher cipher,
+            final int threshold,
+            final ForkJoinPool pool,
+            final int minimumSegmentSize)
+    {
+        if (minimumSegmentSize < 1)
+        {
+            throw new IllegalArgumentException(
+                    "minimumSegmentSize must be positive: "
+                            + minimumSegmentSize);
+        }
+        this.cipher = cipher;
+        this.threshold = threshold;
+        this.pool = pool;
+        this.minimumSegmentSize = minimumSegmentSize;
+        this.inverse = new ParallelCipher(this);
+    }
+
+    private ParallelCipher(final ParallelCipher inverse)
+    {
+        this.cipher = inverse.cipher.inverse();
+        this.threshold = inverse.threshold;
+        this.pool = inverse.pool;
+        this.minimumSegmentSize = inverse.minimumSegmentSize;
+        this.inverse = inverse;
+    }
+
+    @Override
+    public String encrypt(final String text)
+    {
+        if (text.length() < threshold)
+        {
+            return cipher.encrypt(text);
+        }
+
+        final char[] chars = text.toCharArray();
+        encrypt(chars, 0, chars, 0, chars.length);
+        return new String(chars);
+    }
+
+    @Override
+    public String decrypt(final String cipherText)
+    {
+        return inverse.encrypt(cipherText);
+    }
+
+    @Override
+    public void encrypt(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(source.length, sourceOffset, length);
+        SubstitutionTable.checkBounds(
+                destination.length,
+                destinationOffset,
+                length);
+
+        // Segments of an array that's shifted onto itself would overwrite
+        // each other's source.
+        if (length < threshold
+                || source == destination && sourceOffset != destinationOffset)
+        {
+            cipher.encrypt(
+                    source,
+                    sourceOffset,
+                    destination,
+                    destinationOffset,
+                    length);
+            return;
+        }
+
+        split(
+                sourceOffset,
+                sourceOffset + length,
+                index -> Character.isHighSurrogate(source[index - 1])
+                        && Character.isLowSurrogate(source[index])
+                        ? index + 1
+                        : index,
+                (keyed, start, end)
+                        -> keyed.keyPositions(source, start, end - start),
+                (cipher, start, end) -> cipher.encrypt(
+                        source,
+                        start,
+                        destination,
+                        start - sourceOffset + destinationOffset,
+                        end - start));
+    }
+
+    @Override
+    public void encrypt(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        // A StringBuilder can only be appended to sequentially.
+        cipher.encrypt(source, start, end, destination);
+    }
+
+    @Override
+    public void encrypt(final CharBuffer source, final CharBuffer destination)
+    {
+        final int length = source.remaining();
+        if (length < threshold
+                || !source.hasArray()
+                || !destination.hasArray()
+                || destination.remaining() < length)
+        {
+            cipher.encrypt(source, destination);
+            return;
+        }
+
+        encrypt(
+                source.array(),
+                source.arrayOffset() + source.position(),
+                destination.array(),
+                destination.arrayOffset() + destination.position(),
+                length);
+        source.position(source.position() + length);
+        destination.position(destination.position() + length);
+    }
+
+    @Override
+    public void encrypt(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(source.length, sourceOffset, length);
+        SubstitutionTable.checkBounds(
+                destination.length,
+                destinationOffset,
+                length);
+
+        if (length < threshold
+                || source == destination && sourceOffset != destinationOffset)
+        {
+            cipher.encrypt(
+                    source,
+                    sourceOffset,
+                    destination,
+                    destinationOffset,
+                    length);
+            return;
+        }
+
+        split(
+                sourceOffset,
+                sourceOffset + length,
+                index -> utf8Boundary(ByteBuffer.wrap(source), index),
+                (keyed, start, end) -> keyed.keyPositions(
+                        ByteBuffer.wrap(source),
+                        start,
+                        end),
+                (cipher, start, end) -> cipher.encrypt(
+                        source,
+                        start,
+                        destination,
+                        start - sourceOffset + destinationOffset,
+                        end - start));
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        final int length = source.remaining();
+        if (length < threshold || destination.remaining() < length)
+        {
+            cipher.encrypt(source, destination);
+            return;
+        }
+
+        final int offset = destination.position() - source.position();
+        split(
+                source.position(),
+                source.limit(),
+                index -> utf8Boundary(source, index),
+                (keyed, start, end) -> keyed.keyPositions(source, start, end),
+                (cipher, start, end) -> cipher.encrypt(
+                        slice(source, start, end),
+                        slice(destination, start + offset, end + offset)));
+        source.position(source.limit());
+        destination.position(destination.position() + length);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer buffer)
+    {
+        if (buffer.remaining() < threshold)
+        {
+            cipher.encrypt(buffer);
+            return;
+        }
+
+        split(
+                buffer.position(),
+                buffer.limit(),
+                index -> utf8Boundary(buffer, index),
+                (keyed, start, end) -> keyed.keyPositions(buffer, start, end),
+                (cipher, start, end) -> cipher.encrypt(
+                        slice(buffer, start, end)));
+        buffer.position(buffer.limit());
+    }
+
+    @Override
+    public boolean isPositionIndependent()
+    {
+        return cipher.isPositionIndependent();
+    }
+
+    @Override
+    public boolean substitutes(final int codePoint)
+    {
+        return cipher.substitutes(codePoint);
+    }
+
+    @Override
+    public Cipher session()
+    {
+        return cipher.session();
+    }
+
+    @Override
+    public Cipher inverse()
+    {
+        return inverse;
+    }
+
+    /**
+     * Encrypts the range from {@code start} to {@code end} on the pool, split
+     * into segments.
+     * <p>
+     * A periodic {@link KeyStreamCipher} encrypts each segment from the key
+     * position that the text before it ends at, so the letters of every
+     * segment are counted first. The segments are the same in both passes,
+     * since splitting is deterministic and encrypting never changes the
+     * surrogates and UTF-8 lengths that boundaries depend on.
+     *
+     * @param start the index of the first element to encrypt
+     * @param end the index after the last element to encrypt
+     * @param boundary given an index, returns the first index at or after it
+     *     that a segment can start at
+     * @param count counts the key positions in a range, for a periodic {@link
+     *     KeyStreamCipher}
+     * @param encrypt encrypts a range that starts and ends on boundaries
+     */
+    private void split(
+            final int start,
+            final int end,
+            final IntUnaryOperator boundary,
+            final Count count,
+            final Encrypt encrypt)
+    {
+        final int segmentSize = Math.max(
+                minimumSegmentSize,
+                (end - start) / (pool.getParallelism() * 4));
+
+        if (cipher.isPositionIndependent())
+        {
+            pool.invoke(new Split(
+                    start,
+                    end,
+                    segmentSize,
+                    boundary,
+                    (from, to) -> encrypt.apply(cipher, from, to)));
+            return;
+        }
+        if (!(cipher instanceof KeyStreamCipher)
+                || !((KeyStreamCipher) cipher).isPeriodic())
+        {
+            encrypt.apply(cipher, start, end);
+            return;
+        }
+
+        final KeyStreamCipher keyed = (KeyStreamCipher) cipher;
+        final Map<Integer, Long> counts = new ConcurrentHashMap<>();
+        pool.invoke(new Split(
+                start,
+                end,
+                segmentSize,
+                boundary,
+                (from, to) -> counts.put(from, count.apply(keyed, from, to))));
+
+        final Map<Integer, Long> positions = new HashMap<>();
+        long position = 0;
+        for (final int from : new TreeSet<>(counts.keySet()))
+        {
+            positions.put(from, position);
+            position += counts.get(from);
+        }
+        pool.invoke(new Split(
+                start,
+                end,
+                segmentSize,
+                boundary,
+                (from, to) -> encrypt.apply(
+                        keyed.session(positions.get(from)),
+                        from,
+                        to)));
+    }
+
+    /**
+     * Returns the first index, at or after {@code index}, that isn't a UTF-8
+     * continuation byte, looking at most 3 bytes ahead.
+     */
+    private static int utf8Boundary(final ByteBuffer bytes, final int index)
+    {
+        int boundary = index;
+        while (boundary < Math.min(index + 3, bytes.limit())
+                && (bytes.get(boundary) & 0xC0) == 0x80)
+        {
+            boundary++;
+        }
+        return boundary;
+    }
+
+    /**
+     * @return a view of {@code buffer} from {@code start} to {@code end}.
+     */
+    private static ByteBuffer slice(
+            final ByteBuffer buffer,
+            final int start,
+            final int end)
+    {
+        final ByteBuffer slice = buffer.duplicate();
+        slice.limit(end).position(start);
+        return slice;
+    }
+
+    /**
+     * Encrypts a range of a text with the given cipher.
+     */
+    @FunctionalInterface
+    private interface Encrypt
+    {
+        void apply(Cipher cipher, int start, int end);
+    }
+
+    /**
+     * Counts the key positions in a range of a text.
+     */
+    @FunctionalInterface
+    private interface Count
+    {
+        long apply(KeyStreamCipher cipher, int start, int end);
+    }
+
+    /**
+     * Applies an action to a range of a text.
+     */
+    @FunctionalInterface
+    private interface Segment
+    {
+        void apply(int start, int end);
+    }
+
+    /**
+     * Applies a {@link Segment} to a range, splitting it in two if it's
+     * larger than {@code segmentSize}.
+     */
+    private static final class Split extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int segmentSize;
+        private final IntUnaryOperator boundary;
+        private final Segment segment;
+
+        Split(
+                final int start,
+                final int end,
+                final int segmentSize,
+                final IntUnaryOperator boundary,
+                final Segment segment)
+        {
+            this.start = start;
+            this.end = end;
+            this.segmentSize = segmentSize;
+            this.boundary = boundary;
+            this.segment = segment;
+        }
+
+        @Override
+        protected void compute()
+        {
+            final int middle = end - start > segmentSize
+                    ? boundary.applyAsInt(start + (end - start) / 2)
+                    : end;
+            if (middle >= end)
+            {
+                segment.apply(start, end);
+                return;
+            }
+
+            invokeAll(
+                    new Split(start, middle, segmentSize, boundary, segment),
+                    new Split(middle, end, segmentSize, boundary, segment));
+        }
+    }
+}
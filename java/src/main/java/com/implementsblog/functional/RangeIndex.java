@@ -0,0 +1,42 @@
+package com.implementsblog.functional;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A function that applies, to a code point, the mapping function of the range
+ * that contains it, found by binary search over the sorted ranges; code points
+ * outside of every range are unchanged. Each code point costs {@code O(log
+ * N)} comparisons and at most one mapping function call, however many ranges
+ * there are.
+ */
+final class RangeIndex implements IntUnaryOperator
+{
+    private final CodePointRanges ranges;
+    private final IntUnaryOperator[] functions;
+
+    /**
+     * @param ranges the ranges to look code points up in
+     * @param functions the mapping function of each range, in the same order
+     *     as the ranges
+     */
+    RangeIndex(final CodePointRanges ranges, final IntUnaryOperator[] functions)
+    {
+        this.ranges = ranges;
+        this.functions = functions;
+    }
+
+    @Override
+    public int applyAsInt(final int codePoint)
+    {
+        final int range = ranges.indexOf(codePoint);
+        return range >= 0 ? functions[range].applyAsInt(codePoint) : codePoint;
+    }
+
+    /**
+     * @return the ranges, never {@code null}.
+     */
+    CodePointRanges ranges()
+    {
+        return ranges;
+    }
+}
@@ -0,0 +1,659 @@
+package com.implementsblog.functional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Encrypts only some of the fields of CSV or JSON lines records, leaving the
+ * rest of each record, and its structure, untouched.
+ * <p>
+ * Records are never parsed into objects: a single pass over a buffer of
+ * chars (or UTF-8 bytes) finds the contents of the selected fields, and
+ * encrypts each in place, so the output is the input with only those
+ * contents substituted. Streams are processed a buffer at a time, so memory
+ * use doesn't depend on the size of the input.
+ * <p>
+ * Each field is encrypted as if by its own call to {@link
+ * Cipher#encrypt(String)}, so a polyalphabetic cipher's key stream starts
+ * over for every field. Escapes within a field (a CSV quote written as
+ * {@code ""}, or a JSON escape such as {@code \n} or {@code \t}) are left
+ * as they are, and the text on either side of them encrypted as one.
+ * <p>
+ * To decrypt, create a {@code RecordCipher} with the {@link Cipher#inverse()
+ * inverse} cipher. Instances are thread-safe.
+ */
+public final class RecordCipher
+{
+    /**
+     * The number of chars (or bytes) read and encrypted at a time.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final Cipher cipher;
+    private final ScannerFactory scanners;
+
+    private RecordCipher(final Cipher cipher, final ScannerFactory scanners)
+    {
+        this.cipher = cipher;
+        this.scanners = scanners;
+    }
+
+    /**
+     * Returns a {@code RecordCipher} that encrypts the given columns of
+     * comma separated records, as in RFC 4180, without a header.
+     *
+     * @param cipher the cipher to encrypt the selected columns with
+     * @param columns the indexes of the columns to encrypt, from {@code 0}
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if a column is negative, or {@code
+     *     cipher} substitutes a comma, a quote, or a line break.
+     */
+    public static RecordCipher csv(final Cipher cipher, final int... columns)
+    {
+        return csv(cipher, ',', false, columns);
+    }
+
+    /**
+     * Returns a {@code RecordCipher} that encrypts the given columns of
+     * delimiter separated records: fields may be quoted, with a quote within
+     * a quoted field written twice, and quoted fields may contain delimiters
+     * and line breaks.
+     *
+     * @param cipher the cipher to encrypt the selected columns with
+     * @param delimiter the character that separates fields, e.g., {@code
+     *     ','} or {@code '\t'}
+     * @param header whether the first record is a header, whose fields are
+     *     never encrypted
+     * @param columns the indexes of the columns to encrypt, from {@code 0}
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if a column is negative, the
+     *     delimiter isn't ASCII, or {@code cipher} substitutes the delimiter,
+     *     a quote, or a line break.
+     */
+    public static RecordCipher csv(
+            final Cipher cipher,
+            final char delimiter,
+            final boolean header,
+            final int... columns)
+    {
+        checkUnsubstituted(cipher, delimiter, '"', '\r', '\n');
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n'
+                || delimiter >= 0x80)
+        {
+            throw new IllegalArgumentException(
+                    "The delimiter must be ASCII, and not a quote or a line"
+                            + " break.");
+        }
+
+        int length = 0;
+        for (final int column : columns)
+        {
+            if (column < 0)
+            {
+                throw new IllegalArgumentException(
+                        "Columns must not be negative: " + column);
+            }
+            length = Math.max(length, column + 1);
+        }
+        final boolean[] selected = new boolean[length];
+        for (final int column : columns)
+        {
+            selected[column] = true;
+        }
+
+        return new RecordCipher(
+                cipher,
+                bytes -> new CsvScanner(delimiter, header, selected));
+    }
+
+    /**
+     * Returns a {@code RecordCipher} that encrypts the string values of the
+     * given fields of JSON lines records: one JSON object per line. Only the
+     * fields of the top level object are selected, and only if their values
+     * are strings; nested objects, arrays, numbers and literals are left
+     * untouched.
+     *
+     * @param cipher the cipher to encrypt the selected values with
+     * @param fields the names of the fields to encrypt, as they're written
+     *     in the records (i.e., with any escapes)
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code cipher} substitutes a quote,
+     *     a backslash, or a line break.
+     */
+    public static RecordCipher jsonLines(
+            final Cipher cipher,
+            final String... fields)
+    {
+        checkUnsubstituted(cipher, '"', '\\', '\r', '\n');
+        final Set<String> selected = Collections.unmodifiableSet(
+                new HashSet<>(Arrays.asList(fields)));
+        // Bytes are scanned one per char, so names are compared as the
+        // chars of their UTF-8 bytes.
+        final Set<String> selectedBytes = Collections.unmodifiableSet(
+                selected.stream()
+                        .map(field -> new String(
+                                field.getBytes(StandardCharsets.UTF_8),
+                                StandardCharsets.ISO_8859_1))
+                        .collect(Collectors.toSet()));
+        return new RecordCipher(
+                cipher,
+                bytes -> new JsonScanner(bytes ? selectedBytes : selected));
+    }
+
+    /**
+     * Encrypts the selected fields of the complete records in {@code
+     * records}, in place.
+     *
+     * @param records the records
+     * @param offset the index of the first char of the first record
+     * @param length the number of chars of the records
+     *
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of
+     *     {@code records}.
+     */
+    public void encrypt(
+            final char[] records,
+            final int offset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(records.length, offset, length);
+        new Pass(cipher, scanners.create(false))
+                .apply(records, offset, offset + length);
+    }
+
+    /**
+     * Encrypts the selected fields of the complete UTF-8 encoded records in
+     * {@code records}, in place, without decoding them into chars.
+     *
+     * @param records the records
+     * @param offset the index of the first byte of the first record
+     * @param length the number of bytes of the records
+     *
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of
+     *     {@code records}.
+     * @throws UnsupportedOperationException if the cipher substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    public void encrypt(
+            final byte[] records,
+            final int offset,
+            final int length)
+    {
+        SubstitutionTable.checkBounds(records.length, offset, length);
+        new Pass(cipher, scanners.create(true))
+                .apply(records, offset, offset + length);
+    }
+
+    /**
+     * Copies the records read from {@code in} to {@code out}, encrypting the
+     * selected fields. Neither stream is closed.
+     *
+     * @param in the records to encrypt
+     * @param out where to write the records
+     *
+     * @throws IOException if either stream throws it.
+     */
+    public void encrypt(final Reader in, final Writer out) throws IOException
+    {
+        encrypt(in, out, BUFFER_SIZE);
+    }
+
+    /**
+     * Copies the UTF-8 encoded records read from {@code in} to {@code out},
+     * encrypting the selected fields without decoding them into chars.
+     * Neither stream is closed.
+     *
+     * @param in the records to encrypt
+     * @param out where to write the records
+     *
+     * @throws IOException if either stream throws it.
+     * @throws UnsupportedOperationException if the cipher substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    public void encrypt(final InputStream in, final OutputStream out)
+            throws IOException
+    {
+        encrypt(in, out, BUFFER_SIZE);
+    }
+
+    /**
+     * Copies {@code in} to {@code out} a buffer of {@code bufferSize} (at
+     * least 2) chars at a time; a trailing high surrogate is held back until
+     * the next buffer.
+     */
+    void encrypt(final Reader in, final Writer out, final int bufferSize)
+            throws IOException
+    {
+        final Pass pass = new Pass(cipher, scanners.create(false));
+        final char[] buffer = new char[bufferSize];
+        int held = 0;
+        for (int read; (read = in.read(buffer, held, bufferSize - held)) >= 0;)
+        {
+            final int length = held + read;
+            final int complete = length > 0
+                    && Character.isHighSurrogate(buffer[length - 1])
+                    ? length - 1
+                    : length;
+            pass.apply(buffer, 0, complete);
+            out.write(buffer, 0, complete);
+            held = length - complete;
+            System.arraycopy(buffer, complete, buffer, 0, held);
+        }
+        pass.apply(buffer, 0, held);
+        out.write(buffer, 0, held);
+        out.flush();
+    }
+
+    /**
+     * Copies {@code in} to {@code out} a buffer of {@code bufferSize} (at
+     * least 4) bytes at a time; a UTF-8 sequence cut off by the end of a
+     * buffer is held back until the next buffer.
+     */
+    void encrypt(
+            final InputStream in,
+            final OutputStream out,
+            final int bufferSize) throws IOException
+    {
+        final Pass pass = new Pass(cipher, scanners.create(true));
+        final byte[] buffer = new byte[bufferSize];
+        int held = 0;
+        for (int read; (read = in.read(buffer, held, bufferSize - held)) >= 0;)
+        {
+            final int length = held + read;
+            final int complete = Utf8.completeLength(buffer, 0, length);
+            pass.apply(buffer, 0, complete);
+            out.write(buffer, 0, complete);
+            held = length - complete;
+            System.arraycopy(buffer, complete, buffer, 0, held);
+        }
+        pass.apply(buffer, 0, held);
+        out.write(buffer, 0, held);
+        out.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code cipher} {@link
+     *     Cipher#substitutes(int) substitutes} any of the {@code structural}
+     *     chars, or substitutes any char with one of them, at any position,
+     *     since the encrypted records couldn't be read back.
+     */
+    private static void checkUnsubstituted(
+            final Cipher cipher,
+            final char... structural)
+    {
+        for (final char c : structural)
+        {
+            if (cipher.substitutes(c))
+            {
+                throw new IllegalArgumentException(String.format(
+                        "The cipher substitutes U+%04X, which delimits the"
+                                + " fields of the records.",
+                        (int) c));
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link Scanner} for each array or stream of records.
+     */
+    @FunctionalInterface
+    private interface ScannerFactory
+    {
+        /**
+         * @param bytes whether the records are UTF-8 encoded bytes
+         */
+        Scanner create(boolean bytes);
+    }
+
+    /**
+     * Finds the contents of the selected fields, one char (or byte) at a
+     * time.
+     */
+    private interface Scanner
+    {
+        /**
+         * Scans the next char of the records; a byte that isn't ASCII is
+         * scanned as an arbitrary char that isn't ASCII.
+         *
+         * @return whether {@code c} is within the contents of a selected
+         *     field, rather than part of the structure of the records.
+         */
+        boolean next(int c);
+
+        /**
+         * @return a number that changes with each field, so that each field
+         *     is encrypted with its own session of the cipher.
+         */
+        int field();
+    }
+
+    /**
+     * Encrypts the runs of chars (or bytes) that a {@link Scanner} selects,
+     * in the consecutive buffers of a stream of records.
+     */
+    private static final class Pass
+    {
+        private final Cipher cipher;
+        private final Scanner scanner;
+        private Cipher session;
+        private int field = -1;
+
+        Pass(final Cipher cipher, final Scanner scanner)
+        {
+            this.cipher = cipher;
+            this.scanner = scanner;
+        }
+
+        void apply(final char[] records, final int start, final int end)
+        {
+            int run = -1;
+            for (int i = start; i < end; i++)
+            {
+                if (scanner.next(records[i]))
+                {
+                    if (run < 0)
+                    {
+                        run = i;
+                        startRun();
+                    }
+                }
+                else if (run >= 0)
+                {
+                    session.encrypt(records, run, records, run, i - run);
+                    run = -1;
+                }
+            }
+            if (run >= 0)
+            {
+                session.encrypt(records, run, records, run, end - run);
+            }
+        }
+
+        void apply(final byte[] records, final int start, final int end)
+        {
+            int run = -1;
+            for (int i = start; i < end; i++)
+            {
+                if (scanner.next(records[i] & 0xFF))
+                {
+                    if (run < 0)
+                    {
+                        run = i;
+                        startRun();
+                    }
+                }
+                else if (run >= 0)
+                {
+                    session.encrypt(records, run, records, run, i - run);
+                    run = -1;
+                }
+            }
+            if (run >= 0)
+            {
+                session.encrypt(records, run, records, run, end - run);
+            }
+        }
+
+        /**
+         * Starts a new session if the run is the start of a new field, rather
+         * than the rest of a field after an escape or the end of a buffer.
+         */
+        private void startRun()
+        {
+            if (scanner.field() != field)
+            {
+                field = scanner.field();
+                session = cipher.session();
+            }
+        }
+    }
+
+    /**
+     * Scans delimiter separated records, with optionally quoted fields.
+     */
+    private static final class CsvScanner implements Scanner
+    {
+        private final char delimiter;
+        private final boolean[] selectedColumns;
+        private boolean header;
+
+        private int field;
+        private int column;
+        private boolean fieldStart = true;
+        private boolean quoted;
+        private boolean quote;
+        private boolean selected;
+
+        CsvScanner(
+                final char delimiter,
+                final boolean header,
+                final boolean[] selectedColumns)
+        {
+            this.delimiter = delimiter;
+            this.header = header;
+            this.selectedColumns = selectedColumns;
+        }
+
+        @Override
+        public boolean next(final int c)
+        {
+            if (quoted)
+            {
+                if (quote)
+                {
+                    // The quote either escaped this one, or ended the field.
+                    quote = false;
+                    if (c == '"')
+                    {
+                        return false;
+                    }
+                    quoted = false;
+                }
+                else if (c == '"')
+                {
+                    quote = true;
+                    return false;
+                }
+                else
+                {
+                    return selected;
+                }
+            }
+
+            if (c == delimiter)
+            {
+                column++;
+                fieldStart = true;
+                return false;
+            }
+            if (c == '\n')
+            {
+                column = 0;
+                fieldStart = true;
+                header = false;
+                return false;
+            }
+            if (c == '\r')
+            {
+                return false;
+            }
+            if (fieldStart)
+            {
+                fieldStart = false;
+                field++;
+                selected = !header
+                        && column < selectedColumns.length
+                        && selectedColumns[column];
+                if (c == '"')
+                {
+                    quoted = true;
+                    return false;
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        public int field()
+        {
+            return field;
+        }
+    }
+
+    /**
+     * Scans JSON lines records, selecting the string values of the top level
+     * fields whose names are selected.
+     */
+    private static final class JsonScanner implements Scanner
+    {
+        private final Set<String> selectedFields;
+        private final int longestName;
+        private final StringBuilder name = new StringBuilder();
+
+        private int field;
+        private int depth;
+        private boolean string;
+        private boolean escape;
+        private int hexDigits;
+        private boolean inName;
+        private boolean selectedName;
+        private boolean value;
+        private boolean selected;
+
+        JsonScanner(final Set<String> selectedFields)
+        {
+            this.selectedFields = selectedFields;
+            this.longestName = selectedFields.stream()
+                    .mapToInt(String::length)
+                    .max()
+                    .orElse(0);
+        }
+
+        @Override
+        public boolean next(final int c)
+        {
+            if (string)
+            {
+                return nextInString(c);
+            }
+
+            switch (c)
+            {
+                case '"':
+                    string = true;
+                    if (depth == 1 && value)
+                    {
+                        field++;
+                        selected = selectedName;
+                    }
+                    else if (depth == 1)
+                    {
+                        inName = true;
+                        name.setLength(0);
+                    }
+                    value = false;
+                    break;
+                case ':':
+                    value = depth == 1;
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    value = false;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    value = false;
+                    break;
+                case '\n':
+                    // A new record; line breaks can't occur within strings.
+                    depth = 0;
+                    value = false;
+                    break;
+                case ' ':
+                case '\t':
+                case '\r':
+                    break;
+                default:
+                    value = false;
+            }
+            return false;
+        }
+
+        private boolean nextInString(final int c)
+        {
+            if (escape || hexDigits > 0)
+            {
+                if (escape && c == 'u')
+                {
+                    hexDigits = 4;
+                }
+                else if (!escape)
+                {
+                    hexDigits--;
+                }
+                escape = false;
+                appendToName(c);
+                return false;
+            }
+            if (c == '\\')
+            {
+                escape = true;
+                appendToName(c);
+                return false;
+            }
+            if (c == '"' || c == '\n')
+            {
+                string = false;
+                if (inName)
+                {
+                    inName = false;
+                    selectedName = selectedFields.contains(name.toString());
+                }
+                selected = false;
+                if (c == '\n')
+                {
+                    depth = 0;
+                }
+                return false;
+            }
+            if (inName)
+            {
+                appendToName(c);
+                return false;
+            }
+            return selected;
+        }
+
+        private void appendToName(final int c)
+        {
+            // A name longer than any selected one only needs to not match.
+            if (inName && name.length() <= longestName)
+            {
+                name.append((char) c);
+            }
+        }
+
+        @Override
+        public int field()
+        {
+            return field;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.implementsblog.functional;
+
+import java.util.Random;
+
+/**
+ * An arbitrary, keyed substitution cipher: a permutation of each of a set of
+ * code point ranges, such as a keyword alphabet or a random shuffle of [a-z].
+ * <p>
+ * The permutations are validated to be bijective, and compiled into a pair of
+ * {@link SubstitutionTable}s (one for each direction) when the alphabet is
+ * created, so decrypting is exactly as fast as encrypting.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class SubstitutionAlphabet
+{
+    private final CodePointRanges ranges;
+
+    /**
+     * Indexed by range, then by offset within the range, the offset of each
+     * code point's substitute within the same range.
+     */
+    private final int[][] permutations;
+    private final Cipher cipher;
+
+    private SubstitutionAlphabet(
+            final CodePointRanges ranges,
+            final int[][] permutations)
+    {
+        final int[][] inverses = new int[permutations.length][];
+        for (int range = 0; range < permutations.length; range++)
+        {
+            inverses[range] = new int[permutations[range].length];
+            for (int offset = 0; offset < permutations[range].length; offset++)
+            {
+                inverses[range][permutations[range][offset]] = offset;
+            }
+        }
+
+        this.ranges = ranges;
+        this.permutations = permutations;
+        this.cipher = new TableCipher(
+                compile(ranges, permutations),
+                compile(ranges, inverses));
+    }
+
+    /**
+     * Creates the alphabet that substitutes each code point in the given
+     * {@code codePointRanges} with the code point at the same index of {@code
+     * substitutes}. For example, {@code of(CodePointRanges.of('a', 'e'),
+     * "caebd")} substitutes 'a' with 'c', 'b' with 'a', etc.
+     *
+     * @param codePointRanges the ranges of code points to substitute
+     * @param substitutes the substitute of every code point of every range, in
+     *     ascending order; each substitute must be within the same range as the
+     *     code point it substitutes
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code substitutes} isn't a
+     *     permutation of each of the ranges.
+     */
+    public static SubstitutionAlphabet of(
+            final CodePointRanges codePointRanges,
+            final String substitutes)
+    {
+        final int[][] permutations = new int[codePointRanges.size()][];
+        int index = 0;
+        for (int range = 0; range < permutations.length; range++)
+        {
+            final int lowest = codePointRanges.lowest(range);
+            final int size = codePointRanges.highest(range) - lowest + 1;
+            final boolean[] used = new boolean[size];
+            permutations[range] = new int[size];
+            for (int offset = 0; offset < size; offset++)
+            {
+                if (index >= substitutes.length())
+                {
+                    throw new IllegalArgumentException(
+                            "Too few substitutes for " + codePointRanges);
+                }
+
+                final int substitute = substitutes.codePointAt(index);
+                final int substituteOffset = substitute - lowest;
+                if (codePointRanges.indexOf(substitute) != range
+                        || used[substituteOffset])
+                {
+                    throw new IllegalArgumentException(String.format(
+                            "U+%04X can't substitute U+%04X: it's outside of "
+                                    + "its range, or substitutes another code "
+                                    + "point",
+                            substitute,
+                            lowest + offset));
+                }
+                used[substituteOffset] = true;
+                permutations[range][offset] = substituteOffset;
+                index += Character.charCount(substitute);
+            }
+        }
+        if (index != substitutes.length())
+        {
+            throw new IllegalArgumentException(
+                    "Too many substitutes for " + codePointRanges);
+        }
+        return new SubstitutionAlphabet(codePointRanges, permutations);
+    }
+
+    /**
+     * Creates the keyword alphabet of the given {@code keyword}, over the
+     * [a-z] and [A-Z] ranges: each range is substituted with the letters of
+     * the keyword (without repeats), followed by the rest of the letters in
+     * alphabetical order. For example, the keyword "zebras" substitutes "abc"
+     * with "zeb", and "ABC" with "ZEB".
+     *
+     * @param keyword letters from [a-z] and [A-Z]; case doesn't matter
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code keyword} contains characters
+     *     other than [a-z] and [A-Z].
+     */
+    public static SubstitutionAlphabet keyword(final String keyword)
+    {
+        return keyword(keyword, CodePointRanges.ASCII_LETTERS);
+    }
+
+    /**
+     * Creates the keyword alphabet of the given {@code keyword}, over the
+     * given {@code codePointRanges}, as {@link #keyword(String)} does: each
+     * code point of the keyword stands for its offset within its range, and
+     * each range is substituted with the code points at those offsets (the
+     * ones that fit in the range, without repeats), followed by the rest of
+     * the range in ascending order.
+     *
+     * @param keyword code points within the ranges
+     * @param codePointRanges the ranges of code points to substitute
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code keyword} contains code
+     *     points outside of the ranges.
+     */
+    public static SubstitutionAlphabet keyword(
+            final String keyword,
+            final CodePointRanges codePointRanges)
+    {
+        final int[] keywordOffsets = keyword.codePoints().map(codePoint -> {
+            final int range = codePointRanges.indexOf(codePoint);
+            if (range < 0)
+            {
+                throw new IllegalArgumentException(String.format(
+                        "The keyword contains U+%04X, which isn't within %s",
+                        codePoint,
+                        codePointRanges));
+            }
+            return codePoint - codePointRanges.lowest(range);
+        }).toArray();
+
+        final int[][] permutations = new int[codePointRanges.size()][];
+        for (int range = 0; range < permutations.length; range++)
+        {
+            final int size = codePointRanges.highest(range)
+                    - codePointRanges.lowest(range) + 1;
+            final boolean[] used = new boolean[size];
+            final int[] permutation = new int[size];
+            int offset = 0;
+            for (final int keywordOffset : keywordOffsets)
+            {
+                if (keywordOffset < size && !used[keywordOffset])
+                {
+                    used[keywordOffset] = true;
+                    permutation[offset++] = keywordOffset;
+                }
+            }
+            for (int rest = 0; rest < size; rest++)
+            {
+                if (!used[rest])
+                {
+                    permutation[offset++] = rest;
+                }
+            }
+            permutations[range] = permutation;
+        }
+        return new SubstitutionAlphabet(codePointRanges, permutations);
+    }
+
+    /**
+     * Creates a random alphabet over the [a-z] and [A-Z] ranges, each range
+     * shuffled independently.
+     *
+     * @param random the source of randomness; the same seed gives the same
+     *     alphabet
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionAlphabet random(final Random random)
+    {
+        return random(CodePointRanges.ASCII_LETTERS, random);
+    }
+
+    /**
+     * Creates a random alphabet over the given {@code codePointRanges}, each
+     * range shuffled independently.
+     *
+     * @param codePointRanges the ranges of code points to substitute
+     * @param random the source of randomness; the same seed gives the same
+     *     alphabet
+     *
+     * @return never {@code null}.
+     */
+    public static SubstitutionAlphabet random(
+            final CodePointRanges codePointRanges,
+            final Random random)
+    {
+        final int[][] permutations = new int[codePointRanges.size()][];
+        for (int range = 0; range < permutations.length; range++)
+        {
+            final int[] permutation = new int[codePointRanges.highest(range)
+                    - codePointRanges.lowest(range) + 1];
+            for (int offset = 0; offset < permutation.length; offset++)
+            {
+                permutation[offset] = offset;
+            }
+            // Fisher-Yates
+            for (int offset = permutation.length - 1; offset > 0; offset--)
+            {
+                final int other = random.nextInt(offset + 1);
+                final int swap = permutation[offset];
+                permutation[offset] = permutation[other];
+                permutation[other] = swap;
+            }
+            permutations[range] = permutation;
+        }
+        return new SubstitutionAlphabet(codePointRanges, permutations);
+    }
+
+    /**
+     * @return the ranges of code points this alphabet substitutes, never
+     *     {@code null}.
+     */
+    public CodePointRanges ranges()
+    {
+        return ranges;
+    }
+
+    /**
+     * Returns the cipher that substitutes each code point with its substitute
+     * in this alphabet; its {@link Cipher#inverse() inverse} is compiled from
+     * the inverse permutation, rather than searching this one.
+     *
+     * @return never {@code null}, and always the same instance.
+     */
+    public Cipher cipher()
+    {
+        return cipher;
+    }
+
+    /**
+     * @return the substitutes, as passed to {@link #of(CodePointRanges,
+     *     String)}.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int range = 0; range < permutations.length; range++)
+        {
+            for (final int offset : permutations[range])
+            {
+                builder.appendCodePoint(ranges.lowest(range) + offset);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Compiles the given {@code permutations} of the ranges with {@link
+     * SubstitutionCipher#compile(CodePointMapper, CodePointRanges)}.
+     */
+    private static SubstitutionTable compile(
+            final CodePointRanges ranges,
+            final int[][] permutations)
+    {
+        return SubstitutionCipher.compile(
+                (lowest, highest) -> {
+                    final int[] permutation =
+                            permutations[ranges.indexOf(lowest)];
+                    return codePoint ->
+                            lowest + permutation[codePoint - lowest];
+                },
+                ranges);
+    }
+}
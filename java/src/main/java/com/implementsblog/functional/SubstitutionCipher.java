@@ -1,13 +1,7 @@
 package com.implementsblog.functional;
 
-import static java.util.stream.Collectors.toList;
-
-import java.util.List;
 import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.function.IntUnaryOperator;
-import java.util.stream.Collector;
-import java.util.stream.IntStream;
 
 /**
  *
@@ -35,14 +29,7 @@ final class SubstitutionCipher
             final String string,
             final CodePointMapper codePointMapper)
     {
-        return encrypt(
-                string,
-                codePointMapper,
-                "azAZ".codePoints()
-                        .collect(
-                                TreeSet::new,
-                                TreeSet::add,
-                                TreeSet::addAll));
+        return encrypt(string, codePointMapper, CodePointRanges.ASCII_LETTERS);
     }
 
     /**
@@ -68,98 +55,119 @@ final class SubstitutionCipher
      * @return an encrypted string.
      *
      * @throws IllegalArgumentException if {@code characterRanges} contains an
-     *     odd number of elements.
+     *     odd number of elements, or ranges that overlap or contain invalid
+     *     code points.
      */
     public static String encrypt(
             final String string,
             final CodePointMapper codePointMapper,
             final SortedSet<Integer> codePointRanges)
     {
-        if (codePointRanges.size() % 2 != 0)
+        return encrypt(
+                string,
+                codePointMapper,
+                CodePointRanges.of(codePointRanges));
+    }
+
+    /**
+     * Applies a substitution cipher to the given {@code string}, for the
+     * code points within the given {@code codePointRanges}.
+     * <p>
+     * If the ranges are {@link CodePointRanges#isBmpOnly() BMP only}, the
+     * string is substituted one {@code char} at a time; otherwise, surrogate
+     * pairs are decoded so that ranges of supplementary code points (emoji,
+     * historic scripts, etc.) are substituted as well.
+     *
+     * @param string Any string to encrypt
+     * @param codePointMapper the substitution to apply within each range
+     * @param codePointRanges the ranges of code points to substitute
+     *
+     * @return an encrypted string.
+     */
+    static String encrypt(
+            final String string,
+            final CodePointMapper codePointMapper,
+            final CodePointRanges codePointRanges)
+    {
+        final RangeIndex index = index(codePointMapper, codePointRanges);
+        if (codePointRanges.isBmpOnly())
         {
-            throw new IllegalArgumentException();
+            final char[] chars = string.toCharArray();
+            for (int i = 0; i < chars.length; i++)
+            {
+                chars[i] = (char) index.applyAsInt(chars[i]);
+            }
+            return new String(chars);
         }
 
-        return mapAll(
-                string.chars(),
-                codePointRanges
-                        .stream()
-                        .collect(asMappers(codePointMapper, toList())))
+        return string
+                .codePoints()
+                .map(index)
                 .collect(
                         StringBuilder::new,
                         StringBuilder::appendCodePoint,
                         StringBuilder::append).toString();
     }
+
     /**
-     * A collector that creates a collection of {@code substitute} functions.
+     * Compiles the given {@code codePointMapper} over the ranges [a-z] and
+     * [A-Z] into a {@link SubstitutionTable}.
      *
-     * @param downstream the collector type to add {@code substitutes} to.
-     * @param codePointMapper a function that performs character substitution
-     * @param <A> Intermediate type (of type Pair, but doesn't really matter)
-     * @param <R> Return type of the {@code downstream} collector
+     * @param codePointMapper the substitution to apply within each range
      *
      * @return never {@code null}.
+     *
+     * @see #compile(CodePointMapper, CodePointRanges)
      */
-    private static <A, R> Collector<Integer, ?, R> asMappers(
-            final CodePointMapper codePointMapper,
-            final Collector<IntUnaryOperator, A, R> downstream)
+    static SubstitutionTable compile(final CodePointMapper codePointMapper)
     {
-        class Pair
-        {
-            Integer lower;
-            A intermediate = downstream.supplier().get();
-
-            private void add(Integer i)
-            {
-                if (lower == null)
-                {
-                    lower = i;
-                }
-                else
-                {
-                    downstream
-                            .accumulator()
-                            .accept(intermediate, codePointMapper.apply(lower, i));
-
-                    lower = null;
-                }
-            }
-
-            private Pair combine(Pair other)
-            {
-                throw new UnsupportedOperationException(
-                        "Should not have been called because this Collector "
-                                + "does not specify the "
-                                + Collector.Characteristics.CONCURRENT
-                                + " characteristic.");
-            }
-
-            private R finish()
-            {
-                return downstream.finisher().apply(intermediate);
-            }
-        }
+        return compile(codePointMapper, CodePointRanges.ASCII_LETTERS);
+    }
 
-        return Collector.of(Pair::new, Pair::add, Pair::combine, Pair::finish);
+    /**
+     * Compiles the given {@code codePointMapper} over the given {@code
+     * codePointRanges} into a {@link SubstitutionTable}, so that the ranges and
+     * the mapping functions are evaluated once, rather than on every call to
+     * {@link #encrypt(String, CodePointMapper, CodePointRanges)}.
+     * <p>
+     * Applying the returned table to a string produces the same result as
+     * {@link #encrypt(String, CodePointMapper, CodePointRanges)}.
+     *
+     * @param codePointMapper the substitution to apply within each range
+     * @param codePointRanges the ranges of code points to substitute
+     *
+     * @return never {@code null}.
+     */
+    static SubstitutionTable compile(
+            final CodePointMapper codePointMapper,
+            final CodePointRanges codePointRanges)
+    {
+        return SubstitutionTable.of(
+                index(codePointMapper, codePointRanges),
+                codePointRanges);
     }
 
     /**
-     * Applies each {@code functions} with the {@link IntStream#map map
-     * function} of the {@code stream}.
+     * Creates a {@link RangeIndex} that applies, to each code point, the
+     * function {@code codePointMapper} returns for the range containing it.
      *
-     * @param stream the stream to apply the {@code functions} to
-     * @param functions the shifting functions to apply to the {@code stream}
+     * @param codePointMapper the substitution to apply within each range
+     * @param codePointRanges the ranges of code points to substitute
      *
-     * @return the result of applying each of the {@code functions} with the
-     *     {@link IntStream#map map function} of the {@code stream}.
+     * @return never {@code null}.
      */
-    static IntStream mapAll(
-            final IntStream stream, final List<IntUnaryOperator> functions)
+    static RangeIndex index(
+            final CodePointMapper codePointMapper,
+            final CodePointRanges codePointRanges)
     {
-        return !functions.isEmpty()
-                ? mapAll(
-                        stream.map(c -> functions.get(0).applyAsInt(c)),
-                        functions.subList(1, functions.size()))
-                : stream;
+        final IntUnaryOperator[] functions =
+                new IntUnaryOperator[codePointRanges.size()];
+        for (int range = 0; range < functions.length; range++)
+        {
+            functions[range] = codePointMapper.apply(
+                    codePointRanges.lowest(range),
+                    codePointRanges.highest(range));
+        }
+        return new RangeIndex(codePointRanges, functions);
     }
 }
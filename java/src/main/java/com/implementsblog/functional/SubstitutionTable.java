@@ -0,0 +1,747 @@
+package com.implementsblog.functional;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An immutable, precompiled substitution cipher.
+ * <p>
+ * Instances are created once from a {@link CodePointMapper} and a set of code
+ * point ranges (see e.g. {@link CaesarCipher#compile(int)}), after which every
+ * code point is substituted with a single table lookup: code points in the
+ * Basic Multilingual Plane are looked up in a dense {@code char} array,
+ * supplementary code points are looked up in a sorted, sparse table.
+ * <p>
+ * Every substitution maps a BMP code point to a BMP code point and a
+ * supplementary code point to a supplementary code point, so applying a table
+ * never changes the length (in {@code char}s) of the text.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class SubstitutionTable implements IntUnaryOperator
+{
+    private static final int[] NO_CODE_POINTS = new int[0];
+
+    /**
+     * Indexed by {@code char}; characters beyond the end of the table are not
+     * substituted.
+     */
+    private final char[] dense;
+
+    /**
+     * The sorted supplementary code points that are substituted, and at the
+     * same index, what they're substituted with.
+     */
+    private final int[] sparseCodePoints;
+    private final int[] sparseValues;
+
+    /**
+     * The substitutions of the ASCII characters, indexed by byte.
+     */
+    private final byte[] ascii = new byte[0x80];
+
+    /**
+     * Whether any code point outside of ASCII is substituted; if not, UTF-8
+     * bytes can be substituted without decoding multi-byte sequences.
+     */
+    private final boolean substitutesNonAscii;
+
+    /**
+     * Whether every substitution encodes to the same number of bytes in UTF-8
+     * as the code point it replaces, so that UTF-8 bytes can be substituted
+     * without changing their length.
+     */
+    private final boolean preservesUtf8Length;
+
+    /**
+     * Whether chars must be decoded into code points before they're looked
+     * up: if any supplementary code point is substituted, or any surrogate,
+     * which looked up on its own would break the pair it belongs to.
+     */
+    private final boolean decodesPairs;
+
+    /**
+     * Substitutes UTF-8 bytes eight at a time, or {@code null} if this table
+     * isn't one that {@link AsciiSwar} recognises.
+     */
+    private final AsciiSwar swar;
+
+    private SubstitutionTable(
+            final char[] dense,
+            final int[] sparseCodePoints,
+            final int[] sparseValues)
+    {
+        this.dense = dense;
+        this.sparseCodePoints = sparseCodePoints;
+        this.sparseValues = sparseValues;
+
+        boolean substitutesNonAscii = sparseCodePoints.length != 0;
+        boolean preservesUtf8Length = true;
+        boolean decodesPairs = sparseCodePoints.length != 0;
+        for (int c = 0; c < dense.length; c++)
+        {
+            final char value = dense[c];
+            decodesPairs |= value != c && Character.isSurrogate((char) c);
+            if (c < ascii.length)
+            {
+                ascii[c] = (byte) value;
+            }
+            else if (value != c)
+            {
+                substitutesNonAscii = true;
+            }
+
+            if (value != c && !Character.isSurrogate((char) c))
+            {
+                preservesUtf8Length &= !Character.isSurrogate(value)
+                        && Utf8.length(c) == Utf8.length(value);
+            }
+        }
+        for (int c = dense.length; c < ascii.length; c++)
+        {
+            ascii[c] = (byte) c;
+        }
+
+        this.substitutesNonAscii = substitutesNonAscii;
+        this.preservesUtf8Length = preservesUtf8Length;
+        this.decodesPairs = decodesPairs;
+        this.swar = substitutesNonAscii ? null : AsciiSwar.of(ascii);
+    }
+
+    /**
+     * Builds a table by evaluating {@code function} for every code point in
+     * the given ranges.
+     *
+     * @param function the substitution, it must leave code points outside of
+     *     the ranges unchanged
+     * @param ranges the ranges of code points to evaluate {@code function} for
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code function} maps a code point
+     *     to an invalid code point, or maps a BMP code point to a
+     *     supplementary code point (or vice versa).
+     */
+    static SubstitutionTable of(
+            final IntUnaryOperator function,
+            final CodePointRanges ranges)
+    {
+        int denseLength = 0;
+        int sparseLength = 0;
+        for (int range = 0; range < ranges.size(); range++)
+        {
+            final int lowest = ranges.lowest(range);
+            final int highest = ranges.highest(range);
+            if (lowest <= Character.MAX_VALUE)
+            {
+                denseLength = Math.max(
+                        denseLength,
+                        Math.min(highest, Character.MAX_VALUE) + 1);
+            }
+            if (highest >= Character.MIN_SUPPLEMENTARY_CODE_POINT)
+            {
+                sparseLength += highest - Math.max(
+                        lowest,
+                        Character.MIN_SUPPLEMENTARY_CODE_POINT) + 1;
+            }
+        }
+
+        final char[] dense = new char[denseLength];
+        for (int c = 0; c < dense.length; c++)
+        {
+            dense[c] = (char) c;
+        }
+
+        int[] sparseCodePoints = new int[sparseLength];
+        int[] sparseValues = new int[sparseLength];
+        int sparseSize = 0;
+
+        for (int range = 0; range < ranges.size(); range++)
+        {
+            for (int codePoint = ranges.lowest(range);
+                 codePoint <= ranges.highest(range);
+                 codePoint++)
+            {
+                final int value = function.applyAsInt(codePoint);
+                checkSubstitution(codePoint, value);
+
+                if (codePoint <= Character.MAX_VALUE)
+                {
+                    dense[codePoint] = (char) value;
+                }
+                else if (value != codePoint)
+                {
+                    sparseCodePoints[sparseSize] = codePoint;
+                    sparseValues[sparseSize] = value;
+                    sparseSize++;
+                }
+            }
+        }
+
+        if (sparseSize == 0)
+        {
+            sparseCodePoints = NO_CODE_POINTS;
+            sparseValues = NO_CODE_POINTS;
+        }
+        else if (sparseSize < sparseLength)
+        {
+            sparseCodePoints = Arrays.copyOf(sparseCodePoints, sparseSize);
+            sparseValues = Arrays.copyOf(sparseValues, sparseSize);
+        }
+
+        return new SubstitutionTable(dense, sparseCodePoints, sparseValues);
+    }
+
+    private static void checkSubstitution(final int codePoint, final int value)
+    {
+        if (!Character.isValidCodePoint(value))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "U+%04X is substituted with an invalid code point: %d",
+                    codePoint,
+                    value));
+        }
+        if (Character.isBmpCodePoint(codePoint)
+                != Character.isBmpCodePoint(value))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "U+%04X and U+%04X are not both within the Basic "
+                            + "Multilingual Plane, so substituting one for "
+                            + "the other would change the length of the text.",
+                    codePoint,
+                    value));
+        }
+    }
+
+    /**
+     * Substitutes a single code point.
+     *
+     * @param codePoint any code point
+     *
+     * @return the substituted code point, or {@code codePoint} if it isn't
+     *     within any of the ranges of this table.
+     */
+    @Override
+    public int applyAsInt(final int codePoint)
+    {
+        if (codePoint < dense.length)
+        {
+            return dense[codePoint];
+        }
+        if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+        {
+            return codePoint;
+        }
+        final int index = Arrays.binarySearch(sparseCodePoints, codePoint);
+        return index >= 0 ? sparseValues[index] : codePoint;
+    }
+
+    /**
+     * Fuses this table and {@code after} into a single table, that
+     * substitutes each code point with a single lookup, rather than one
+     * lookup per table.
+     *
+     * @param after the table to apply to the result of this one
+     *
+     * @return never {@code null}.
+     */
+    public SubstitutionTable andThen(final SubstitutionTable after)
+    {
+        final char[] fusedDense =
+                new char[Math.max(dense.length, after.dense.length)];
+        for (int c = 0; c < fusedDense.length; c++)
+        {
+            fusedDense[c] = (char) after.applyAsInt(applyAsInt(c));
+        }
+
+        // Only the code points that either table substitutes can change.
+        final int[] codePoints = new int[
+                sparseCodePoints.length + after.sparseCodePoints.length];
+        System.arraycopy(
+                sparseCodePoints,
+                0,
+                codePoints,
+                0,
+                sparseCodePoints.length);
+        System.arraycopy(
+                after.sparseCodePoints,
+                0,
+                codePoints,
+                sparseCodePoints.length,
+                after.sparseCodePoints.length);
+        Arrays.sort(codePoints);
+
+        int[] fusedCodePoints = new int[codePoints.length];
+        int[] fusedValues = new int[codePoints.length];
+        int sparseSize = 0;
+        for (int i = 0; i < codePoints.length; i++)
+        {
+            final int codePoint = codePoints[i];
+            final int value = after.applyAsInt(applyAsInt(codePoint));
+            if ((i == 0 || codePoints[i - 1] != codePoint)
+                    && value != codePoint)
+            {
+                fusedCodePoints[sparseSize] = codePoint;
+                fusedValues[sparseSize] = value;
+                sparseSize++;
+            }
+        }
+
+        if (sparseSize == 0)
+        {
+            fusedCodePoints = NO_CODE_POINTS;
+            fusedValues = NO_CODE_POINTS;
+        }
+        else if (sparseSize < codePoints.length)
+        {
+            fusedCodePoints = Arrays.copyOf(fusedCodePoints, sparseSize);
+            fusedValues = Arrays.copyOf(fusedValues, sparseSize);
+        }
+
+        return new SubstitutionTable(
+                fusedDense,
+                fusedCodePoints,
+                fusedValues);
+    }
+
+    /**
+     * Applies this table to every code point of the given {@code string}.
+     *
+     * @param string the string to encrypt
+     *
+     * @return never {@code null}.
+     */
+    public String apply(final String string)
+    {
+        final char[] chars = string.toCharArray();
+        substitute(chars, 0, chars, 0, chars.length);
+        return new String(chars);
+    }
+
+    /**
+     * Applies this table to {@code length} chars of {@code source}, starting
+     * at {@code sourceOffset}, writing the result to {@code destination},
+     * starting at {@code destinationOffset}.
+     * <p>
+     * {@code source} and {@code destination} may be the same array, as long
+     * as {@code destinationOffset <= sourceOffset}; in particular, the chars
+     * can be substituted in place.
+     *
+     * @param source the chars to encrypt
+     * @param sourceOffset the index of the first char to encrypt
+     * @param destination where to write the encrypted chars
+     * @param destinationOffset the index of the first char to write
+     * @param length the number of chars to encrypt
+     *
+     * @throws IndexOutOfBoundsException if either range is out of the bounds
+     *     of its array.
+     */
+    public void apply(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        checkBounds(source.length, sourceOffset, length);
+        checkBounds(destination.length, destinationOffset, length);
+        substitute(source, sourceOffset, destination, destinationOffset, length);
+    }
+
+    /**
+     * Applies this table to the chars of {@code source} from {@code start}
+     * (inclusive) to {@code end} (exclusive), appending the result to {@code
+     * destination}.
+     *
+     * @param source the chars to encrypt
+     * @param start the index of the first char to encrypt
+     * @param end the index after the last char to encrypt
+     * @param destination where to append the encrypted chars
+     *
+     * @throws IndexOutOfBoundsException if {@code start} or {@code end} are
+     *     out of the bounds of {@code source}, or {@code start > end}.
+     */
+    public void apply(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        checkBounds(source.length(), start, end - start);
+        destination.ensureCapacity(destination.length() + end - start);
+
+        final char[] dense = this.dense;
+        for (int i = start; i < end; i++)
+        {
+            final char c = source.charAt(i);
+            if (decodesPairs
+                    && Character.isHighSurrogate(c)
+                    && i + 1 < end
+                    && Character.isLowSurrogate(source.charAt(i + 1)))
+            {
+                destination.appendCodePoint(applyAsInt(
+                        Character.toCodePoint(c, source.charAt(i + 1))));
+                i++;
+            }
+            else
+            {
+                destination.append(c < dense.length ? dense[c] : c);
+            }
+        }
+    }
+
+    /**
+     * Applies this table to the remaining chars of {@code source}, writing
+     * the result to {@code destination}. The position of both buffers is
+     * advanced by the number of chars encrypted.
+     *
+     * @param source the chars to encrypt
+     * @param destination where to write the encrypted chars
+     *
+     * @throws java.nio.BufferOverflowException if {@code destination} has
+     *     fewer chars remaining than {@code source}; neither buffer is
+     *     modified in that case.
+     * @throws java.nio.ReadOnlyBufferException if {@code destination} is
+     *     read-only.
+     */
+    public void apply(final CharBuffer source, final CharBuffer destination)
+    {
+        final int length = source.remaining();
+        if (destination.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        if (source.hasArray() && destination.hasArray())
+        {
+            substitute(
+                    source.array(),
+                    source.arrayOffset() + source.position(),
+                    destination.array(),
+                    destination.arrayOffset() + destination.position(),
+                    length);
+            source.position(source.position() + length);
+            destination.position(destination.position() + length);
+            return;
+        }
+
+        final char[] dense = this.dense;
+        while (source.hasRemaining())
+        {
+            final char c = source.get();
+            if (decodesPairs
+                    && Character.isHighSurrogate(c)
+                    && source.hasRemaining()
+                    && Character.isLowSurrogate(source.get(source.position())))
+            {
+                final int codePoint = applyAsInt(
+                        Character.toCodePoint(c, source.get()));
+                destination
+                        .put(Character.highSurrogate(codePoint))
+                        .put(Character.lowSurrogate(codePoint));
+            }
+            else
+            {
+                destination.put(c < dense.length ? dense[c] : c);
+            }
+        }
+    }
+
+    /**
+     * Applies this table to {@code length} bytes of UTF-8 encoded text in
+     * {@code source}, starting at {@code sourceOffset}, writing the result to
+     * {@code destination}, starting at {@code destinationOffset}. The text is
+     * never decoded into chars: ASCII bytes are substituted directly, and
+     * multi-byte sequences are only decoded if this table substitutes any
+     * non-ASCII code points.
+     * <p>
+     * Bytes that are not well-formed UTF-8, including a multi-byte sequence
+     * that is cut off by the end of the range, are copied unchanged.
+     * <p>
+     * Tables that only rotate or reverse [a-z] and [A-Z] (such as Caesar and
+     * Atbash tables, or compositions of them) substitute eight bytes at a
+     * time, with arithmetic on a {@code long} rather than table lookups.
+     * <p>
+     * {@code source} and {@code destination} may be the same array, as long
+     * as {@code destinationOffset <= sourceOffset}; in particular, the bytes
+     * can be substituted in place.
+     *
+     * @param source the UTF-8 bytes to encrypt
+     * @param sourceOffset the index of the first byte to encrypt
+     * @param destination where to write the encrypted bytes
+     * @param destinationOffset the index of the first byte to write
+     * @param length the number of bytes to encrypt
+     *
+     * @throws IndexOutOfBoundsException if either range is out of the bounds
+     *     of its array.
+     * @throws UnsupportedOperationException if this table substitutes a code
+     *     point with one that has a different UTF-8 length (see {@link
+     *     #preservesUtf8Length()}).
+     */
+    public void apply(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        checkBounds(source.length, sourceOffset, length);
+        checkBounds(destination.length, destinationOffset, length);
+        checkUtf8();
+
+        if (!substitutesNonAscii)
+        {
+            final int done = swar == null ? 0 : swar.apply(
+                    ByteBuffer.wrap(source),
+                    sourceOffset,
+                    ByteBuffer.wrap(destination),
+                    destinationOffset,
+                    length);
+            final byte[] ascii = this.ascii;
+            for (int i = done; i < length; i++)
+            {
+                final byte b = source[sourceOffset + i];
+                destination[destinationOffset + i] = b >= 0 ? ascii[b] : b;
+            }
+            return;
+        }
+
+        substitute(
+                ByteBuffer.wrap(source),
+                sourceOffset,
+                ByteBuffer.wrap(destination),
+                destinationOffset,
+                length);
+    }
+
+    /**
+     * Applies this table to the remaining UTF-8 encoded bytes of {@code
+     * source}, writing the result to {@code destination}, as {@link
+     * #apply(byte[], int, byte[], int, int)} does. The position of both
+     * buffers is advanced by the number of bytes encrypted.
+     *
+     * @param source the UTF-8 bytes to encrypt
+     * @param destination where to write the encrypted bytes
+     *
+     * @throws java.nio.BufferOverflowException if {@code destination} has
+     *     fewer bytes remaining than {@code source}; neither buffer is
+     *     modified in that case.
+     * @throws UnsupportedOperationException if this table substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    public void apply(final ByteBuffer source, final ByteBuffer destination)
+    {
+        final int length = source.remaining();
+        if (destination.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        substitute(source, destination, length);
+        source.position(source.position() + length);
+        destination.position(destination.position() + length);
+    }
+
+    /**
+     * Applies this table, in place, to the remaining UTF-8 encoded bytes of
+     * {@code buffer}, as {@link #apply(byte[], int, byte[], int, int)} does.
+     * The position of the buffer is advanced to its limit.
+     *
+     * @param buffer the UTF-8 bytes to encrypt
+     *
+     * @throws java.nio.ReadOnlyBufferException if {@code buffer} is
+     *     read-only.
+     * @throws UnsupportedOperationException if this table substitutes a code
+     *     point with one that has a different UTF-8 length.
+     */
+    public void apply(final ByteBuffer buffer)
+    {
+        substitute(buffer, buffer, buffer.remaining());
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Whether every substitution in this table encodes to the same number of
+     * bytes in UTF-8 as the code point it replaces. If not, this table can't
+     * be applied to UTF-8 bytes directly.
+     *
+     * @return {@code true} if the {@code byte} and {@link ByteBuffer}
+     *     overloads of {@code apply} are supported.
+     */
+    public boolean preservesUtf8Length()
+    {
+        return preservesUtf8Length;
+    }
+
+    private void checkUtf8()
+    {
+        if (!preservesUtf8Length)
+        {
+            throw new UnsupportedOperationException(
+                    "This table substitutes code points with ones that have "
+                            + "a different UTF-8 length, so it can't be "
+                            + "applied to UTF-8 bytes directly.");
+        }
+    }
+
+    /**
+     * Substitutes {@code length} bytes from the position of {@code source}
+     * into {@code destination}, starting at its position; neither position is
+     * changed.
+     */
+    private void substitute(
+            final ByteBuffer source,
+            final ByteBuffer destination,
+            final int length)
+    {
+        checkUtf8();
+
+        if (source.hasArray() && destination.hasArray())
+        {
+            apply(
+                    source.array(),
+                    source.arrayOffset() + source.position(),
+                    destination.array(),
+                    destination.arrayOffset() + destination.position(),
+                    length);
+            return;
+        }
+        if (destination.isReadOnly())
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        if (!substitutesNonAscii)
+        {
+            final int done = swar == null ? 0 : swar.apply(
+                    source,
+                    source.position(),
+                    destination,
+                    destination.position(),
+                    length);
+            final byte[] ascii = this.ascii;
+            final int offset = destination.position() - source.position();
+            for (int i = source.position() + done,
+                     end = source.position() + length;
+                 i < end;
+                 i++)
+            {
+                final byte b = source.get(i);
+                destination.put(i + offset, b >= 0 ? ascii[b] : b);
+            }
+            return;
+        }
+
+        substitute(
+                source,
+                source.position(),
+                destination,
+                destination.position(),
+                length);
+    }
+
+    /**
+     * Substitutes {@code length} UTF-8 encoded bytes of {@code source}, from
+     * {@code sourceIndex}, into {@code destination}, from {@code
+     * destinationIndex}, decoding multi-byte sequences.
+     */
+    private void substitute(
+            final ByteBuffer source,
+            final int sourceIndex,
+            final ByteBuffer destination,
+            final int destinationIndex,
+            final int length)
+    {
+        final byte[] ascii = this.ascii;
+        final int end = sourceIndex + length;
+        for (int i = sourceIndex, j = destinationIndex; i < end; )
+        {
+            final byte b = source.get(i);
+            if (b >= 0)
+            {
+                destination.put(j++, ascii[b]);
+                i++;
+                continue;
+            }
+
+            final int codePoint = Utf8.decode(source, i, end);
+            if (codePoint < 0)
+            {
+                destination.put(j++, b);
+                i++;
+                continue;
+            }
+
+            final int sequenceLength = Utf8.length(codePoint);
+            Utf8.encode(applyAsInt(codePoint), destination, j, sequenceLength);
+            i += sequenceLength;
+            j += sequenceLength;
+        }
+    }
+
+    /**
+     * Substitutes {@code length} chars of {@code source} into {@code
+     * destination}, without checking bounds.
+     */
+    private void substitute(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        final char[] dense = this.dense;
+        if (!decodesPairs)
+        {
+            // Only BMP code points other than surrogates are substituted, so
+            // there's no need to decode surrogate pairs.
+            for (int i = 0; i < length; i++)
+            {
+                final char c = source[sourceOffset + i];
+                destination[destinationOffset + i] =
+                        c < dense.length ? dense[c] : c;
+            }
+            return;
+        }
+
+        final int end = sourceOffset + length;
+        for (int i = sourceOffset, j = destinationOffset; i < end; i++, j++)
+        {
+            final char c = source[i];
+            if (Character.isHighSurrogate(c)
+                    && i + 1 < end
+                    && Character.isLowSurrogate(source[i + 1]))
+            {
+                Character.toChars(
+                        applyAsInt(Character.toCodePoint(c, source[i + 1])),
+                        destination,
+                        j);
+                i++;
+                j++;
+            }
+            else
+            {
+                destination[j] = c < dense.length ? dense[c] : c;
+            }
+        }
+    }
+
+    static void checkBounds(
+            final int arrayLength,
+            final int offset,
+            final int length)
+    {
+        if (offset < 0 || length < 0 || offset > arrayLength - length)
+        {
+            throw new IndexOutOfBoundsException(String.format(
+                    "offset %d and length %d are out of bounds for length %d",
+                    offset,
+                    length,
+                    arrayLength));
+        }
+    }
+}
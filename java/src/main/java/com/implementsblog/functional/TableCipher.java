@@ -0,0 +1,142 @@
+package com.implementsblog.functional;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Cipher} backed by a pair of {@link SubstitutionTable}s, one for each
+ * direction.
+ */
+final class TableCipher implements Cipher
+{
+    private final SubstitutionTable encryption;
+    private final SubstitutionTable decryption;
+    private final TableCipher inverse;
+
+    /**
+     * @param encryption the table that encrypts
+     * @param decryption the table that reverses {@code encryption}
+     */
+    TableCipher(
+            final SubstitutionTable encryption,
+            final SubstitutionTable decryption)
+    {
+        this.encryption = encryption;
+        this.decryption = decryption;
+        this.inverse = new TableCipher(decryption, encryption, this);
+    }
+
+    private TableCipher(
+            final SubstitutionTable encryption,
+            final SubstitutionTable decryption,
+            final TableCipher inverse)
+    {
+        this.encryption = encryption;
+        this.decryption = decryption;
+        this.inverse = inverse;
+    }
+
+    @Override
+    public String encrypt(final String text)
+    {
+        return encryption.apply(text);
+    }
+
+    @Override
+    public String decrypt(final String cipherText)
+    {
+        return decryption.apply(cipherText);
+    }
+
+    @Override
+    public void encrypt(
+            final char[] source,
+            final int sourceOffset,
+            final char[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        encryption.apply(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(
+            final CharSequence source,
+            final int start,
+            final int end,
+            final StringBuilder destination)
+    {
+        encryption.apply(source, start, end, destination);
+    }
+
+    @Override
+    public void encrypt(final CharBuffer source, final CharBuffer destination)
+    {
+        encryption.apply(source, destination);
+    }
+
+    @Override
+    public void encrypt(
+            final byte[] source,
+            final int sourceOffset,
+            final byte[] destination,
+            final int destinationOffset,
+            final int length)
+    {
+        encryption.apply(
+                source,
+                sourceOffset,
+                destination,
+                destinationOffset,
+                length);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        encryption.apply(source, destination);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer buffer)
+    {
+        encryption.apply(buffer);
+    }
+
+    /**
+     * Encrypts each char of the view on demand, with the encryption table.
+     */
+    @Override
+    public CipherView view(final CharSequence text)
+    {
+        return new CipherView(text, encryption);
+    }
+
+    /**
+     * Fuses this cipher's tables with those of {@code after}, if it's also a
+     * {@code TableCipher}.
+     */
+    @Override
+    public Cipher andThen(final Cipher after)
+    {
+        if (after instanceof TableCipher)
+        {
+            final TableCipher table = (TableCipher) after;
+            return new TableCipher(
+                    encryption.andThen(table.encryption),
+                    table.decryption.andThen(decryption));
+        }
+        return Cipher.super.andThen(after);
+    }
+
+    @Override
+    public Cipher inverse()
+    {
+        return inverse;
+    }
+}
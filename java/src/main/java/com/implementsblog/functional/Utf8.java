@@ -0,0 +1,135 @@
+package com.implementsblog.functional;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Contains functions that encode and decode single UTF-8 sequences.
+ */
+final class Utf8
+{
+    /**
+     * Decodes the UTF-8 sequence that starts at {@code index}.
+     *
+     * @param bytes the UTF-8 encoded bytes
+     * @param index the index of the first byte of the sequence
+     * @param end the index after the last byte that may be read
+     *
+     * @return the code point, or {@code -1} if the sequence is malformed or
+     *     doesn't end before {@code end}.
+     */
+    static int decode(final ByteBuffer bytes, final int index, final int end)
+    {
+        final int lead = bytes.get(index) & 0xFF;
+        final int length = sequenceLength(lead);
+        if (length < 2 || length > end - index)
+        {
+            return -1;
+        }
+
+        int codePoint = lead & 0x7F >> length;
+        for (int i = index + 1; i < index + length; i++)
+        {
+            final int b = bytes.get(i);
+            if ((b & 0xC0) != 0x80)
+            {
+                return -1;
+            }
+            codePoint = codePoint << 6 | b & 0x3F;
+        }
+
+        return length(codePoint) != length
+                || codePoint > Character.MAX_CODE_POINT
+                || Character.MIN_SURROGATE <= codePoint
+                        && codePoint <= Character.MAX_SURROGATE
+                ? -1
+                : codePoint;
+    }
+
+    /**
+     * Encodes {@code codePoint}, which is {@code length} bytes long in UTF-8,
+     * at {@code index}.
+     *
+     * @param codePoint the code point to encode
+     * @param bytes where to write the encoded bytes
+     * @param index the index of the first byte to write
+     * @param length {@code length(codePoint)}
+     */
+    static void encode(
+            final int codePoint,
+            final ByteBuffer bytes,
+            final int index,
+            final int length)
+    {
+        // The lead byte starts with as many 1 bits as there are bytes.
+        bytes.put(
+                index,
+                (byte) (0xFF00 >> length | codePoint >> 6 * (length - 1)));
+        for (int i = 1; i < length; i++)
+        {
+            bytes.put(
+                    index + i,
+                    (byte) (0x80 | codePoint >> 6 * (length - 1 - i) & 0x3F));
+        }
+    }
+
+    /**
+     * @param codePoint any code point
+     *
+     * @return the number of bytes {@code codePoint} is encoded as in UTF-8.
+     */
+    static int length(final int codePoint)
+    {
+        return codePoint < 0x80 ? 1
+                : codePoint < 0x800 ? 2
+                : codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? 3
+                : 4;
+    }
+
+    /**
+     * Returns the number of bytes, from the start of the given range, that
+     * don't end with a UTF-8 sequence that is cut off by the end of the range.
+     * Those bytes can be decoded without knowing what follows the range.
+     *
+     * @param bytes the UTF-8 encoded bytes
+     * @param offset the index of the first byte of the range
+     * @param length the number of bytes in the range
+     *
+     * @return between {@code length - 3} and {@code length}, but never
+     *     negative.
+     */
+    static int completeLength(
+            final byte[] bytes,
+            final int offset,
+            final int length)
+    {
+        final int end = offset + length;
+        for (int i = end - 1; i >= Math.max(offset, end - 3); i--)
+        {
+            final int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80)
+            {
+                return i + sequenceLength(b) > end ? i - offset : length;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the length of the sequence started by the {@code lead} byte, or
+     *     1 if {@code lead} can't start a multi-byte sequence.
+     */
+    private static int sequenceLength(final int lead)
+    {
+        return lead >= 0xF5 ? 1
+                : lead >= 0xF0 ? 4
+                : lead >= 0xE0 ? 3
+                : lead >= 0xC2 ? 2
+                : 1;
+    }
+
+    private Utf8()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
@@ -0,0 +1,192 @@
+package com.implementsblog.functional;
+
+/**
+ * Contains functions that implement the Vigen&egrave;re cipher and its
+ * variants.
+ * <p>
+ * The Vigen&egrave;re cipher is a Caesar cipher whose shift changes from one
+ * letter to the next: each letter of the key gives the shift of one letter of
+ * the text ('a' shifts by 0, 'b' by 1, etc.), and the key is repeated for as
+ * long as the text. For example, "attack at dawn" encrypted with the key
+ * "lemon" becomes "lxfopv ef rnhr". Characters outside of the [a-z] and [A-Z]
+ * ranges remain the same, and don't use up a letter of the key.
+ * <p>
+ * The Beaufort cipher subtracts each letter of the text from the letter of the
+ * key instead, so encryption and decryption are the same. The autokey cipher
+ * only uses the key once, then continues with the letters of the text itself.
+ * <p>
+ * The returned ciphers precompute a table of every shift, so each letter is
+ * encrypted as quickly as with a {@link CaesarCipher}. Since a letter's shift
+ * depends on the letters before it, use {@link Cipher#session()} to encrypt a
+ * text in parts.
+ */
+public final class VigenereCipher
+{
+    /**
+     * Applies the Vigen&egrave;re cipher to the given {@code string}, with
+     * the given {@code key}.
+     *
+     * @param string the string to encrypt
+     * @param key the letters, [a-z] or [A-Z], to shift by
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     characters other than [a-z] and [A-Z].
+     */
+    public static String encrypt(final String string, final String key)
+    {
+        return withKey(key).encrypt(string);
+    }
+
+    /**
+     * Reverses {@link #encrypt(String, String)}.
+     *
+     * @param string the string to decrypt
+     * @param key the key the string was encrypted with
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     characters other than [a-z] and [A-Z].
+     */
+    public static String decrypt(final String string, final String key)
+    {
+        return withKey(key).decrypt(string);
+    }
+
+    /**
+     * Returns the Vigen&egrave;re cipher with the given {@code key}, over the
+     * [a-z] and [A-Z] ranges.
+     *
+     * @param key the letters, [a-z] or [A-Z], to shift by
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     characters other than [a-z] and [A-Z].
+     */
+    public static Cipher withKey(final String key)
+    {
+        return withKey(key, CodePointRanges.ASCII_LETTERS);
+    }
+
+    /**
+     * Returns the Vigen&egrave;re cipher with the given {@code key}, over the
+     * given {@code codePointRanges}: each code point of the key shifts by its
+     * offset within its range, and each letter is shifted within its range.
+     *
+     * @param key the code points to shift by, each within one of the ranges
+     * @param codePointRanges the ranges of code points to shift; they must
+     *     not contain surrogates or supplementary code points
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     code points outside of the ranges, or if the ranges contain
+     *     surrogates or supplementary code points.
+     */
+    public static Cipher withKey(
+            final String key,
+            final CodePointRanges codePointRanges)
+    {
+        return new KeyStreamCipher(
+                key,
+                codePointRanges,
+                KeyStreamCipher.Tableau.VIGENERE,
+                false);
+    }
+
+    /**
+     * Returns the Beaufort cipher with the given {@code key}, over the [a-z]
+     * and [A-Z] ranges. Since it's its own inverse, {@link
+     * Cipher#encrypt(String)} and {@link Cipher#decrypt(String)} are
+     * equivalent.
+     *
+     * @param key the letters, [a-z] or [A-Z], to subtract from
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     characters other than [a-z] and [A-Z].
+     */
+    public static Cipher beaufort(final String key)
+    {
+        return beaufort(key, CodePointRanges.ASCII_LETTERS);
+    }
+
+    /**
+     * Returns the Beaufort cipher with the given {@code key}, over the given
+     * {@code codePointRanges}, as {@link #withKey(String, CodePointRanges)}
+     * does.
+     *
+     * @param key the code points to subtract from
+     * @param codePointRanges the ranges of code points to substitute
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException see {@link #withKey(String,
+     *     CodePointRanges)}.
+     */
+    public static Cipher beaufort(
+            final String key,
+            final CodePointRanges codePointRanges)
+    {
+        return new KeyStreamCipher(
+                key,
+                codePointRanges,
+                KeyStreamCipher.Tableau.BEAUFORT,
+                false);
+    }
+
+    /**
+     * Returns the autokey cipher with the given {@code key}, over the [a-z]
+     * and [A-Z] ranges: the key shifts the first letters of the text, and
+     * each following letter is shifted by the letter of the plain text that
+     * came {@code key.length()} letters before it.
+     * <p>
+     * Since each shift depends on the whole plain text before it, the
+     * returned cipher doesn't encrypt in parallel.
+     *
+     * @param key the letters, [a-z] or [A-Z], to start shifting by
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code key} is empty, or contains
+     *     characters other than [a-z] and [A-Z].
+     */
+    public static Cipher autokey(final String key)
+    {
+        return autokey(key, CodePointRanges.ASCII_LETTERS);
+    }
+
+    /**
+     * Returns the autokey cipher with the given {@code key}, over the given
+     * {@code codePointRanges}, as {@link #withKey(String, CodePointRanges)}
+     * does.
+     *
+     * @param key the code points to start shifting by
+     * @param codePointRanges the ranges of code points to shift
+     *
+     * @return never {@code null}.
+     *
+     * @throws IllegalArgumentException see {@link #withKey(String,
+     *     CodePointRanges)}.
+     */
+    public static Cipher autokey(
+            final String key,
+            final CodePointRanges codePointRanges)
+    {
+        return new KeyStreamCipher(
+                key,
+                codePointRanges,
+                KeyStreamCipher.Tableau.VIGENERE,
+                true);
+    }
+
+    private VigenereCipher()
+    {
+        throw new UnsupportedOperationException(
+                "Don't instantiate a utility class.");
+    }
+}
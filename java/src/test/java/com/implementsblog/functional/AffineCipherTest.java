@@ -27,6 +27,107 @@ public class AffineCipherTest
                 .isEqualTo(decrypt(encrypt(text, key1, key2), key1, key2));
     }
 
+    @Test(dataProvider = "testEncryptDecryptAreInverseProvider")
+    public void testOf(String text, Key1 key1, Key2 key2)
+    {
+        final Cipher cipher = AffineCipher.of(key1, key2);
+        assertThat(cipher.encrypt(text)).isEqualTo(encrypt(text, key1, key2));
+        assertThat(cipher.decrypt(text)).isEqualTo(decrypt(text, key1, key2));
+        assertThat(cipher).isSameAs(AffineCipher.of(key1, key2));
+    }
+
+    @Test(dataProvider = "testEncryptDecryptAreInverseProvider")
+    public void testWithKeysMatchesEnums(String text, Key1 key1, Key2 key2)
+    {
+        final Cipher cipher = AffineCipher.withKeys(
+                key1.getValue(),
+                key2.getValue(),
+                CodePointRanges.ASCII_LETTERS);
+        assertThat(cipher.encrypt(text)).isEqualTo(encrypt(text, key1, key2));
+        assertThat(cipher.decrypt(text)).isEqualTo(decrypt(text, key1, key2));
+    }
+
+    @Test
+    public void testDigits()
+    {
+        final CodePointRanges digits = CodePointRanges.of('0', '9');
+        final Cipher cipher = AffineCipher.withKeys(7, 3, digits);
+
+        // 7 * d + 3 (mod 10): 0 -> 3, 1 -> 0, 2 -> 7, ..., 9 -> 6.
+        assertThat(cipher.encrypt("0123456789-x"))
+                .isEqualTo("3074185296-x");
+        assertThat(cipher.decrypt("3074185296-x"))
+                .isEqualTo("0123456789-x");
+        assertThat(encrypt("0123456789-x", 7, 3, digits))
+                .isEqualTo("3074185296-x");
+        assertThat(decrypt("3074185296-x", 7, 3, digits))
+                .isEqualTo("0123456789-x");
+    }
+
+    @Test(dataProvider = "keysProvider")
+    public void testWithKeysAreInverse(int key1, int key2)
+    {
+        final CodePointRanges ranges = CodePointRanges.builder()
+                .add(CodePointRanges.GREEK_LETTERS)
+                .add('0', '9')
+                .add(0x1F600, 0x1F64E)
+                .build();
+        final StringBuilder everyCodePoint = new StringBuilder();
+        IntStream.rangeClosed(0, 0x1F6FF)
+                .filter(c -> !Character.isSurrogate((char) c)
+                        || !Character.isBmpCodePoint(c))
+                .forEach(everyCodePoint::appendCodePoint);
+        final String text = everyCodePoint.toString();
+
+        final Cipher cipher = AffineCipher.withKeys(key1, key2, ranges);
+        final String encrypted = cipher.encrypt(text);
+        assertThat(encrypted).isEqualTo(encrypt(text, key1, key2, ranges));
+        assertThat(cipher.decrypt(encrypted)).isEqualTo(text);
+        assertThat(decrypt(encrypted, key1, key2, ranges)).isEqualTo(text);
+        assertThat(encrypted.codePoints().sorted().toArray())
+                .isEqualTo(text.codePoints().sorted().toArray());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testKey1NotCoprime()
+    {
+        // 5 is coprime with 26, but divides the 25 lower case Greek letters.
+        AffineCipher.withKeys(5, 1, CodePointRanges.GREEK_LETTERS);
+    }
+
+    @Test
+    public void testInverse()
+    {
+        for (final Key1 key1 : Key1.values())
+        {
+            assertThat(AffineCipher.inverse(key1.getValue(), 26))
+                    .isEqualTo(key1.getModularMultiplicativeInverse() % 26);
+        }
+        assertThat(AffineCipher.inverse(7, 10)).isEqualTo(3);
+        assertThat(AffineCipher.inverse(-3, 10)).isEqualTo(3);
+        assertThat(AffineCipher.inverse(1_000_003, 0x10FFFF)
+                * 1_000_003L % 0x10FFFF).isEqualTo(1);
+        assertThat(AffineCipher.inverse(5, 1)).isEqualTo(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInverseNotCoprime()
+    {
+        AffineCipher.inverse(4, 26);
+    }
+
+    @DataProvider
+    private static Object[][] keysProvider()
+    {
+        // Coprime with the sizes of the ranges: 17, 7, 25, 10 and 79.
+        return new Object[][] {
+                { 1, 0 },
+                { 3, 7 },
+                { -11, -5 },
+                { 1_000_003, Integer.MAX_VALUE },
+                { Integer.MIN_VALUE + 1, Integer.MIN_VALUE },
+        };
+    }
 
     @DataProvider
     private static Object[][] testEncryptDecryptAreInverseProvider()
@@ -0,0 +1,131 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link AsciiSwar} class.
+ */
+public class AsciiSwarTest
+{
+    private static final Random RANDOM = new Random();
+
+    @Test(dataProvider = "recognisedProvider")
+    public void testMatchesTable(final SubstitutionTable table)
+    {
+        final byte[] ascii = ascii(table);
+        final AsciiSwar swar = AsciiSwar.of(ascii);
+        assertThat(swar).isNotNull();
+
+        // Every byte, in every lane.
+        for (int b = 0; b < 0x100; b++)
+        {
+            final long word = (b & 0xFF) * 0x0101010101010101L;
+            assertThat(swar.apply(word)).isEqualTo(expected(ascii, word));
+        }
+        for (int i = 0; i < 10_000; i++)
+        {
+            final long word = RANDOM.nextLong();
+            assertThat(swar.apply(word)).isEqualTo(expected(ascii, word));
+        }
+    }
+
+    @Test(dataProvider = "recognisedProvider")
+    public void testApply(final SubstitutionTable table)
+    {
+        final AsciiSwar swar = AsciiSwar.of(ascii(table));
+        final byte[] bytes = new byte[100];
+        RANDOM.nextBytes(bytes);
+        final byte[] expected = bytes.clone();
+        for (int i = 0; i < expected.length; i++)
+        {
+            expected[i] = (byte) table.applyAsInt(expected[i] & 0xFF);
+        }
+        // A multi-byte sequence's bytes are never substituted.
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if (bytes[i] < 0)
+            {
+                expected[i] = bytes[i];
+            }
+        }
+
+        // Three bytes aren't substituted; the rest are, in place.
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        assertThat(swar.apply(buffer, 3, buffer, 1, 99)).isEqualTo(96);
+        for (int i = 0; i < 96; i++)
+        {
+            assertThat(buffer.get(1 + i)).isEqualTo(expected[3 + i]);
+        }
+    }
+
+    @Test
+    public void testNotRecognised()
+    {
+        assertThat(AsciiSwar.of(ascii(AffineCipher.compileEncryption(
+                Key1._5,
+                Key2._8)))).isNull();
+        assertThat(AsciiSwar.of(ascii(CaesarCipher.compileInRanges(
+                1,
+                CodePointRanges.of('a', 'y'))))).isNull();
+        assertThat(AsciiSwar.of(ascii(CaesarCipher.compileInRanges(
+                1,
+                CodePointRanges.of('0', '9'))))).isNull();
+        assertThat(AsciiSwar.of(ascii(CaesarCipher.compileInRanges(
+                1,
+                CodePointRanges.of(0x7F, 0x80))))).isNull();
+    }
+
+    private static byte[] ascii(final SubstitutionTable table)
+    {
+        final byte[] ascii = new byte[0x80];
+        for (int c = 0; c < ascii.length; c++)
+        {
+            ascii[c] = (byte) table.applyAsInt(c);
+        }
+        return ascii;
+    }
+
+    private static long expected(final byte[] ascii, final long word)
+    {
+        long expected = 0;
+        for (int lane = 0; lane < Long.BYTES; lane++)
+        {
+            final int b = (int) (word >>> (8 * lane)) & 0xFF;
+            final int substituted = b < 0x80 ? ascii[b] : b;
+            expected |= (long) substituted << (8 * lane);
+        }
+        return expected;
+    }
+
+    @DataProvider
+    private static Object[][] recognisedProvider()
+    {
+        return Stream
+                .concat(
+                        IntStream
+                                .range(-26, 27)
+                                .mapToObj(CaesarCipher::compile),
+                        Stream.of(
+                                AtbashCipher.compile(),
+                                AtbashCipher.compile().andThen(
+                                        CaesarCipher.compile(5)),
+                                CaesarCipher.compile(20).andThen(
+                                        AtbashCipher.compile()),
+                                CaesarCipher.compile(3).andThen(
+                                        AtbashCipher.compileInRanges(
+                                                CodePointRanges.of('A', 'Z')))))
+                .map(table -> new Object[] { table })
+                .toArray(Object[][]::new);
+    }
+}
@@ -1,6 +1,7 @@
 package com.implementsblog.functional;
 
 import static com.implementsblog.functional.AtbashCipher.encrypt;
+import static com.implementsblog.functional.AtbashCipher.encryptInRanges;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.apache.commons.lang3.RandomStringUtils;
@@ -46,6 +47,40 @@ public class AtbashCipherTest
                                 codePointRanges));
     }
 
+    @Test(dataProvider = "knownValuesProvider")
+    public void testInstanceKnownValues(
+            final String cipherText,
+            final String text)
+    {
+        assertThat(cipherText).isEqualTo(AtbashCipher.instance().encrypt(text));
+        assertThat(text)
+                .isEqualTo(AtbashCipher.instance().decrypt(cipherText));
+        assertThat(AtbashCipher.instance()).isSameAs(AtbashCipher.instance());
+    }
+
+    @Test(dataProvider = "testInverseGeneralProvider")
+    public void testWithRanges(
+            final String text,
+            final SortedSet<Integer> codePointRanges)
+    {
+        final Cipher cipher = AtbashCipher.withRanges(codePointRanges);
+        assertThat(cipher.encrypt(text))
+                .isEqualTo(encrypt(text, codePointRanges));
+        assertThat(cipher.decrypt(cipher.encrypt(text))).isEqualTo(text);
+    }
+
+    @Test
+    public void testCodePointRanges()
+    {
+        final String text = "Zo\u00C0\u00DE\u00DF\u00FF";
+        assertThat(encryptInRanges(text, CodePointRanges.LATIN_1_LETTERS))
+                .isEqualTo("Al\u00D6\u00D8\u00F6\u00F8");
+        assertThat(AtbashCipher
+                .inRanges(CodePointRanges.LATIN_1_LETTERS)
+                .decrypt("Al\u00D6\u00D8\u00F6\u00F8"))
+                .isEqualTo(text);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testGeneralOddCodePointRange()
     {
@@ -77,6 +112,7 @@ public class AtbashCipherTest
                 RandomStringUtils::randomNumeric)
                 // Create a list of random strings of each type
                 .flatMap(s -> IntStream.range(0, 100).mapToObj(i -> s.apply(50)))
+                .map(string -> new Object[] { string })
                 .toArray(Object[][]::new);
     }
 
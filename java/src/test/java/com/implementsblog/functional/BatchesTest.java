@@ -0,0 +1,185 @@
+package com.implementsblog.functional;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests the batch methods of {@link Cipher}, and the {@link Batches} class.
+ */
+public class BatchesTest
+{
+    private static final Cipher CIPHER = AffineCipher.of(Key1._7, Key2._19);
+
+    private static final List<String> TEXTS = IntStream
+            .range(0, 10_000)
+            .mapToObj(i -> RandomStringUtils.randomAscii(i % 20))
+            .collect(toList());
+
+    private static final List<String> ENCRYPTED = TEXTS
+            .stream()
+            .map(CIPHER::encrypt)
+            .collect(toList());
+
+    @Test
+    public void testArray()
+    {
+        final String[] encrypted =
+                CIPHER.encryptAll(TEXTS.toArray(new String[0]));
+        assertThat(encrypted).containsExactlyElementsOf(ENCRYPTED);
+        assertThat(CIPHER.decryptAll(encrypted)).containsExactlyElementsOf(TEXTS);
+    }
+
+    @Test
+    public void testList()
+    {
+        assertThat(CIPHER.encryptAll(TEXTS)).isEqualTo(ENCRYPTED);
+        assertThat(CIPHER.decryptAll(ENCRYPTED)).isEqualTo(TEXTS);
+    }
+
+    @Test
+    public void testStream()
+    {
+        assertThat(CIPHER.encryptAll(TEXTS.parallelStream()).collect(toList()))
+                .isEqualTo(ENCRYPTED);
+        assertThat(CIPHER.decryptAll(ENCRYPTED.stream()).collect(toList()))
+                .isEqualTo(TEXTS);
+    }
+
+    @Test
+    public void testExecutor()
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            assertThat(CIPHER.encryptAll(TEXTS, executor)).isEqualTo(ENCRYPTED);
+            assertThat(CIPHER.decryptAll(ENCRYPTED, executor)).isEqualTo(TEXTS);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testExecutorException()
+    {
+        Batches.encryptAll(
+                CIPHER,
+                new String[] { "a", "b", null, "c" },
+                Runnable::run,
+                1);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        assertThat(CIPHER.encryptAll(Arrays.asList(), Runnable::run)).isEmpty();
+    }
+
+    @Test
+    public void testStreamExecutor()
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            assertThat(CIPHER.encryptAll(TEXTS.stream(), executor)
+                    .collect(toList()))
+                    .isEqualTo(ENCRYPTED);
+            assertThat(CIPHER.decryptAll(ENCRYPTED.stream(), executor)
+                    .collect(toList()))
+                    .isEqualTo(TEXTS);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamReadsAhead()
+    {
+        final AtomicInteger read = new AtomicInteger();
+        final Stream<String> encrypted = Batches.encryptAll(
+                CIPHER,
+                TEXTS.stream().peek(text -> read.incrementAndGet()),
+                Runnable::run,
+                10,
+                3);
+        assertThat(read.get()).isZero();
+
+        final Iterator<String> iterator = encrypted.iterator();
+        assertThat(iterator.next()).isEqualTo(ENCRYPTED.get(0));
+        assertThat(read.get()).isEqualTo(40);
+        for (int i = 1; i < 10; i++)
+        {
+            assertThat(iterator.next()).isEqualTo(ENCRYPTED.get(i));
+        }
+        assertThat(read.get()).isEqualTo(40);
+        assertThat(iterator.next()).isEqualTo(ENCRYPTED.get(10));
+        assertThat(read.get()).isEqualTo(50);
+    }
+
+    @Test
+    public void testStreamLimit()
+    {
+        final AtomicInteger read = new AtomicInteger();
+        final List<String> encrypted = Batches
+                .encryptAll(
+                        CIPHER,
+                        TEXTS.stream().peek(text -> read.incrementAndGet()),
+                        Runnable::run,
+                        10,
+                        2)
+                .limit(15)
+                .collect(toList());
+        assertThat(encrypted).isEqualTo(ENCRYPTED.subList(0, 15));
+        assertThat(read.get()).isEqualTo(40);
+    }
+
+    @Test
+    public void testStreamClose()
+    {
+        final AtomicBoolean closed = new AtomicBoolean();
+        try (Stream<String> encrypted = CIPHER.encryptAll(
+                TEXTS.stream().onClose(() -> closed.set(true)),
+                Runnable::run))
+        {
+            assertThat(encrypted.findFirst()).contains(ENCRYPTED.get(0));
+        }
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testStreamException()
+    {
+        Batches
+                .encryptAll(
+                        CIPHER,
+                        Stream.of("a", "b", null, "c"),
+                        Runnable::run,
+                        1,
+                        2)
+                .forEach(text -> {});
+    }
+
+    @Test
+    public void testStreamEmpty()
+    {
+        assertThat(CIPHER.encryptAll(Stream.empty(), Runnable::run)).isEmpty();
+    }
+}
@@ -1,12 +1,14 @@
 package com.implementsblog.functional;
 
 import static com.implementsblog.functional.CaesarCipher.encrypt;
+import static com.implementsblog.functional.CaesarCipher.encryptInRanges;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
@@ -52,6 +54,93 @@ public class CaesarCipherTest
                                 codePointRanges));
     }
 
+    @Test(dataProvider = "testInverseAsciiProvider")
+    public void testWithShift(final String text, final int shift)
+    {
+        final Cipher cipher = CaesarCipher.withShift(shift);
+        assertThat(cipher.encrypt(text)).isEqualTo(encrypt(text, shift));
+        assertThat(cipher.decrypt(cipher.encrypt(text))).isEqualTo(text);
+        assertThat(cipher.inverse().encrypt(text))
+                .isEqualTo(encrypt(text, -shift));
+    }
+
+    @Test(dataProvider = "testInverseGeneralProvider")
+    public void testWithShiftGeneral(
+            final String text,
+            final int shift,
+            final SortedSet<Integer> codePointRanges)
+    {
+        final Cipher cipher = CaesarCipher.withShift(shift, codePointRanges);
+        assertThat(cipher.encrypt(text))
+                .isEqualTo(encrypt(text, shift, codePointRanges));
+        assertThat(cipher.decrypt(cipher.encrypt(text))).isEqualTo(text);
+    }
+
+    @Test(dataProvider = "testInverseAsciiProvider")
+    public void testWithShiftBuffers(final String text, final int shift)
+    {
+        final Cipher cipher = CaesarCipher.withShift(shift);
+        final String cipherText = cipher.encrypt(text);
+
+        final char[] chars = cipherText.toCharArray();
+        cipher.decrypt(chars, 0, chars, 0, chars.length);
+        assertThat(new String(chars)).isEqualTo(text);
+
+        final StringBuilder builder = new StringBuilder();
+        cipher.decrypt(cipherText, 0, cipherText.length(), builder);
+        assertThat(builder.toString()).isEqualTo(text);
+
+        final CharBuffer buffer = CharBuffer.allocate(cipherText.length());
+        cipher.decrypt(CharBuffer.wrap(cipherText), buffer);
+        assertThat(buffer.flip().toString()).isEqualTo(text);
+    }
+
+    @Test
+    public void testCodePointRanges()
+    {
+        final String text = "Alpha \u0391\u03B1\u03C9, Ya \u042F\u0430";
+        assertThat(encryptInRanges(text, 1, CodePointRanges.GREEK_LETTERS))
+                .isEqualTo("Alpha \u0392\u03B2\u03B1, Ya \u042F\u0430");
+        assertThat(encryptInRanges(text, 1, CodePointRanges.CYRILLIC_LETTERS))
+                .isEqualTo("Alpha \u0391\u03B1\u03C9, Ya \u0410\u0431");
+        assertThat(CaesarCipher
+                .withShiftInRanges(3, CodePointRanges.ASCII_LETTERS)
+                .encrypt(text))
+                .isEqualTo(CaesarCipher.withShift(3).encrypt(text));
+    }
+
+    @Test
+    public void testExtremeShifts()
+    {
+        final String text = "abc XYZ \u0391\u03B1\u03C9";
+        for (final int shift
+                : new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE })
+        {
+            final Cipher ascii = CaesarCipher.withShiftInRanges(
+                    shift,
+                    CodePointRanges.ASCII_LETTERS);
+            assertThat(ascii.encrypt(text))
+                    .isEqualTo(CaesarCipher.withShift(shift).encrypt(text))
+                    .isNotEqualTo(text);
+            assertThat(ascii.decrypt(ascii.encrypt(text))).isEqualTo(text);
+
+            final Cipher greek = CaesarCipher.withShiftInRanges(
+                    shift,
+                    CodePointRanges.GREEK_LETTERS);
+            assertThat(greek.encrypt(text)).isNotEqualTo(text);
+            assertThat(greek.decrypt(greek.encrypt(text))).isEqualTo(text);
+        }
+    }
+
+    @Test
+    public void testWithShiftIsCached()
+    {
+        assertThat(CaesarCipher.withShift(1))
+                .isSameAs(CaesarCipher.withShift(1))
+                .isSameAs(CaesarCipher.withShift(27))
+                .isSameAs(CaesarCipher.withShift(-25));
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testGeneralOddCodePointRange()
     {
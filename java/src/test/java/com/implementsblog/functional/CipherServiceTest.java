@@ -0,0 +1,184 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the {@link CipherService} class, and {@link
+ * Cipher#encryptAsync(String, java.util.concurrent.Executor)}.
+ */
+public class CipherServiceTest
+{
+    private static final Cipher CIPHER = CaesarCipher.withShift(3);
+
+    @Test
+    public void testInline()
+    {
+        try (CipherService service = CipherService.builder().build())
+        {
+            final CompletableFuture<String> encrypted =
+                    service.encrypt(CIPHER, "abc");
+            assertThat(encrypted.isDone()).isTrue();
+            assertThat(encrypted.join()).isEqualTo("def");
+            assertThat(service.decrypt(CIPHER, "def").join())
+                    .isEqualTo("abc");
+        }
+    }
+
+    @Test
+    public void testOffloaded()
+    {
+        try (CipherService service = CipherService.builder()
+                .threads(2)
+                .inlineThreshold(0)
+                .build())
+        {
+            final AtomicReference<Thread> thread = new AtomicReference<>();
+            final Cipher cipher = CIPHER.instrumented(
+                    event -> thread.set(Thread.currentThread()));
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            final List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+            {
+                texts.add(RandomStringUtils.random(10_000));
+                futures.add(service.encrypt(cipher, texts.get(i)));
+            }
+            for (int i = 0; i < 100; i++)
+            {
+                assertThat(futures.get(i).join())
+                        .isEqualTo(CIPHER.encrypt(texts.get(i)));
+            }
+            assertThat(thread.get().getName()).startsWith("cipher-service-");
+            assertThat(thread.get().isDaemon()).isTrue();
+        }
+    }
+
+    @Test
+    public void testBackPressure() throws InterruptedException
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Cipher blocked = CIPHER.instrumented(event -> {
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try (CipherService service = CipherService.builder()
+                .executor(executor)
+                .maximumPending(2)
+                .inlineThreshold(10)
+                .build())
+        {
+            final CompletableFuture<String> first =
+                    service.encrypt(blocked, "first text");
+            final CompletableFuture<String> second =
+                    service.encrypt(blocked, "second text");
+            final CompletableFuture<String> rejected =
+                    service.encrypt(blocked, "third text");
+            assertThat(service.pending()).isEqualTo(2);
+            assertThat(rejected.isCompletedExceptionally()).isTrue();
+            assertThat(rejected.handle((result, e) -> e).join())
+                    .isInstanceOf(RejectedExecutionException.class);
+
+            // Short texts are still encrypted inline.
+            assertThat(service.encrypt(CIPHER, "abc").join()).isEqualTo("def");
+
+            latch.countDown();
+            assertThat(first.join()).isEqualTo("iluvw whaw");
+            assertThat(second.join()).isEqualTo("vhfrqg whaw");
+            assertThat(service.encrypt(CIPHER, "fourth text").join())
+                    .isEqualTo("irxuwk whaw");
+        }
+        assertThat(executor.isShutdown()).isFalse();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testClosed()
+    {
+        final CipherService service = CipherService.builder()
+                .inlineThreshold(0)
+                .build();
+        service.close();
+        assertThat(service.encrypt(CIPHER, "abc").handle((result, e) -> e)
+                .join()).isInstanceOf(RejectedExecutionException.class);
+        assertThat(service.pending()).isZero();
+    }
+
+    @Test
+    public void testVirtualThreads()
+    {
+        try (CipherService service = CipherService.builder()
+                .virtualThreads(true)
+                .inlineThreshold(0)
+                .build())
+        {
+            assertThat(service.encrypt(CIPHER, "xyz").join()).isEqualTo("abc");
+            assertThat(service.usesVirtualThreads()).isEqualTo(Arrays
+                    .stream(Executors.class.getMethods())
+                    .anyMatch(method -> method.getName()
+                            .equals("newVirtualThreadPerTaskExecutor")));
+        }
+    }
+
+    @Test
+    public void testEncryptAsync()
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            assertThat(CIPHER.encryptAsync("abc", executor).join())
+                    .isEqualTo("def");
+            assertThat(CIPHER.decryptAsync("def", executor).join())
+                    .isEqualTo("abc");
+            final CompletableFuture<String> failed =
+                    VigenereCipher.withKey("a").encryptAsync(null, executor);
+            assertThat(failed.handle((result, e) -> e).join())
+                    .isInstanceOf(CompletionException.class);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test(
+            expectedExceptions = IllegalArgumentException.class,
+            dataProvider = "invalidProvider")
+    public void testInvalid(final Runnable configure)
+    {
+        configure.run();
+    }
+
+    @DataProvider
+    private static Object[][] invalidProvider()
+    {
+        return new Object[][] {
+                { (Runnable) () -> CipherService.builder().threads(0) },
+                { (Runnable) () -> CipherService.builder().maximumPending(0) },
+                {
+                        (Runnable) () -> CipherService.builder()
+                                .inlineThreshold(-1),
+                },
+        };
+    }
+}
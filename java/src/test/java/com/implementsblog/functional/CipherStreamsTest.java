@@ -0,0 +1,220 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link CipherReader}, {@link CipherWriter}, {@link
+ * CipherInputStream} and {@link CipherOutputStream} classes.
+ */
+public class CipherStreamsTest
+{
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Shifts ranges whose code points are encoded as 1, 2, 3 and 4 bytes.
+     */
+    private static final Cipher CIPHER = CaesarCipher.withShift(
+            3,
+            new TreeSet<>(Arrays.asList(
+                    (int) 'A', (int) 'z',
+                    0x3B1, 0x3C9,
+                    0x4E00, 0x9FFF,
+                    0x1D400, 0x1D7FF)));
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testReader(final String text) throws IOException
+    {
+        final int bufferSize = 2 + RANDOM.nextInt(16);
+        try (Reader reader = new CipherReader(
+                new ChunkedReader(new StringReader(text)),
+                CIPHER,
+                bufferSize))
+        {
+            final StringBuilder cipherText = new StringBuilder();
+            final char[] chars = new char[1 + RANDOM.nextInt(16)];
+            for (int read; (read = reader.read(chars)) >= 0; )
+            {
+                cipherText.append(chars, 0, read);
+            }
+            assertThat(cipherText.toString()).isEqualTo(CIPHER.encrypt(text));
+        }
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testWriter(final String text) throws IOException
+    {
+        final StringWriter cipherText = new StringWriter();
+        try (CipherWriter writer = new CipherWriter(
+                cipherText,
+                CIPHER.inverse(),
+                2 + RANDOM.nextInt(16)))
+        {
+            for (int i = 0; i < text.length(); )
+            {
+                final int length = Math.min(
+                        text.length() - i,
+                        RANDOM.nextInt(8));
+                if (length == 0)
+                {
+                    writer.write(text.charAt(i++));
+                }
+                else
+                {
+                    writer.write(text, i, length);
+                    i += length;
+                }
+                if (RANDOM.nextBoolean())
+                {
+                    writer.flush();
+                }
+            }
+        }
+        assertThat(cipherText.toString()).isEqualTo(CIPHER.decrypt(text));
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testInputStream(final String text) throws IOException
+    {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new CipherInputStream(
+                new ChunkedInputStream(new ByteArrayInputStream(bytes)),
+                CIPHER,
+                4 + RANDOM.nextInt(16)))
+        {
+            final ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1 + RANDOM.nextInt(16)];
+            for (int read; (read = in.read(buffer)) >= 0; )
+            {
+                cipherText.write(buffer, 0, read);
+            }
+            assertThat(cipherText.toByteArray()).isEqualTo(encryptUtf8(bytes));
+        }
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testOutputStream(final String text) throws IOException
+    {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+        try (CipherOutputStream out = new CipherOutputStream(
+                cipherText,
+                CIPHER,
+                4 + RANDOM.nextInt(16)))
+        {
+            for (int i = 0; i < bytes.length; )
+            {
+                final int length = Math.min(
+                        bytes.length - i,
+                        RANDOM.nextInt(8));
+                if (length == 0)
+                {
+                    out.write(bytes[i++]);
+                }
+                else
+                {
+                    out.write(bytes, i, length);
+                    i += length;
+                }
+                if (RANDOM.nextBoolean())
+                {
+                    out.flush();
+                }
+            }
+        }
+        assertThat(cipherText.toByteArray()).isEqualTo(encryptUtf8(bytes));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWriteAfterClose() throws IOException
+    {
+        final CipherWriter writer = new CipherWriter(new StringWriter(), CIPHER);
+        writer.close();
+        writer.write("abc");
+    }
+
+    private static byte[] encryptUtf8(final byte[] bytes)
+    {
+        return CIPHER
+                .encrypt(new String(bytes, StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @DataProvider
+    private static Object[][] randomStringsProvider()
+    {
+        return Stream.<Function<Integer, String>>of(
+                RandomStringUtils::random,
+                RandomStringUtils::randomAscii,
+                RandomStringUtils::randomAlphabetic,
+                // Mostly surrogate pairs.
+                count -> RandomStringUtils
+                        .random(count, 0xD800, 0xE000, false, false))
+                // Create a list of random strings of each type
+                .flatMap(s -> IntStream.range(0, 50).mapToObj(i -> s.apply(100)))
+                .map(string -> new Object[] { string })
+                .toArray(Object[][]::new);
+    }
+
+    /**
+     * Returns at most a few chars from each read.
+     */
+    private static final class ChunkedReader extends FilterReader
+    {
+        ChunkedReader(final Reader in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read(final char[] chars, final int offset, final int length)
+                throws IOException
+        {
+            return super.read(
+                    chars,
+                    offset,
+                    Math.min(length, 1 + RANDOM.nextInt(5)));
+        }
+    }
+
+    /**
+     * Returns at most a few bytes from each read.
+     */
+    private static final class ChunkedInputStream extends FilterInputStream
+    {
+        ChunkedInputStream(final InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length)
+                throws IOException
+        {
+            return super.read(
+                    bytes,
+                    offset,
+                    Math.min(length, 1 + RANDOM.nextInt(5)));
+        }
+    }
+}
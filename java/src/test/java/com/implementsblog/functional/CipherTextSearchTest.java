@@ -0,0 +1,319 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link CipherTextSearch} class.
+ */
+public class CipherTextSearchTest
+{
+    private static final CodePointRanges RANGES = CodePointRanges.builder()
+            .add(CodePointRanges.ASCII_LETTERS)
+            .add('0', '9')
+            .add(CodePointRanges.GREEK_LETTERS)
+            .build();
+
+    @Test
+    public void testKnownValues()
+    {
+        final Cipher caesar = CaesarCipher.withShift(1);
+        final CipherTextSearch search =
+                CipherTextSearch.literal(caesar, "abc");
+        final String cipherText = caesar.encrypt("xx abc, ABC abc");
+
+        assertThat(search.toString()).isEqualTo("\\Qbcd\\E");
+        assertThat(search.indexOf(cipherText, 0)).isEqualTo(3);
+        assertThat(search.indexOf(cipherText, 4)).isEqualTo(12);
+        assertThat(search.indexOf(cipherText, 13)).isEqualTo(-1);
+        assertThat(search.indexOf("", 0)).isEqualTo(-1);
+
+        final CipherTextSearch regex =
+                CipherTextSearch.regex(caesar, "[a-c]+[^x-z]\\.?");
+        assertThat(regex.toString())
+                .isEqualTo("[\\x{62}-\\x{64}]+[^\\x{61}\\x{79}-\\x{7A}]"
+                        + "\\x{2E}?");
+        assertThat(regex.indexOf(caesar.encrypt("zyx cab."), 0))
+                .isEqualTo(4);
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testLiteralMatchesPlainText(final Cipher cipher)
+    {
+        final Random random = new Random(1);
+        final String text = RandomStringUtils.random(
+                20000, 0, 0, false, false, "abc01\u03B1\u03B2 ".toCharArray(),
+                random);
+        final String cipherText = cipher.encrypt(text);
+        for (final String literal
+                : new String[] { "a", "ab0", "\u03B1b 1", "cc", "abcabc" })
+        {
+            final CipherTextSearch search =
+                    CipherTextSearch.literal(cipher, literal);
+            for (int from = 0; from <= text.length(); from += 1999)
+            {
+                assertThat(search.indexOf(cipherText, from))
+                        .isEqualTo(text.indexOf(literal, from));
+            }
+        }
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testRegexMatchesPlainText(final Cipher cipher)
+    {
+        final String text = RandomStringUtils.random(
+                5000, 0, 0, false, false, "abcxyz019 .,-\u03B1".toCharArray(),
+                new Random(2));
+        final String cipherText = cipher.encrypt(text);
+        for (final String regex : new String[] {
+                "a[bc]+\\d",
+                "[^a-y0-9 ]{2,}",
+                "(?:x|yz)\\.\\s",
+                "\\w\\W\\w",
+                "[-a\\-\u03B1]z?",
+                "[\\d\\s,]+9$",
+                "^..c",
+                "\u03B1\\D",
+        })
+        {
+            final CipherTextSearch search =
+                    CipherTextSearch.regex(cipher, regex);
+            final Matcher matcher = Pattern.compile(regex).matcher(text);
+            int from = 0;
+            while (matcher.find(from))
+            {
+                assertThat(search.indexOf(cipherText, from))
+                        .as(regex)
+                        .isEqualTo(matcher.start());
+                from = matcher.start() + 1;
+            }
+            assertThat(search.indexOf(cipherText, from)).isEqualTo(-1);
+        }
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testMatchingLines(final Cipher cipher) throws IOException
+    {
+        final Random random = new Random(3);
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+        {
+            lines.add(RandomStringUtils.random(
+                    random.nextInt(40), 0, 0, false, false,
+                    "abcxyz01\u03B1\u03B2 ,".toCharArray(), random)
+                    + new StringBuilder().appendCodePoint(0x1D400 + i));
+        }
+        final Path file = Files.createTempFile("search", ".txt");
+        try
+        {
+            Files.write(
+                    file,
+                    (lines.stream()
+                            .map(cipher::encrypt)
+                            .collect(Collectors.joining("\r\n")) + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+
+            final ForkJoinPool pool = new ForkJoinPool(4);
+            try
+            {
+                assertMatchingLines(
+                        CipherTextSearch.literal(cipher, "\u03B1b"),
+                        lines,
+                        line -> line.contains("\u03B1b"),
+                        cipher,
+                        file,
+                        pool);
+                assertMatchingLines(
+                        CipherTextSearch.literal(cipher, "x,"),
+                        lines,
+                        line -> line.contains("x,"),
+                        cipher,
+                        file,
+                        pool);
+                assertMatchingLines(
+                        CipherTextSearch.regex(cipher, "^[ab]+\\d"),
+                        lines,
+                        line -> Pattern.compile("^[ab]+\\d")
+                                .matcher(line)
+                                .find(),
+                        cipher,
+                        file,
+                        pool);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMatchesWithinLines() throws IOException
+    {
+        final Cipher caesar = CaesarCipher.withShift(3);
+        final Path file = Files.createTempFile("search", ".txt");
+        try
+        {
+            Files.write(
+                    file,
+                    caesar.encrypt("ab\ncd\r\nxy")
+                            .getBytes(StandardCharsets.UTF_8));
+            for (final String literal : new String[] { "b\nc", "d\r", "\n" })
+            {
+                assertThat(CipherTextSearch.literal(caesar, literal)
+                        .matchingLines(file))
+                        .as(literal)
+                        .isEmpty();
+                assertThat(CipherTextSearch.regex(caesar, literal)
+                        .matchingLines(file))
+                        .as(literal)
+                        .isEmpty();
+            }
+            assertThat(CipherTextSearch.literal(caesar, "d")
+                    .matchingLines(file))
+                    .containsExactly("fg");
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyLiteral() throws IOException
+    {
+        final Cipher caesar = CaesarCipher.withShift(3);
+        final Path file = Files.createTempFile("search", ".txt");
+        try
+        {
+            Files.write(
+                    file,
+                    caesar.encrypt("ab\n\ncd\nxy\n")
+                            .getBytes(StandardCharsets.UTF_8));
+            assertThat(CipherTextSearch.literal(caesar, "").matchingLines(file))
+                    .containsExactly("de", "", "fg", "ab")
+                    .isEqualTo(CipherTextSearch.regex(caesar, "")
+                            .matchingLines(file));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException
+    {
+        final Path file = Files.createTempFile("search", ".txt");
+        try
+        {
+            assertThat(CipherTextSearch
+                    .literal(AtbashCipher.instance(), "a")
+                    .matchingLines(file))
+                    .isEmpty();
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test(
+            expectedExceptions = IllegalArgumentException.class,
+            dataProvider = "invalidProvider")
+    public void testInvalid(final Runnable create)
+    {
+        create.run();
+    }
+
+    private static void assertMatchingLines(
+            final CipherTextSearch search,
+            final List<String> lines,
+            final Predicate<String> matches,
+            final Cipher cipher,
+            final Path file,
+            final ForkJoinPool pool) throws IOException
+    {
+        final List<String> expected = lines.stream()
+                .filter(matches)
+                .map(cipher::encrypt)
+                .collect(Collectors.toList());
+        assertThat(expected).as(search.toString()).isNotEmpty();
+        assertThat(search.matchingLines(file)).isEqualTo(expected);
+        for (final int segmentSize : new int[] { 1, 100, 1000 })
+        {
+            assertThat(search.matchingLines(file, pool, segmentSize))
+                    .isEqualTo(expected);
+        }
+    }
+
+    @DataProvider
+    private static Object[][] ciphersProvider()
+    {
+        return new Object[][] {
+                { CaesarCipher.withShiftInRanges(7, RANGES) },
+                { AtbashCipher.inRanges(RANGES) },
+                { AffineCipher.withKeys(3, 4, RANGES) },
+                { CaesarCipher.withShift(3).andThen(AtbashCipher.instance()) },
+        };
+    }
+
+    @DataProvider
+    private static Object[][] invalidProvider()
+    {
+        final Cipher caesar = CaesarCipher.withShift(1);
+        return new Object[][] {
+                {
+                        (Runnable) () -> CipherTextSearch.literal(
+                                VigenereCipher.withKey("key"),
+                                "a"),
+                },
+                {
+                        (Runnable) () -> CipherTextSearch.regex(
+                                VigenereCipher.withKey("key"),
+                                "a"),
+                },
+                {
+                        (Runnable) () -> CipherTextSearch.regex(
+                                CaesarCipher.withShiftInRanges(
+                                        8,
+                                        CodePointRanges.of(0x2020, 0x2030)),
+                                "a.b"),
+                },
+                {
+                        (Runnable) () -> CipherTextSearch.literal(
+                                AtbashCipher.inRanges(
+                                        CodePointRanges.of('\n', '\r')),
+                                "a"),
+                },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "\\bab") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "(?i)a") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "[a-c") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "[c-a]") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "[[a]]") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "a\\") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "a{2") },
+                { (Runnable) () -> CipherTextSearch.regex(caesar, "(a") },
+        };
+    }
+}
@@ -0,0 +1,236 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link CipherTool} class.
+ */
+public class CipherToolTest
+{
+    private Path directory;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException
+    {
+        directory = Files.createTempDirectory("CipherToolTest");
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try
+                {
+                    Files.delete(path);
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testStandardInput()
+    {
+        assertThat(run("hello, world", "caesar:3")).isEqualTo(0);
+        assertThat(out()).isEqualTo("khoor, zruog");
+        assertThat(err()).startsWith("Encrypted 1 file (0.0 MB) in ");
+
+        out.reset();
+        assertThat(run("khoor, zruog", "-d", "caesar:3", "-", "-"))
+                .isEqualTo(0);
+        assertThat(out()).isEqualTo("hello, world");
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testCiphers(final String[] args, final Cipher cipher)
+    {
+        final String text = RandomStringUtils.random(10_000);
+        assertThat(run(text, args)).isEqualTo(0);
+        assertThat(out()).isEqualTo(cipher.encrypt(text));
+    }
+
+    @Test
+    public void testFile() throws IOException
+    {
+        final String text = RandomStringUtils.random(200_000);
+        final Path plain = write(directory.resolve("plain.txt"), text);
+        final Path encrypted = directory.resolve("encrypted.txt");
+        final Path decrypted = directory.resolve("decrypted.txt");
+
+        assertThat(run("", "vigenere:lemon", plain.toString(),
+                encrypted.toString())).isEqualTo(0);
+        assertThat(read(encrypted))
+                .isEqualTo(VigenereCipher.encrypt(text, "lemon"));
+        assertThat(run("", "--decrypt", "vigenere:lemon",
+                encrypted.toString(), decrypted.toString())).isEqualTo(0);
+        assertThat(read(decrypted)).isEqualTo(text);
+
+        assertThat(run("", "atbash", plain.toString())).isEqualTo(0);
+        assertThat(out()).isEqualTo(AtbashCipher.encrypt(text));
+    }
+
+    @Test
+    public void testDirectory() throws IOException
+    {
+        final Path source = directory.resolve("source");
+        for (int i = 0; i < 20; i++)
+        {
+            write(
+                    source.resolve("dir" + i % 3).resolve("file" + i),
+                    RandomStringUtils.random(i * 1000));
+        }
+        final Path encrypted = directory.resolve("encrypted");
+        final Path decrypted = directory.resolve("decrypted");
+
+        assertThat(run("", "-t", "3", "affine:5:8", source.toString(),
+                encrypted.toString())).isEqualTo(0);
+        assertThat(err()).startsWith("Encrypted 20 files (");
+        assertThat(err()).contains(" MB/s, ", " files/s");
+
+        assertThat(run("", "-d", "--threads", "2", "affine:5:8",
+                encrypted.toString(), decrypted.toString())).isEqualTo(0);
+        for (int i = 0; i < 20; i++)
+        {
+            final Path file = Paths.get("dir" + i % 3, "file" + i);
+            final String text = read(source.resolve(file));
+            assertThat(read(encrypted.resolve(file))).isEqualTo(
+                    AffineCipher.encrypt(
+                            text,
+                            AffineCipher.Key1._5,
+                            AffineCipher.Key2._8));
+            assertThat(read(decrypted.resolve(file))).isEqualTo(text);
+        }
+    }
+
+    @Test
+    public void testFailure() throws IOException
+    {
+        final Path file = write(directory.resolve("file"), "text");
+        assertThat(run("", "caesar:1", file.toString(), file.toString()))
+                .isEqualTo(1);
+        assertThat(err()).startsWith("error: ");
+        assertThat(read(file)).isEqualTo("text");
+    }
+
+    @Test(dataProvider = "invalidArgumentsProvider")
+    public void testInvalidArguments(final String[] args)
+    {
+        assertThat(run("", args)).isEqualTo(2);
+        assertThat(err()).startsWith("error: ").contains("Usage: ");
+        assertThat(out()).isEmpty();
+    }
+
+    @Test
+    public void testParseRanges()
+    {
+        assertThat(CipherTool.parseRanges("0-9,U+0391-U+03A1,latin1"))
+                .isEqualTo(CodePointRanges.builder()
+                        .add('0', '9')
+                        .add(0x391, 0x3A1)
+                        .add(CodePointRanges.LATIN_1_LETTERS)
+                        .build());
+        assertThat(CipherTool.parseRanges("--/")).isEqualTo(
+                CodePointRanges.of('-', '/'));
+    }
+
+    private int run(final String in, final String... args)
+    {
+        return CipherTool.run(
+                args,
+                new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)),
+                out,
+                new PrintStream(err, true));
+    }
+
+    private String out()
+    {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String err()
+    {
+        return new String(err.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Path write(final Path file, final String text)
+            throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(final Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @DataProvider
+    private static Object[][] ciphersProvider()
+    {
+        final CodePointRanges greek = CodePointRanges.GREEK_LETTERS;
+        return new Object[][] {
+                { new String[] { "caesar:-4" }, CaesarCipher.withShift(-4) },
+                { new String[] { "atbash" }, AtbashCipher.instance() },
+                {
+                        new String[] { "affine:3:4", "-r", "greek" },
+                        AffineCipher.withKeys(3, 4, greek),
+                },
+                {
+                        new String[] { "-r", "greek", "vigenere:\u03B1\u03B2" },
+                        VigenereCipher.withKey("\u03B1\u03B2", greek),
+                },
+                {
+                        new String[] { "beaufort:key" },
+                        VigenereCipher.beaufort("key"),
+                },
+                {
+                        new String[] { "autokey:queen" },
+                        VigenereCipher.autokey("queen"),
+                },
+        };
+    }
+
+    @DataProvider
+    private static Object[][] invalidArgumentsProvider()
+    {
+        return new Object[][] {
+                { new String[0] },
+                { new String[] { "rot13" } },
+                { new String[] { "caesar" } },
+                { new String[] { "caesar:x" } },
+                { new String[] { "affine:2:1" } },
+                { new String[] { "vigenere:" } },
+                { new String[] { "--threads", "0", "atbash" } },
+                { new String[] { "--ranges" } },
+                { new String[] { "-r", "z-a", "atbash" } },
+                { new String[] { "--verbose", "atbash" } },
+                { new String[] { "atbash", "a", "b", "c" } },
+        };
+    }
+}
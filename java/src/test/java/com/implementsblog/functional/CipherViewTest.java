@@ -0,0 +1,161 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.stream.Collectors;
+
+/**
+ * Tests {@link Cipher#view(CharSequence)}: the {@link CipherView} class.
+ */
+public class CipherViewTest
+{
+    private static final CodePointRanges RANGES = CodePointRanges.builder()
+            .add(CodePointRanges.ASCII_LETTERS)
+            .add(CodePointRanges.GREEK_LETTERS)
+            .add(0x1D400, 0x1D7FF)
+            .build();
+
+    @Test
+    public void testKnownValues() throws IOException
+    {
+        final CipherView view = CaesarCipher.withShift(3).view("abc XYZ!");
+        assertThat(view.length()).isEqualTo(8);
+        assertThat(view.charAt(0)).isEqualTo('d');
+        assertThat(view.charAt(6)).isEqualTo('C');
+        assertThat(view.toString()).isEqualTo("def ABC!");
+        assertThat(view.subSequence(1, 6).toString()).isEqualTo("ef AB");
+        assertThat(view.subSequence(1, 6).subSequence(2, 4).toString())
+                .isEqualTo(" A");
+
+        final StringWriter writer = new StringWriter();
+        view.writeTo(writer);
+        assertThat(writer.toString()).isEqualTo("def ABC!");
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testMatchesEncrypt(final Cipher cipher) throws IOException
+    {
+        final String text = RandomStringUtils.random(5000)
+                + new StringBuilder().appendCodePoint(0x1D400)
+                + RandomStringUtils.randomAlphabetic(3000);
+        final String expected = cipher.encrypt(text);
+        final CipherView view = cipher.view(text);
+
+        assertThat(view.length()).isEqualTo(expected.length());
+        assertThat(view.toString()).isEqualTo(expected);
+        assertThat(view.chars().mapToObj(c -> String.valueOf((char) c))
+                .collect(Collectors.joining()))
+                .isEqualTo(expected);
+        for (int i = 0; i < text.length(); i += 97)
+        {
+            assertThat(view.charAt(i)).isEqualTo(expected.charAt(i));
+        }
+
+        final StringBuilder builder = new StringBuilder("prefix");
+        cipher.view(text).writeTo(builder);
+        assertThat(builder.toString()).isEqualTo("prefix" + expected);
+
+        final StringWriter writer = new StringWriter();
+        cipher.view(new StringBuilder(text)).writeTo(writer);
+        assertThat(writer.toString()).isEqualTo(expected);
+
+        final CharBuffer buffer = CharBuffer.allocate(text.length());
+        cipher.view(text).writeTo(buffer);
+        assertThat(buffer.flip().toString()).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testSubSequence(final Cipher cipher) throws IOException
+    {
+        final String text = RandomStringUtils.random(3000);
+        final String expected = cipher.encrypt(text);
+        final CipherView view = cipher.view(text);
+        for (int start = 0; start < text.length(); start += 211)
+        {
+            for (int end = start; end <= text.length(); end += 307)
+            {
+                final CipherView part = view.subSequence(start, end);
+                assertThat(part.toString())
+                        .isEqualTo(expected.substring(start, end));
+
+                final StringBuilder builder = new StringBuilder();
+                part.writeTo(builder);
+                assertThat(builder.toString())
+                        .isEqualTo(expected.substring(start, end));
+            }
+        }
+    }
+
+    @Test
+    public void testSplitSurrogatePair() throws IOException
+    {
+        final Cipher cipher = CaesarCipher.withShiftInRanges(5, RANGES);
+        final String text = "a" + new StringBuilder().appendCodePoint(0x1D401)
+                + "b";
+        final String expected = cipher.encrypt(text);
+        assertThat(expected).isNotEqualTo(text);
+
+        final CipherView view = cipher.view(text);
+        for (int start = 0; start <= text.length(); start++)
+        {
+            for (int end = start; end <= text.length(); end++)
+            {
+                final CipherView part = view.subSequence(start, end);
+                final StringBuilder builder = new StringBuilder();
+                part.writeTo(builder);
+                assertThat(builder.toString())
+                        .isEqualTo(expected.substring(start, end));
+                for (int i = 0; i < part.length(); i++)
+                {
+                    assertThat(part.charAt(i))
+                            .isEqualTo(expected.charAt(start + i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTableIsLazy()
+    {
+        final StringBuilder text = new StringBuilder("abc");
+        final CipherView view = AtbashCipher.instance().view(text);
+        text.setCharAt(1, 'x');
+        assertThat(view.toString()).isEqualTo("zcx");
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testCharAtOutOfBounds()
+    {
+        CaesarCipher.withShift(1).view("abc").subSequence(1, 2).charAt(1);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testSubSequenceOutOfBounds()
+    {
+        VigenereCipher.withKey("key").view("abc").subSequence(2, 4);
+    }
+
+    @DataProvider
+    private static Object[][] ciphersProvider()
+    {
+        return new Object[][] {
+                { CaesarCipher.withShift(7) },
+                { AtbashCipher.inRanges(RANGES) },
+                { AffineCipher.withKeys(3, 4, RANGES) },
+                { VigenereCipher.withKey("lemon") },
+                { VigenereCipher.autokey("queen") },
+                { CaesarCipher.withShift(7).parallel(1000) },
+                {
+                        AtbashCipher.instance()
+                                .andThen(VigenereCipher.withKey("key")),
+                },
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the {@link CodePointRanges} class.
+ */
+public class CodePointRangesTest
+{
+    @Test
+    public void testAsciiLetters()
+    {
+        final CodePointRanges ranges = CodePointRanges.ASCII_LETTERS;
+        assertThat(ranges.size()).isEqualTo(2);
+        assertThat(ranges.toString()).isEqualTo("[U+0041-U+005A, U+0061-U+007A]");
+        assertThat(ranges).isEqualTo(CodePointRanges.of(
+                new TreeSet<>(Arrays.asList(
+                        (int) 'a', (int) 'z', (int) 'A', (int) 'Z'))));
+
+        IntStream.range(0, 0x80).forEach(c -> assertThat(ranges.contains(c))
+                .isEqualTo(Character.isLetter(c)));
+    }
+
+    @Test
+    public void testAlphabets()
+    {
+        assertThat(count(CodePointRanges.LATIN_1_LETTERS)).isEqualTo(52 + 62);
+        assertThat(count(CodePointRanges.GREEK_LETTERS)).isEqualTo(24 + 25);
+        assertThat(count(CodePointRanges.CYRILLIC_LETTERS)).isEqualTo(32 + 32);
+        IntStream.rangeClosed(0x391, 0x3C9)
+                .filter(CodePointRanges.GREEK_LETTERS::contains)
+                .forEach(c -> assertThat(Character.isLetter(c)).isTrue());
+    }
+
+    @Test
+    public void testIndexOf()
+    {
+        final CodePointRanges ranges = CodePointRanges.of(
+                0x10000, 0x10FFFF,
+                5, 5,
+                7, 9,
+                10, 10);
+        assertThat(ranges.toString())
+                .isEqualTo("[U+0005-U+0005, U+0007-U+0009, U+000A-U+000A, "
+                        + "U+10000-U+10FFFF]");
+        assertThat(IntStream.of(0, 4, 5, 6, 7, 9, 10, 11, 0xFFFF, 0x10000)
+                .map(ranges::indexOf)
+                .toArray())
+                .containsExactly(-1, -1, 0, -1, 1, 1, 2, -1, -1, 3);
+        assertThat(ranges.indexOf(Character.MAX_CODE_POINT)).isEqualTo(3);
+        assertThat(ranges.indexOf(-1)).isEqualTo(-1);
+        assertThat(CodePointRanges.of().indexOf('a')).isEqualTo(-1);
+    }
+
+    @Test
+    public void testBuilder()
+    {
+        final CodePointRanges.Builder builder = CodePointRanges.builder();
+        IntStream.range(0, 100)
+                .forEach(i -> builder.add(0x1000 - 3 * i, 0x1001 - 3 * i));
+        final CodePointRanges ranges = builder
+                .add(CodePointRanges.ASCII_LETTERS)
+                .build();
+
+        assertThat(ranges.size()).isEqualTo(102);
+        assertThat(ranges.lowest(0)).isEqualTo('A');
+        assertThat(ranges.highest(1)).isEqualTo('z');
+        assertThat(ranges.lowest(2)).isEqualTo(0x1000 - 3 * 99);
+        assertThat(ranges.highest(101)).isEqualTo(0x1001);
+        assertThat(ranges.hashCode())
+                .isEqualTo(builder.build().hashCode());
+    }
+
+    @Test
+    public void testIsBmpOnly()
+    {
+        assertThat(CodePointRanges.ASCII_LETTERS.isBmpOnly()).isTrue();
+        assertThat(CodePointRanges.CYRILLIC_LETTERS.isBmpOnly()).isTrue();
+        assertThat(CodePointRanges.of().isBmpOnly()).isTrue();
+        assertThat(CodePointRanges.of(0xD7FF, 0xD7FF, 0xE000, 0xFFFF)
+                .isBmpOnly()).isTrue();
+        assertThat(CodePointRanges.of('a', 0xD800).isBmpOnly()).isFalse();
+        assertThat(CodePointRanges.of(0xDFFF, 0xE000).isBmpOnly()).isFalse();
+        assertThat(CodePointRanges.of(0xE000, 0x10000).isBmpOnly()).isFalse();
+        assertThat(CodePointRanges.of('a', 'z', 0x1F600, 0x1F64F)
+                .isBmpOnly()).isFalse();
+    }
+
+    @Test(dataProvider = "invalidProvider",
+            expectedExceptions = IllegalArgumentException.class)
+    public void testInvalid(final int[] bounds)
+    {
+        CodePointRanges.of(bounds);
+    }
+
+    private static int count(final CodePointRanges ranges)
+    {
+        return IntStream
+                .range(0, ranges.size())
+                .map(range -> ranges.highest(range) - ranges.lowest(range) + 1)
+                .sum();
+    }
+
+    @DataProvider
+    private static Object[][] invalidProvider()
+    {
+        return new Object[][] {
+                { new int[] { 'a' } },
+                { new int[] { 'z', 'a' } },
+                { new int[] { -1, 'a' } },
+                { new int[] { 'a', Character.MAX_CODE_POINT + 1 } },
+                { new int[] { 'a', 'z', 'z', 'z' } },
+                { new int[] { 'a', 'z', 'b', 'c' } },
+                { new int[] { 'a', 'z', 'A', 'b' } },
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Tests {@link Cipher#andThen(Cipher)}: the {@link CompositeCipher} class, and
+ * the fusion of {@link TableCipher}s.
+ */
+public class CompositeCipherTest
+{
+    private static final CodePointRanges RANGES = CodePointRanges.builder()
+            .add(CodePointRanges.LATIN_1_LETTERS)
+            .add(CodePointRanges.GREEK_LETTERS)
+            .add(0x1D400, 0x1D419)
+            .build();
+
+    @Test
+    public void testKnownValues()
+    {
+        // Atbash, then shift by 3: 'a' -> 'z' -> 'c'.
+        final Cipher cipher = AtbashCipher.instance()
+                .andThen(CaesarCipher.withShift(3));
+        assertThat(cipher.encrypt("abc XYZ!")).isEqualTo("cba FED!");
+        assertThat(cipher.decrypt("cba FED!")).isEqualTo("abc XYZ!");
+    }
+
+    @Test(dataProvider = "chainsProvider")
+    public void testFusedMatchesSequential(final Cipher[] chain)
+    {
+        final Cipher fused = compose(chain);
+        assertThat(fused).isInstanceOf(TableCipher.class);
+        for (int i = 0; i < 100; i++)
+        {
+            final String text = RandomStringUtils.random(100);
+            assertThat(fused.encrypt(text)).isEqualTo(sequential(chain, text));
+            assertThat(fused.decrypt(fused.encrypt(text))).isEqualTo(text);
+        }
+
+        final StringBuilder everyCodePoint = new StringBuilder();
+        IntStream.rangeClosed(0, 0x1D41F)
+                .filter(c -> !Character.isSurrogate((char) c)
+                        || !Character.isBmpCodePoint(c))
+                .forEach(everyCodePoint::appendCodePoint);
+        final String text = everyCodePoint.toString();
+        assertThat(fused.encrypt(text)).isEqualTo(sequential(chain, text));
+    }
+
+    @Test(dataProvider = "chainsProvider")
+    public void testCompositeMatchesSequential(final Cipher[] chain)
+    {
+        final Cipher vigenere = VigenereCipher.withKey("lemon");
+        final Cipher cipher = compose(chain)
+                .andThen(vigenere)
+                .andThen(compose(chain));
+        assertThat(cipher).isInstanceOf(CompositeCipher.class);
+        assertThat(cipher.isPositionIndependent()).isFalse();
+        assertThat(cipher.inverse().inverse()).isSameAs(cipher);
+
+        final String text = RandomStringUtils.random(1000);
+        final String expected = compose(chain).encrypt(
+                vigenere.encrypt(compose(chain).encrypt(text)));
+        assertThat(cipher.encrypt(text)).isEqualTo(expected);
+        assertThat(cipher.decrypt(expected)).isEqualTo(text);
+
+        final char[] chars = text.toCharArray();
+        cipher.encrypt(chars, 0, chars, 0, chars.length);
+        assertThat(new String(chars)).isEqualTo(expected);
+
+        final StringBuilder builder = new StringBuilder("prefix");
+        cipher.encrypt(text, 0, text.length(), builder);
+        assertThat(builder.toString()).isEqualTo("prefix" + expected);
+
+        final CharBuffer buffer = CharBuffer.allocate(text.length());
+        cipher.encrypt(CharBuffer.wrap(text), buffer);
+        assertThat(buffer.flip().toString()).isEqualTo(expected);
+
+        final Cipher session = cipher.session();
+        assertThat(session.encrypt(text.substring(0, 500))
+                + session.encrypt(text.substring(500)))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void testCompositeUtf8()
+    {
+        final Cipher cipher = CaesarCipher.withShift(5)
+                .andThen(VigenereCipher.withKey("key"));
+        final String text = RandomStringUtils.random(1000);
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final String expected = cipher.encrypt(
+                new String(bytes, StandardCharsets.UTF_8));
+
+        final byte[] destination = new byte[bytes.length + 2];
+        cipher.encrypt(bytes, 0, destination, 2, bytes.length);
+        assertThat(new String(destination, 2, bytes.length,
+                StandardCharsets.UTF_8)).isEqualTo(expected);
+
+        final ByteBuffer target = ByteBuffer.allocate(bytes.length);
+        cipher.encrypt(ByteBuffer.wrap(bytes), target);
+        assertThat(target.array())
+                .isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+
+        final ByteBuffer inPlace = ByteBuffer.wrap(bytes.clone());
+        cipher.encrypt(inPlace);
+        assertThat(inPlace.position()).isEqualTo(bytes.length);
+        assertThat(inPlace.array())
+                .isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFusionRestoresUtf8Length()
+    {
+        // The first shift substitutes 'a' with the two byte U+00E0, so
+        // neither can be applied to UTF-8, but together they're the identity.
+        final CodePointRanges ranges = CodePointRanges.of('a', 0xE0);
+        final Cipher there = CaesarCipher.withShiftInRanges(0x7F, ranges);
+        final Cipher back = CaesarCipher.withShiftInRanges(-0x7F, ranges);
+        final Cipher fused = there.andThen(back);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(
+                "caf\u00E9".getBytes(StandardCharsets.UTF_8));
+        fused.encrypt(buffer);
+        assertThat(new String(buffer.array(), StandardCharsets.UTF_8))
+                .isEqualTo("caf\u00E9");
+    }
+
+    private static Cipher compose(final Cipher[] chain)
+    {
+        Cipher cipher = chain[0];
+        for (int i = 1; i < chain.length; i++)
+        {
+            cipher = cipher.andThen(chain[i]);
+        }
+        return cipher;
+    }
+
+    private static String sequential(final Cipher[] chain, final String text)
+    {
+        String result = text;
+        for (final Cipher cipher : chain)
+        {
+            result = cipher.encrypt(result);
+        }
+        return result;
+    }
+
+    @DataProvider
+    private static Object[][] chainsProvider()
+    {
+        return new Object[][] {
+                {
+                        new Cipher[] {
+                                AtbashCipher.instance(),
+                                CaesarCipher.withShift(3),
+                                AffineCipher.of(
+                                        AffineCipher.Key1._5,
+                                        AffineCipher.Key2._8),
+                        },
+                },
+                {
+                        new Cipher[] {
+                                CaesarCipher.withShiftInRanges(7, RANGES),
+                                SubstitutionAlphabet
+                                        .random(RANGES, new Random(1))
+                                        .cipher(),
+                                AtbashCipher.inRanges(RANGES),
+                                CaesarCipher.withShiftInRanges(-11, RANGES),
+                                CaesarCipher.withShift(1),
+                        },
+                },
+                {
+                        new Cipher[] {
+                                CaesarCipher.withShift(1),
+                                CaesarCipher.withShiftInRanges(3, RANGES),
+                        },
+                },
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import com.implementsblog.functional.Cryptanalysis.AffineKey;
+import com.implementsblog.functional.Cryptanalysis.Candidate;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the {@link Cryptanalysis} class.
+ */
+public class CryptanalysisTest
+{
+    private static final Random RANDOM = new Random();
+
+    private static final String TEXT = "It was the best of times, it was the "
+            + "worst of times, it was the age of wisdom, it was the age of "
+            + "foolishness, it was the epoch of belief, it was the epoch of "
+            + "incredulity, it was the season of Light, it was the season of "
+            + "Darkness, it was the spring of hope, it was the winter of "
+            + "despair.";
+
+    @Test(dataProvider = "shiftsProvider")
+    public void testCaesar(final int shift)
+    {
+        final List<Candidate<Integer>> candidates =
+                Cryptanalysis.caesar(CaesarCipher.encrypt(TEXT, shift));
+        assertThat(candidates).hasSize(26);
+        assertThat(candidates.get(0).key()).isEqualTo(shift);
+        assertThat(candidates.get(0).cipher().decrypt(
+                CaesarCipher.encrypt(TEXT, shift))).isEqualTo(TEXT);
+        for (int i = 1; i < candidates.size(); i++)
+        {
+            assertThat(candidates.get(i).score())
+                    .isGreaterThanOrEqualTo(candidates.get(i - 1).score());
+        }
+    }
+
+    @Test
+    public void testAffine()
+    {
+        for (final Key1 key1 : Key1.values())
+        {
+            final Key2 key2 =
+                    Key2.values()[RANDOM.nextInt(Key2.values().length)];
+            final List<Candidate<AffineKey>> candidates = Cryptanalysis
+                    .affine(AffineCipher.encrypt(TEXT, key1, key2));
+            assertThat(candidates).hasSize(312);
+            assertThat(candidates.get(0).key().key1()).isEqualTo(key1);
+            assertThat(candidates.get(0).key().key2()).isEqualTo(key2);
+            assertThat(candidates.get(0).cipher())
+                    .isSameAs(AffineCipher.of(key1, key2));
+        }
+    }
+
+    @Test
+    public void testScoresMatchDecryption()
+    {
+        final String cipherText = AffineCipher.encrypt(TEXT, Key1._7, Key2._3);
+        for (final Candidate<AffineKey> candidate
+                : Cryptanalysis.affine(cipherText))
+        {
+            final String plainText = candidate.cipher().decrypt(cipherText);
+            assertThat(candidate.score())
+                    .isCloseTo(chiSquared(plainText), within(1e-9));
+        }
+    }
+
+    @Test
+    public void testParallelCount()
+    {
+        final String text = RandomStringUtils.random(
+                Cryptanalysis.PARALLEL_THRESHOLD * 5 + 17);
+        final long[] counts = Cryptanalysis.count(text);
+        final long[] expected = new long[27];
+        text.chars().forEach(c -> expected[
+                'a' <= c && c <= 'z' ? c - 'a'
+                        : 'A' <= c && c <= 'Z' ? c - 'A'
+                        : 26]++);
+        assertThat(counts).isEqualTo(expected);
+    }
+
+    @Test
+    public void testNoLetters()
+    {
+        assertThat(Cryptanalysis.caesar("1234 !").get(0).score()).isZero();
+        assertThat(Cryptanalysis.affine("")).hasSize(312);
+    }
+
+    /**
+     * Scores {@code text} by counting its letters directly.
+     */
+    private static double chiSquared(final String text)
+    {
+        final double[] english = {
+                0.08167, 0.01492, 0.02782, 0.04253, 0.12702, 0.02228, 0.02015,
+                0.06094, 0.06966, 0.00153, 0.00772, 0.04025, 0.02406, 0.06749,
+                0.07507, 0.01929, 0.00095, 0.05987, 0.06327, 0.09056, 0.02758,
+                0.00978, 0.02360, 0.00150, 0.01974, 0.00074,
+        };
+        final String letters = text.toLowerCase().replaceAll("[^a-z]", "");
+        double score = 0;
+        for (int letter = 0; letter < 26; letter++)
+        {
+            final char c = (char) ('a' + letter);
+            final long count = letters.chars().filter(l -> l == c).count();
+            final double expected = letters.length() * english[letter];
+            score += (count - expected) * (count - expected) / expected;
+        }
+        return score;
+    }
+
+    @DataProvider
+    private static Object[][] shiftsProvider()
+    {
+        final Object[][] shifts = new Object[26][];
+        for (int shift = 0; shift < shifts.length; shift++)
+        {
+            shifts[shift] = new Object[] { shift };
+        }
+        return shifts;
+    }
+}
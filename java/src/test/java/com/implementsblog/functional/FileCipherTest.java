@@ -0,0 +1,168 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link FileCipher} class.
+ */
+public class FileCipherTest
+{
+    private static final Cipher CIPHER = CaesarCipher.withShift(
+            7,
+            new TreeSet<>(Arrays.asList(
+                    (int) 'A', (int) 'z',
+                    0x3B1, 0x3C9,
+                    0x4E00, 0x9FFF,
+                    0x1D400, 0x1D7FF)));
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException
+    {
+        directory = Files.createTempDirectory("FileCipherTest");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try
+                {
+                    Files.delete(path);
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testSmallSegments() throws IOException
+    {
+        final String text = RandomStringUtils.random(10_000);
+        final Path source = write("source.txt", text);
+        final Path destination = directory.resolve("destination.txt");
+
+        for (final int segmentSize : new int[] { 1, 2, 3, 5, 64, 1000 })
+        {
+            FileCipher.apply(
+                    source,
+                    destination,
+                    CIPHER,
+                    ForkJoinPool.commonPool(),
+                    segmentSize);
+            assertThat(Files.readAllBytes(destination))
+                    .isEqualTo(encrypt(Files.readAllBytes(source)));
+        }
+    }
+
+    @Test
+    public void testEncryptDecrypt() throws IOException
+    {
+        final String text = RandomStringUtils.random(100_000);
+        final Path source = write("source.txt", text);
+        final Path encrypted = directory.resolve("encrypted.txt");
+        final Path decrypted = directory.resolve("decrypted.txt");
+
+        FileCipher.encrypt(source, encrypted, CIPHER);
+        FileCipher.decrypt(encrypted, decrypted, CIPHER);
+
+        assertThat(Files.readAllBytes(encrypted))
+                .isEqualTo(encrypt(Files.readAllBytes(source)));
+        assertThat(Files.readAllBytes(decrypted))
+                .isEqualTo(Files.readAllBytes(source));
+    }
+
+    @Test
+    public void testInPlace() throws IOException
+    {
+        final String text = RandomStringUtils.random(10_000);
+        final Path file = write("file.txt", text);
+        final byte[] expected = encrypt(Files.readAllBytes(file));
+
+        FileCipher.apply(file, file, CIPHER, ForkJoinPool.commonPool(), 100);
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testKeyStreams() throws IOException
+    {
+        final String text = RandomStringUtils.random(10_000);
+        final Path file = write("file.txt", text);
+        final Path destination = directory.resolve("destination.txt");
+        final String plainText = new String(
+                Files.readAllBytes(file),
+                StandardCharsets.UTF_8);
+
+        for (final Cipher cipher : new Cipher[] {
+                VigenereCipher.withKey("lemon"),
+                VigenereCipher.autokey("queenly") })
+        {
+            FileCipher.apply(
+                    file,
+                    destination,
+                    cipher,
+                    ForkJoinPool.commonPool(),
+                    100);
+            assertThat(new String(
+                    Files.readAllBytes(destination),
+                    StandardCharsets.UTF_8))
+                    .isEqualTo(cipher.encrypt(plainText));
+
+            FileCipher.apply(
+                    destination,
+                    destination,
+                    cipher.inverse(),
+                    ForkJoinPool.commonPool(),
+                    100);
+            assertThat(Files.readAllBytes(destination))
+                    .isEqualTo(Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        final Path source = write("source.txt", "");
+        final Path destination = write("destination.txt", "not empty");
+
+        FileCipher.encrypt(source, destination, CIPHER);
+
+        assertThat(Files.size(destination)).isZero();
+    }
+
+    private Path write(final String name, final String text) throws IOException
+    {
+        return Files.write(
+                directory.resolve(name),
+                text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encrypt(final byte[] bytes)
+    {
+        return CIPHER
+                .encrypt(new String(bytes, StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
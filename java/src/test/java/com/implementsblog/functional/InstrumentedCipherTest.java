@@ -0,0 +1,148 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the {@link InstrumentedCipher} class, and the {@link CipherMetrics}
+ * class.
+ */
+public class InstrumentedCipherTest
+{
+    @Test
+    public void testEvents()
+    {
+        final List<CipherEvent> events = new ArrayList<>();
+        final Cipher cipher =
+                CaesarCipher.withShift(3).instrumented(events::add);
+
+        assertThat(cipher.encrypt("abc 123")).isEqualTo("def 123");
+        assertThat(cipher.decrypt("def 123")).isEqualTo("abc 123");
+
+        final char[] chars = "Hello, World!".toCharArray();
+        cipher.encrypt(chars, 0, chars, 0, chars.length);
+        assertThat(new String(chars)).isEqualTo("Khoor, Zruog!");
+
+        final StringBuilder builder = new StringBuilder("ab");
+        cipher.encrypt("xyz!", 1, 4, builder);
+        assertThat(builder.toString()).isEqualTo("abbc!");
+
+        final CharBuffer buffer = CharBuffer.allocate(10);
+        buffer.put('-');
+        cipher.decrypt(CharBuffer.wrap("def"), buffer);
+        assertThat(buffer.flip().toString()).isEqualTo("-abc");
+
+        final byte[] bytes = "caf\u00E9".getBytes(StandardCharsets.UTF_8);
+        cipher.encrypt(bytes, 0, bytes, 0, bytes.length);
+        cipher.encrypt(ByteBuffer.wrap(bytes), ByteBuffer.allocate(5));
+        cipher.encrypt(ByteBuffer.wrap(bytes));
+
+        assertThat(events).hasSize(8);
+        assertThat(events.stream().map(CipherEvent::isDecryption))
+                .containsExactly(
+                        false, true, false, false, true, false, false, false);
+        assertThat(events.stream().map(CipherEvent::isBytes))
+                .containsExactly(
+                        false, false, false, false, false, true, true, true);
+        assertThat(events.stream().mapToInt(CipherEvent::length).toArray())
+                .containsExactly(7, 7, 13, 3, 3, 5, 5, 5);
+        assertThat(events.stream().mapToInt(CipherEvent::substituted).toArray())
+                .containsExactly(3, 3, 10, 2, 3, 3, 3, 3);
+        events.forEach(event -> assertThat(event.nanos()).isNotNegative());
+        events.forEach(event -> assertThat(event.allocatedBytes())
+                .isGreaterThanOrEqualTo(-1));
+        assertThat(events.get(0).toString())
+                .startsWith("Encryption of 7 chars (3 substituted)");
+    }
+
+    @Test
+    public void testSharedBuffers()
+    {
+        final List<CipherEvent> events = new ArrayList<>();
+        final Cipher cipher =
+                CaesarCipher.withShift(1).instrumented(events::add);
+
+        final char[] chars = "-aab".toCharArray();
+        final CharBuffer source = CharBuffer.wrap(chars, 1, 3);
+        cipher.encrypt(source, CharBuffer.wrap(chars));
+        assertThat(new String(chars)).isEqualTo("bbcb");
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(4);
+        direct.put("-aab".getBytes(StandardCharsets.US_ASCII)).position(1);
+        final ByteBuffer destination = direct.duplicate();
+        destination.clear();
+        cipher.encrypt(direct, destination);
+        destination.flip();
+        assertThat(StandardCharsets.US_ASCII.decode(destination).toString())
+                .isEqualTo("bbc");
+
+        final byte[] bytes = "xyz".getBytes(StandardCharsets.US_ASCII);
+        cipher.encrypt(ByteBuffer.wrap(bytes), ByteBuffer.allocate(3));
+
+        assertThat(events.stream().mapToInt(CipherEvent::substituted).toArray())
+                .containsExactly(3, 3, 3);
+    }
+
+    @Test
+    public void testInverseAndSession()
+    {
+        final CipherMetrics metrics = new CipherMetrics();
+        final Cipher cipher = AtbashCipher.instance().instrumented(metrics);
+        assertThat(cipher.inverse().inverse()).isSameAs(cipher);
+        assertThat(cipher.session()).isSameAs(cipher);
+        assertThat(cipher.isPositionIndependent()).isTrue();
+
+        final Cipher vigenere =
+                VigenereCipher.withKey("key").instrumented(metrics);
+        final Cipher session = vigenere.session();
+        assertThat(session).isNotSameAs(vigenere);
+        assertThat(session.encrypt("ab") + session.encrypt("cd"))
+                .isEqualTo(VigenereCipher.encrypt("abcd", "key"));
+        assertThat(metrics.calls()).isEqualTo(2);
+        assertThat(metrics.processed()).isEqualTo(4);
+    }
+
+    @Test
+    public void testParallel()
+    {
+        final CipherMetrics metrics = new CipherMetrics();
+        final Cipher cipher = CaesarCipher.withShift(1)
+                .instrumented(metrics)
+                .parallel(0);
+        final String text = RandomStringUtils.randomAlphabetic(100_000);
+        assertThat(cipher.encrypt(text))
+                .isEqualTo(CaesarCipher.encrypt(text, 1));
+        assertThat(metrics.calls()).isEqualTo(1);
+        assertThat(metrics.processed()).isEqualTo(100_000);
+        assertThat(metrics.substituted()).isEqualTo(100_000);
+    }
+
+    @Test
+    public void testMetrics()
+    {
+        final CipherMetrics metrics = new CipherMetrics();
+        metrics.completed(new CipherEvent(false, false, 10, 4, 100, 0));
+        metrics.completed(new CipherEvent(true, true, 20, 5, -1, 1));
+        metrics.completed(new CipherEvent(false, true, 30, 6, 50, 1000));
+        assertThat(metrics.calls()).isEqualTo(3);
+        assertThat(metrics.processed()).isEqualTo(60);
+        assertThat(metrics.substituted()).isEqualTo(15);
+        assertThat(metrics.allocatedBytes()).isEqualTo(150);
+
+        final long[] latencies = metrics.latencies();
+        assertThat(latencies).hasSize(64);
+        assertThat(latencies[0]).isEqualTo(2);
+        assertThat(latencies[9]).isEqualTo(1);
+        assertThat(CipherMetrics.bucket(Long.MAX_VALUE)).isEqualTo(62);
+        assertThat(CipherMetrics.bucket(1023)).isEqualTo(9);
+        assertThat(CipherMetrics.bucket(1024)).isEqualTo(10);
+    }
+}
@@ -0,0 +1,137 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link ParallelCipher} class.
+ */
+public class ParallelCipherTest
+{
+    private static final Cipher CIPHER = CaesarCipher.withShift(
+            11,
+            new TreeSet<>(Arrays.asList(
+                    (int) 'A', (int) 'z',
+                    0x3B1, 0x3C9,
+                    0x4E00, 0x9FFF,
+                    0x10000, 0x10FFFF)));
+
+    @Test(dataProvider = "segmentSizesProvider")
+    public void testStrings(final String text, final int segmentSize)
+    {
+        final Cipher parallel = parallel(segmentSize);
+        assertThat(parallel.encrypt(text)).isEqualTo(CIPHER.encrypt(text));
+        assertThat(parallel.decrypt(text)).isEqualTo(CIPHER.decrypt(text));
+        assertThat(parallel.inverse().inverse()).isSameAs(parallel);
+    }
+
+    @Test(dataProvider = "segmentSizesProvider")
+    public void testChars(final String text, final int segmentSize)
+    {
+        final Cipher parallel = parallel(segmentSize);
+        final String expected = CIPHER.encrypt(text);
+
+        final char[] chars = text.toCharArray();
+        parallel.encrypt(chars, 0, chars, 0, chars.length);
+        assertThat(new String(chars)).isEqualTo(expected);
+
+        final CharBuffer buffer = CharBuffer.allocate(text.length());
+        parallel.encrypt(CharBuffer.wrap(text.toCharArray()), buffer);
+        assertThat(buffer.array()).isEqualTo(expected.toCharArray());
+    }
+
+    @Test(dataProvider = "segmentSizesProvider")
+    public void testBytes(final String text, final int segmentSize)
+    {
+        final Cipher parallel = parallel(segmentSize);
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final byte[] expected = CIPHER
+                .encrypt(new String(bytes, StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_8);
+
+        final byte[] destination = new byte[bytes.length];
+        parallel.encrypt(bytes, 0, destination, 0, bytes.length);
+        assertThat(destination).isEqualTo(expected);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        parallel.encrypt(direct);
+        assertThat(direct.hasRemaining()).isFalse();
+        final byte[] inPlace = new byte[bytes.length];
+        ((ByteBuffer) direct.flip()).get(inPlace);
+        assertThat(inPlace).isEqualTo(expected);
+
+        final ByteBuffer heap = ByteBuffer.allocate(bytes.length + 1);
+        heap.put((byte) '>');
+        parallel.encrypt(ByteBuffer.wrap(bytes), heap);
+        assertThat(Arrays.copyOfRange(heap.array(), 1, bytes.length + 1))
+                .isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "segmentSizesProvider")
+    public void testKeyStream(final String text, final int segmentSize)
+    {
+        final Cipher cipher = VigenereCipher.withKey(
+                "\u03B1key\u03C9",
+                CodePointRanges.builder()
+                        .add(CodePointRanges.ASCII_LETTERS)
+                        .add(CodePointRanges.GREEK_LETTERS)
+                        .build());
+        final Cipher parallel = new ParallelCipher(
+                cipher,
+                0,
+                ForkJoinPool.commonPool(),
+                segmentSize);
+        final String expected = cipher.encrypt(text);
+
+        assertThat(parallel.encrypt(text)).isEqualTo(expected);
+        assertThat(parallel.decrypt(expected)).isEqualTo(text);
+
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        parallel.encrypt(buffer);
+        final byte[] encrypted = new byte[bytes.length];
+        ((ByteBuffer) buffer.flip()).get(encrypted);
+        assertThat(encrypted).isEqualTo(cipher
+                .encrypt(new String(bytes, StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cipher parallel(final int segmentSize)
+    {
+        return new ParallelCipher(
+                CIPHER,
+                0,
+                ForkJoinPool.commonPool(),
+                segmentSize);
+    }
+
+    @DataProvider
+    private static Object[][] segmentSizesProvider()
+    {
+        return Stream.<Function<Integer, String>>of(
+                RandomStringUtils::random,
+                // Mostly surrogate pairs.
+                count -> RandomStringUtils
+                        .random(count, 0xD800, 0xE000, false, false))
+                .map(s -> s.apply(10_000))
+                .flatMap(string -> Stream
+                        .of(1, 2, 3, 100, 100_000)
+                        .map(segmentSize
+                                -> new Object[] { string, segmentSize }))
+                .toArray(Object[][]::new);
+    }
+}
@@ -0,0 +1,83 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the {@link RangeIndex} class.
+ */
+public class RangeIndexTest
+{
+    @Test(dataProvider = "rangesProvider")
+    public void testEveryCodePoint(final SortedSet<Integer> ranges)
+    {
+        final RangeIndex index = SubstitutionCipher.index(
+                (lowest, highest) -> codePoint -> highest - codePoint + lowest,
+                CodePointRanges.of(ranges));
+        final Integer[] bounds = ranges.toArray(new Integer[0]);
+
+        IntStream.rangeClosed(0, 0x3000).forEach(codePoint -> {
+            int expected = codePoint;
+            for (int i = 0; i < bounds.length; i += 2)
+            {
+                if (bounds[i] <= codePoint && codePoint <= bounds[i + 1])
+                {
+                    expected = bounds[i + 1] - codePoint + bounds[i];
+                }
+            }
+            assertThat(index.applyAsInt(codePoint)).isEqualTo(expected);
+        });
+        assertThat(index.ranges()).isEqualTo(CodePointRanges.of(ranges));
+    }
+
+    @Test(dataProvider = "rangesProvider")
+    public void testCompiled(final SortedSet<Integer> ranges)
+    {
+        final String text = new Random(ranges.size())
+                .ints(10_000, 0, 0x3000)
+                .collect(
+                        StringBuilder::new,
+                        StringBuilder::appendCodePoint,
+                        StringBuilder::append)
+                .toString();
+
+        assertThat(CaesarCipher.compile(5, ranges).apply(text))
+                .isEqualTo(CaesarCipher.encrypt(text, 5, ranges));
+    }
+
+    @DataProvider
+    private static Object[][] rangesProvider()
+    {
+        return IntStream
+                .of(0, 1, 2, 17, 500)
+                .mapToObj(count -> new Object[] { ranges(count) })
+                .toArray(Object[][]::new);
+    }
+
+    /**
+     * @return {@code count} disjoint ranges below {@code 0x3000},
+     *     some of them two code points long, some of them adjacent.
+     */
+    private static SortedSet<Integer> ranges(final int count)
+    {
+        final Random random = new Random(count);
+        final SortedSet<Integer> ranges = new TreeSet<>();
+        int codePoint = 1;
+        for (int i = 0; i < count; i++)
+        {
+            final int lowest = codePoint + random.nextInt(3) * 2;
+            final int highest = lowest + random.nextInt(3) * 2;
+            ranges.add(lowest);
+            ranges.add(highest == lowest ? lowest + 1 : highest);
+            codePoint = Math.max(lowest + 1, highest) + 1;
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,233 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests the {@link RecordCipher} class.
+ */
+public class RecordCipherTest
+{
+    private static final Cipher CAESAR = CaesarCipher.withShift(1);
+
+    @Test
+    public void testCsv() throws IOException
+    {
+        final RecordCipher records = RecordCipher.csv(CAESAR, 1, 3);
+        assertThat(encrypt(records,
+                "abc,abc,abc,abc\n"
+                        + "\"a,b\",\"a,b\",\"a\"\"b\",\"a\"\"b\"\r\n"
+                        + "x,\"line\nbreak\",y\n"
+                        + "only\n"
+                        + ",,,"))
+                .isEqualTo("abc,bcd,abc,bcd\n"
+                        + "\"a,b\",\"b,c\",\"a\"\"b\",\"b\"\"c\"\r\n"
+                        + "x,\"mjof\ncsfbl\",y\n"
+                        + "only\n"
+                        + ",,,");
+    }
+
+    @Test
+    public void testCsvHeaderAndDelimiter() throws IOException
+    {
+        final RecordCipher records =
+                RecordCipher.csv(CAESAR, '\t', true, 0);
+        assertThat(encrypt(records, "name\tid\nbob\t12\nann,x\t13\n"))
+                .isEqualTo("name\tid\ncpc\t12\nboo,y\t13\n");
+    }
+
+    @Test
+    public void testJsonLines() throws IOException
+    {
+        final RecordCipher records =
+                RecordCipher.jsonLines(CAESAR, "name", "caf\u00E9");
+        assertThat(encrypt(records,
+                "{\"name\": \"bob\", \"id\": \"bob\"}\n"
+                        + "{\"id\":1,\"name\":\"a\\nb\\u00e9c\"}\n"
+                        + "{\"x\":{\"name\":\"bob\"},\"name\":[\"bob\"]}\n"
+                        + "{\"name\":null,\"caf\u00E9\":\"\u00E9z\"}\n"
+                        + "{\"nam\\u0065\":\"bob\",\"names\":\"bob\"}\n"))
+                .isEqualTo(
+                        "{\"name\": \"cpc\", \"id\": \"bob\"}\n"
+                        + "{\"id\":1,\"name\":\"b\\nc\\u00e9d\"}\n"
+                        + "{\"x\":{\"name\":\"bob\"},\"name\":[\"bob\"]}\n"
+                        + "{\"name\":null,\"caf\u00E9\":\"\u00E9a\"}\n"
+                        + "{\"nam\\u0065\":\"bob\",\"names\":\"bob\"}\n");
+    }
+
+    @Test
+    public void testFieldsHaveTheirOwnKeyStream() throws IOException
+    {
+        final Cipher vigenere = VigenereCipher.withKey("lemon");
+        final String first = RandomStringUtils.randomAlphabetic(100);
+        final String second = RandomStringUtils.randomAlphabetic(100);
+        final RecordCipher records = RecordCipher.csv(vigenere, 0, 1);
+
+        final String encrypted = encrypt(
+                records,
+                first + ",\"" + second.substring(0, 50) + "\"\""
+                        + second.substring(50) + "\"\n",
+                7);
+        assertThat(encrypted).isEqualTo(
+                vigenere.encrypt(first) + ",\""
+                        + vigenere.encrypt(second).substring(0, 50) + "\"\""
+                        + vigenere.encrypt(second).substring(50) + "\"\n");
+    }
+
+    @Test(dataProvider = "recordsProvider")
+    public void testBuffersMatch(
+            final RecordCipher records,
+            final RecordCipher inverse,
+            final String text) throws IOException
+    {
+        final String expected = encrypt(records, text);
+        assertThat(expected).isNotEqualTo(text);
+        for (final int bufferSize : new int[] { 2, 4, 17, 1000 })
+        {
+            final StringWriter writer = new StringWriter();
+            records.encrypt(new StringReader(text), writer, bufferSize);
+            assertThat(writer.toString()).isEqualTo(expected);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            records.encrypt(
+                    new ByteArrayInputStream(
+                            text.getBytes(StandardCharsets.UTF_8)),
+                    out,
+                    Math.max(bufferSize, 4));
+            assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8))
+                    .isEqualTo(expected);
+        }
+
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        records.encrypt(bytes, 0, bytes.length);
+        assertThat(new String(bytes, StandardCharsets.UTF_8))
+                .isEqualTo(expected);
+
+        assertThat(encrypt(inverse, expected)).isEqualTo(text);
+    }
+
+    @Test(
+            expectedExceptions = IllegalArgumentException.class,
+            dataProvider = "invalidProvider")
+    public void testInvalid(final Runnable create)
+    {
+        create.run();
+    }
+
+    private static String encrypt(
+            final RecordCipher records,
+            final String text) throws IOException
+    {
+        final char[] chars = text.toCharArray();
+        records.encrypt(chars, 0, chars.length);
+
+        final StringWriter writer = new StringWriter();
+        records.encrypt(new StringReader(text), writer);
+        assertThat(writer.toString()).isEqualTo(new String(chars));
+        return writer.toString();
+    }
+
+    private static String encrypt(
+            final RecordCipher records,
+            final String text,
+            final int bufferSize) throws IOException
+    {
+        final StringWriter writer = new StringWriter();
+        records.encrypt(new StringReader(text), writer, bufferSize);
+        return writer.toString();
+    }
+
+    @DataProvider
+    private static Object[][] recordsProvider()
+    {
+        final Random random = new Random(1);
+        final StringBuilder csv = new StringBuilder();
+        final StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            for (int column = 0; column < 4; column++)
+            {
+                final String value = RandomStringUtils.random(
+                        random.nextInt(20),
+                        0,
+                        0,
+                        true,
+                        true,
+                        null,
+                        random)
+                        + new StringBuilder().appendCodePoint(0x1D400 + i);
+                csv.append(column > 0 ? "," : "")
+                        .append(random.nextBoolean()
+                                ? value
+                                : "\"" + value + "\"\",\n\"");
+                json.append(column > 0 ? "," : "{")
+                        .append("\"f").append(column).append("\":")
+                        .append(random.nextBoolean()
+                                ? "\"" + value + "\\\"\\u0041\""
+                                : "[\"" + value + "\"]");
+            }
+            csv.append(random.nextBoolean() ? "\n" : "\r\n");
+            json.append("}\n");
+        }
+
+        final Cipher cipher = AffineCipher.withKeys(
+                5,
+                8,
+                CodePointRanges.builder()
+                        .add(CodePointRanges.ASCII_LETTERS)
+                        .add(0x1D400, 0x1D7FF)
+                        .build());
+        return new Object[][] {
+                {
+                        RecordCipher.csv(cipher, 0, 2),
+                        RecordCipher.csv(cipher.inverse(), 0, 2),
+                        csv.toString(),
+                },
+                {
+                        RecordCipher.jsonLines(cipher, "f1", "f3"),
+                        RecordCipher.jsonLines(cipher.inverse(), "f1", "f3"),
+                        json.toString(),
+                },
+        };
+    }
+
+    @DataProvider
+    private static Object[][] invalidProvider()
+    {
+        final Cipher punctuation =
+                CaesarCipher.withShiftInRanges(1, CodePointRanges.of(' ', '~'));
+        return new Object[][] {
+                { (Runnable) () -> RecordCipher.csv(punctuation, 0) },
+                { (Runnable) () -> RecordCipher.jsonLines(punctuation, "a") },
+                {
+                        (Runnable) () -> RecordCipher.csv(
+                                VigenereCipher.withKey(
+                                        " !",
+                                        CodePointRanges.of(0x20, 0x7E)),
+                                1),
+                },
+                { (Runnable) () -> RecordCipher.csv(CAESAR, -1) },
+                { (Runnable) () -> RecordCipher.csv(CAESAR, '"', false, 0) },
+                {
+                        (Runnable) () -> RecordCipher.csv(
+                                CaesarCipher.withShiftInRanges(
+                                        1,
+                                        CodePointRanges.of('\t', '\n')),
+                                '\t',
+                                false,
+                                0),
+                },
+        };
+    }
+}
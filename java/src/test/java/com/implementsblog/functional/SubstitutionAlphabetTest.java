@@ -0,0 +1,128 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link SubstitutionAlphabet} class.
+ */
+public class SubstitutionAlphabetTest
+{
+    private static final CodePointRanges RANGES = CodePointRanges.builder()
+            .add(CodePointRanges.ASCII_LETTERS)
+            .add(CodePointRanges.GREEK_LETTERS)
+            .add(0x1F600, 0x1F64F)
+            .build();
+
+    @Test
+    public void testKeyword()
+    {
+        final SubstitutionAlphabet alphabet =
+                SubstitutionAlphabet.keyword("Zebras");
+        assertThat(alphabet.toString()).isEqualTo(
+                "ZEBRASCDFGHIJKLMNOPQTUVWXYzebrascdfghijklmnopqtuvwxy");
+        final Cipher cipher = alphabet.cipher();
+        assertThat(cipher.encrypt("Flee at once. We are discovered!"))
+                .isEqualTo("Siaa zq lkba. Va zoa rfpbluaoar!");
+        assertThat(cipher.decrypt("Siaa zq lkba. Va zoa rfpbluaoar!"))
+                .isEqualTo("Flee at once. We are discovered!");
+    }
+
+    @Test
+    public void testOf()
+    {
+        final Cipher cipher = SubstitutionAlphabet
+                .of(CodePointRanges.of('a', 'e'), "caebd")
+                .cipher();
+        assertThat(cipher.encrypt("abcdef")).isEqualTo("caebdf");
+        assertThat(cipher.decrypt("caebdf")).isEqualTo("abcdef");
+    }
+
+    @Test(dataProvider = "alphabetsProvider")
+    public void testInverse(final SubstitutionAlphabet alphabet)
+    {
+        final Cipher cipher = alphabet.cipher();
+        assertThat(SubstitutionAlphabet
+                .of(alphabet.ranges(), alphabet.toString())
+                .cipher()
+                .encrypt(alphabet.toString()))
+                .isEqualTo(cipher.encrypt(alphabet.toString()));
+        for (int i = 0; i < 100; i++)
+        {
+            final String text = RandomStringUtils.random(100);
+            assertThat(cipher.decrypt(cipher.encrypt(text))).isEqualTo(text);
+        }
+    }
+
+    @Test(dataProvider = "alphabetsProvider")
+    public void testBijective(final SubstitutionAlphabet alphabet)
+    {
+        final CodePointRanges ranges = alphabet.ranges();
+        final String substitutes = alphabet.toString();
+        assertThat(substitutes.codePoints().distinct().count())
+                .isEqualTo(substitutes.codePointCount(0, substitutes.length()));
+        substitutes.codePoints().forEach(
+                c -> assertThat(ranges.contains(c)).isTrue());
+    }
+
+    @Test
+    public void testRandom()
+    {
+        assertThat(SubstitutionAlphabet.random(new Random(42)).toString())
+                .isEqualTo(SubstitutionAlphabet.random(new Random(42))
+                        .toString())
+                .isNotEqualTo(SubstitutionAlphabet.keyword("").toString());
+        assertThat(SubstitutionAlphabet.keyword("").cipher().encrypt("abc"))
+                .isEqualTo("abc");
+    }
+
+    @Test(dataProvider = "invalidSubstitutesProvider",
+            expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSubstitutes(final String substitutes)
+    {
+        SubstitutionAlphabet.of(
+                CodePointRanges.of('a', 'c', 'x', 'z'),
+                substitutes);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidKeyword()
+    {
+        SubstitutionAlphabet.keyword("two words");
+    }
+
+    @DataProvider
+    private static Object[][] alphabetsProvider()
+    {
+        return Stream
+                .of(
+                        SubstitutionAlphabet.keyword("zebras"),
+                        SubstitutionAlphabet.keyword("\u03C9Zz\u03B1", RANGES),
+                        SubstitutionAlphabet.random(new Random(1)),
+                        SubstitutionAlphabet.random(RANGES, new Random(2)),
+                        SubstitutionAlphabet.random(
+                                CodePointRanges.LATIN_1_LETTERS,
+                                new Random(3)))
+                .map(alphabet -> new Object[] { alphabet })
+                .toArray(Object[][]::new);
+    }
+
+    @DataProvider
+    private static Object[][] invalidSubstitutesProvider()
+    {
+        return new Object[][] {
+                { "" },
+                { "cba" },
+                { "cbazyx!" },
+                { "aacxyz" },
+                { "abzxyc" },
+                { "abc!yz" },
+        };
+    }
+}
@@ -0,0 +1,325 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.implementsblog.functional.AffineCipher.Key1;
+import com.implementsblog.functional.AffineCipher.Key2;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link SubstitutionTable} class.
+ */
+public class SubstitutionTableTest
+{
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Shifts ranges whose code points are encoded as 1, 2, 3 and 4 bytes.
+     */
+    private static final SubstitutionTable MULTI_BYTE = CaesarCipher.compile(
+            1,
+            new TreeSet<>(Arrays.asList(
+                    // ASCII, encoded as 1 byte.
+                    (int) 'a', (int) 'z',
+                    // Greek, encoded as 2 bytes.
+                    0x3B1, 0x3C9,
+                    // CJK, encoded as 3 bytes.
+                    0x4E00, 0x9FFF,
+                    // Mathematical alphanumeric symbols, encoded as 4 bytes.
+                    0x1D400, 0x1D7FF)));
+
+    /**
+     * Reverses U+0000 to U+FFFF, and U+10000 to U+10FFFF.
+     */
+    private static final SubstitutionTable EVERY_CODE_POINT =
+            AtbashCipher.compile(new TreeSet<>(Arrays.asList(
+                    (int) Character.MIN_VALUE,
+                    (int) Character.MAX_VALUE,
+                    Character.MIN_SUPPLEMENTARY_CODE_POINT,
+                    Character.MAX_CODE_POINT)));
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testCaesarMatchesUncompiled(final String text)
+    {
+        final int shift = RANDOM.nextInt();
+        assertThat(CaesarCipher.compile(shift).apply(text))
+                .isEqualTo(CaesarCipher.encrypt(text, shift));
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testCaesarRangesMatchesUncompiled(final String text)
+    {
+        final int shift = RANDOM.nextInt();
+        final SortedSet<Integer> codePointRanges = randomCodePointRanges();
+        assertThat(CaesarCipher.compile(shift, codePointRanges).apply(text))
+                .isEqualTo(CaesarCipher.encrypt(text, shift, codePointRanges));
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testAtbashMatchesUncompiled(final String text)
+    {
+        final SortedSet<Integer> codePointRanges = randomCodePointRanges();
+        assertThat(AtbashCipher.compile().apply(text))
+                .isEqualTo(AtbashCipher.encrypt(text));
+        assertThat(AtbashCipher.compile(codePointRanges).apply(text))
+                .isEqualTo(AtbashCipher.encrypt(text, codePointRanges));
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testAffineMatchesUncompiled(final String text)
+    {
+        final Key1 key1 = Key1.values()[RANDOM.nextInt(Key1.values().length)];
+        final Key2 key2 = Key2.values()[RANDOM.nextInt(Key2.values().length)];
+        assertThat(AffineCipher.compileEncryption(key1, key2).apply(text))
+                .isEqualTo(AffineCipher.encrypt(text, key1, key2));
+        assertThat(AffineCipher.compileDecryption(key1, key2).apply(text))
+                .isEqualTo(AffineCipher.decrypt(text, key1, key2));
+    }
+
+    @Test
+    public void testSupplementaryCodePoints()
+    {
+        // Mathematical bold capitals, U+1D400 to U+1D419.
+        final SubstitutionTable table = CaesarCipher.compile(
+                1,
+                new TreeSet<>(Arrays.asList(0x1D400, 0x1D419)));
+
+        assertThat(table.apply(new String(Character.toChars(0x1D400))
+                + "a" + new String(Character.toChars(0x1D419))))
+                .isEqualTo(new String(Character.toChars(0x1D401))
+                        + "a" + new String(Character.toChars(0x1D400)));
+        assertThat(table.applyAsInt(0x1D418)).isEqualTo(0x1D419);
+        assertThat(table.applyAsInt(0x1D41A)).isEqualTo(0x1D41A);
+    }
+
+    @Test
+    public void testRangeStraddlingSurrogates()
+    {
+        // The range contains the surrogates, so a pair must be substituted as
+        // the code point it encodes, which is outside the range, not by half.
+        final CodePointRanges codePointRanges =
+                CodePointRanges.of(0xD000, 0xE000);
+        final String text = "a" + new StringBuilder().appendCodePoint(0x1F600)
+                + "b\uD000\uDC00";
+        final String expected =
+                AtbashCipher.encryptInRanges(text, codePointRanges);
+        final SubstitutionTable table =
+                AtbashCipher.compileInRanges(codePointRanges);
+        assertThat(table.apply(text)).isEqualTo(expected);
+
+        final StringBuilder builder = new StringBuilder();
+        table.apply(text, 0, text.length(), builder);
+        assertThat(builder.toString()).isEqualTo(expected);
+
+        final CharBuffer buffer =
+                ByteBuffer.allocateDirect(text.length() * 2).asCharBuffer();
+        table.apply(CharBuffer.wrap(text), buffer);
+        assertThat(buffer.flip().toString()).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testSupplementaryMatchesUncompiled(final String text)
+    {
+        // Emoji, and the ranges of MULTI_BYTE.
+        final CodePointRanges codePointRanges = CodePointRanges.of(
+                'a', 'z',
+                0x3B1, 0x3C9,
+                0x4E00, 0x9FFF,
+                0x1D400, 0x1D7FF,
+                0x1F600, 0x1F64F);
+        final String emoji = new StringBuilder()
+                .appendCodePoint(0x1F600)
+                .appendCodePoint(0x1D7FF)
+                .append(text)
+                .appendCodePoint(0x1F64F)
+                .toString();
+        assertThat(CaesarCipher.compileInRanges(7, codePointRanges)
+                .apply(emoji))
+                .isEqualTo(CaesarCipher.encryptInRanges(
+                        emoji,
+                        7,
+                        codePointRanges));
+        assertThat(AtbashCipher.compileInRanges(codePointRanges).apply(emoji))
+                .isEqualTo(AtbashCipher.encryptInRanges(
+                        emoji,
+                        codePointRanges));
+        assertThat(CaesarCipher.encryptInRanges(
+                CaesarCipher.encryptInRanges(emoji, 7, codePointRanges),
+                -7,
+                codePointRanges))
+                .isEqualTo(emoji);
+        assertThat(CaesarCipher.encryptInRanges(emoji, 1, codePointRanges))
+                .startsWith(new StringBuilder()
+                        .appendCodePoint(0x1F601)
+                        .appendCodePoint(0x1D400)
+                        .toString());
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testBuffers(final String text)
+    {
+        for (final SubstitutionTable table : Arrays.asList(
+                CaesarCipher.compile(RANDOM.nextInt()),
+                EVERY_CODE_POINT))
+        {
+            final String expected = table.apply(text);
+
+            final char[] destination = new char[text.length() + 2];
+            table.apply(text.toCharArray(), 0, destination, 1, text.length());
+            assertThat(new String(destination, 1, text.length()))
+                    .isEqualTo(expected);
+
+            final char[] inPlace = text.toCharArray();
+            table.apply(inPlace, 0, inPlace, 0, inPlace.length);
+            assertThat(new String(inPlace)).isEqualTo(expected);
+
+            final StringBuilder builder = new StringBuilder(">");
+            table.apply(text, 0, text.length(), builder);
+            assertThat(builder.toString()).isEqualTo(">" + expected);
+
+            final CharBuffer heap = CharBuffer.allocate(text.length());
+            table.apply(CharBuffer.wrap(text), heap);
+            assertThat(heap.hasRemaining()).isFalse();
+            assertThat(heap.flip().toString()).isEqualTo(expected);
+
+            final CharBuffer direct = ByteBuffer
+                    .allocateDirect(text.length() * 2)
+                    .asCharBuffer();
+            table.apply(CharBuffer.wrap(text), direct);
+            assertThat(direct.flip().toString()).isEqualTo(expected);
+        }
+    }
+
+    @Test(dataProvider = "randomStringsProvider")
+    public void testUtf8(final String text)
+    {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (final SubstitutionTable table : Arrays.asList(
+                CaesarCipher.compile(RANDOM.nextInt()),
+                MULTI_BYTE))
+        {
+            final byte[] expected = table
+                    .apply(new String(bytes, StandardCharsets.UTF_8))
+                    .getBytes(StandardCharsets.UTF_8);
+
+            final byte[] destination = new byte[bytes.length + 2];
+            table.apply(bytes, 0, destination, 1, bytes.length);
+            assertThat(Arrays.copyOfRange(destination, 1, bytes.length + 1))
+                    .isEqualTo(expected);
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            table.apply(direct);
+            assertThat(direct.hasRemaining()).isFalse();
+            final byte[] inPlace = new byte[bytes.length];
+            ((ByteBuffer) direct.flip()).get(inPlace);
+            assertThat(inPlace).isEqualTo(expected);
+
+            final ByteBuffer heap = ByteBuffer.allocate(bytes.length);
+            table.apply(ByteBuffer.wrap(bytes), heap);
+            assertThat(heap.array()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8()
+    {
+        // A truncated sequence, a stray continuation byte, an overlong
+        // encoding of 'a', and an encoded surrogate.
+        final byte[] malformed = {
+                (byte) 0xCE, 'a', (byte) 0xB1, 'b', (byte) 0xC1, (byte) 0xA1,
+                (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xCE };
+        final byte[] bytes = malformed.clone();
+        MULTI_BYTE.apply(bytes, 0, bytes, 0, bytes.length);
+
+        final byte[] expected = malformed.clone();
+        expected[1] = 'b';
+        expected[3] = 'c';
+        assertThat(bytes).isEqualTo(expected);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testUtf8LengthChangingSubstitution()
+    {
+        final SubstitutionTable table = CaesarCipher.compile(
+                1,
+                new TreeSet<>(Arrays.asList(0x70, 0x90)));
+        assertThat(table.preservesUtf8Length()).isFalse();
+        table.apply(new byte[1], 0, new byte[1], 0, 1);
+    }
+
+    @Test(expectedExceptions = BufferOverflowException.class)
+    public void testBufferOverflow()
+    {
+        CaesarCipher.compile(1)
+                .apply(CharBuffer.wrap("abc"), CharBuffer.allocate(2));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+        CaesarCipher.compile(1)
+                .apply(new char[3], 1, new char[3], 0, 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testLengthChangingSubstitution()
+    {
+        CaesarCipher.compile(1, new TreeSet<>(Arrays.asList(0xFFFF, 0x10000)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOddCodePointRange()
+    {
+        CaesarCipher.compile(1, "azA".codePoints()
+                .collect(TreeSet::new, TreeSet::add, TreeSet::addAll));
+    }
+
+    @DataProvider
+    private static Object[][] randomStringsProvider()
+    {
+        return Stream.<Function<Integer, String>>of(
+                RandomStringUtils::random,
+                RandomStringUtils::randomAscii,
+                RandomStringUtils::randomAlphanumeric,
+                RandomStringUtils::randomAlphabetic)
+                // Create a list of random strings of each type
+                .flatMap(s -> IntStream.range(0, 50).mapToObj(i -> s.apply(50)))
+                .map(string -> new Object[] { string })
+                .toArray(Object[][]::new);
+    }
+
+    private static SortedSet<Integer> randomCodePointRanges()
+    {
+        final TreeSet<Integer> collect = IntStream
+                .generate(() -> (RANDOM.nextBoolean() ? 'a' : 'A')
+                        + RANDOM.nextInt('z' - 'a' + 1))
+                .limit(10)
+                .collect(
+                        TreeSet::new,
+                        TreeSet::add,
+                        TreeSet::addAll);
+
+        // Don't allow odd sized sets.
+        if (collect.size() % 2 != 0)
+        {
+            collect.remove(collect.last());
+        }
+
+        return collect;
+    }
+}
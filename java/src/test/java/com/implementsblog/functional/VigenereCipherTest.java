@@ -0,0 +1,241 @@
+package com.implementsblog.functional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Tests the {@link VigenereCipher} class, and the {@link KeyStreamCipher}
+ * class.
+ */
+public class VigenereCipherTest
+{
+    private static final CodePointRanges RANGES = CodePointRanges.builder()
+            .add(CodePointRanges.ASCII_LETTERS)
+            .add(CodePointRanges.GREEK_LETTERS)
+            .build();
+
+    @Test
+    public void testKnownValues()
+    {
+        assertThat(VigenereCipher.encrypt("attack at dawn", "lemon"))
+                .isEqualTo("lxfopv ef rnhr");
+        assertThat(VigenereCipher.encrypt("ATTACK at Dawn!", "LeMoN"))
+                .isEqualTo("LXFOPV ef Rnhr!");
+        assertThat(VigenereCipher.decrypt("lxfopv ef rnhr", "lemon"))
+                .isEqualTo("attack at dawn");
+        assertThat(VigenereCipher
+                .beaufort("fortification")
+                .encrypt("defend the east wall of the castle"))
+                .isEqualTo("ckmpvc pvw piwu jogi ua pvw riwuuk");
+        assertThat(VigenereCipher.autokey("QUEENLY").encrypt("attack at dawn"))
+                .isEqualTo("qnxepv yt wtwp");
+        assertThat(VigenereCipher.autokey("QUEENLY").decrypt("qnxepv yt wtwp"))
+                .isEqualTo("attack at dawn");
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testInverse(final Cipher cipher)
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            final String text = RandomStringUtils.random(100);
+            assertThat(cipher.decrypt(cipher.encrypt(text))).isEqualTo(text);
+            assertThat(cipher.inverse().inverse()).isSameAs(cipher);
+        }
+    }
+
+    @Test
+    public void testBeaufortIsItsOwnInverse()
+    {
+        final Cipher cipher = VigenereCipher.beaufort("key");
+        final String text = RandomStringUtils.randomAlphabetic(1000);
+        assertThat(cipher.encrypt(cipher.encrypt(text))).isEqualTo(text);
+        assertThat(cipher.encrypt(text)).isEqualTo(cipher.decrypt(text));
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testBuffers(final Cipher cipher)
+    {
+        final String text = RandomStringUtils.random(1000);
+        final String expected = cipher.encrypt(text);
+
+        final char[] chars = text.toCharArray();
+        cipher.encrypt(chars, 0, chars, 0, chars.length);
+        assertThat(new String(chars)).isEqualTo(expected);
+
+        final StringBuilder builder = new StringBuilder();
+        cipher.encrypt(text, 0, text.length(), builder);
+        assertThat(builder.toString()).isEqualTo(expected);
+
+        final CharBuffer buffer = CharBuffer.allocate(text.length());
+        cipher.encrypt(CharBuffer.wrap(text), buffer);
+        assertThat(buffer.flip().toString()).isEqualTo(expected);
+
+        final String utf8 = new String(
+                text.getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8);
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(utf8.length() * 4);
+        bytes.put(utf8.getBytes(StandardCharsets.UTF_8)).flip();
+        cipher.encrypt(bytes);
+        bytes.flip();
+        assertThat(StandardCharsets.UTF_8.decode(bytes).toString())
+                .isEqualTo(cipher.encrypt(utf8));
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testSession(final Cipher cipher)
+    {
+        final String text = RandomStringUtils.random(1000);
+        final String expected = cipher.encrypt(text);
+
+        final Cipher session = cipher.session();
+        final StringBuilder encrypted = new StringBuilder();
+        for (int start = 0; start < text.length(); start += 7)
+        {
+            encrypted.append(session.encrypt(
+                    text.substring(start, Math.min(start + 7, text.length()))));
+        }
+        assertThat(encrypted.toString()).isEqualTo(expected);
+        assertThat(session.session()).isSameAs(session);
+
+        final Cipher decryption = cipher.session();
+        final char[] chars = expected.toCharArray();
+        decryption.decrypt(chars, 0, chars, 0, 500);
+        decryption.decrypt(chars, 500, chars, 500, 500);
+        assertThat(new String(chars)).isEqualTo(text);
+    }
+
+    @Test(dataProvider = "ciphersProvider")
+    public void testStreams(final Cipher cipher) throws IOException
+    {
+        final String text = RandomStringUtils.random(10_000);
+        try (Reader reader = new CipherReader(
+                new StringReader(text),
+                cipher,
+                3))
+        {
+            assertThat(read(reader)).isEqualTo(cipher.encrypt(text));
+        }
+
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new CipherInputStream(
+                new ByteArrayInputStream(bytes),
+                cipher.inverse(),
+                5))
+        {
+            final ByteBuffer decrypted = ByteBuffer.allocate(bytes.length);
+            for (int b = in.read(); b >= 0; b = in.read())
+            {
+                decrypted.put((byte) b);
+            }
+            assertThat(decrypted.array()).isEqualTo(cipher
+                    .decrypt(new String(bytes, StandardCharsets.UTF_8))
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testGreek()
+    {
+        final Cipher cipher = VigenereCipher.withKey("\u03B2\u03B3", RANGES);
+        assertThat(cipher.encrypt("\u03B1\u03B1 \u03C9\u03C9 \u0391z"))
+                .isEqualTo("\u03B2\u03B3 \u03B1\u03B2 \u0392b");
+    }
+
+    @Test
+    public void testPositionDependent()
+    {
+        final Cipher cipher = VigenereCipher.withKey("key");
+        assertThat(cipher.isPositionIndependent()).isFalse();
+        assertThat(cipher.session()).isNotSameAs(cipher.session());
+        assertThat(CaesarCipher.withShift(3).isPositionIndependent()).isTrue();
+        final Cipher autokey = VigenereCipher.autokey("key");
+        assertThat(autokey.parallel(0)).isSameAs(autokey);
+    }
+
+    @Test
+    public void testSubstitutes()
+    {
+        final Cipher cipher = VigenereCipher.withKey("a");
+        assertThat(cipher.substitutes('a')).isTrue();
+        assertThat(cipher.session().substitutes('Z')).isTrue();
+        assertThat(cipher.substitutes(',')).isFalse();
+        assertThat(cipher.andThen(AtbashCipher.instance()).substitutes(','))
+                .isFalse();
+        assertThat(CaesarCipher.withShift(3).substitutes('a')).isTrue();
+        assertThat(CaesarCipher.withShift(3).substitutes(',')).isFalse();
+        assertThat(AtbashCipher.inRanges(CodePointRanges.of('a', 'c'))
+                .substitutes('b'))
+                .isFalse();
+    }
+
+    @Test(dataProvider = "invalidKeysProvider",
+            expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidKey(final String key)
+    {
+        VigenereCipher.withKey(key);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSupplementaryRange()
+    {
+        VigenereCipher.withKey("a", CodePointRanges.of('a', 0x10000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOversizedTableau()
+    {
+        VigenereCipher.withKey("a", CodePointRanges.of('a', 0xD7FF));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testUtf8LengthChanging()
+    {
+        VigenereCipher
+                .withKey("p", CodePointRanges.of(0x70, 0x90))
+                .encrypt(ByteBuffer.wrap(new byte[] { 'a' }));
+    }
+
+    private static String read(final Reader reader) throws IOException
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int c = reader.read(); c >= 0; c = reader.read())
+        {
+            builder.append((char) c);
+        }
+        return builder.toString();
+    }
+
+    @DataProvider
+    private static Object[][] ciphersProvider()
+    {
+        return Stream
+                .of(
+                        VigenereCipher.withKey("lemon"),
+                        VigenereCipher.withKey("\u03B1Zz\u03A9", RANGES),
+                        VigenereCipher.beaufort("Fortification", RANGES),
+                        VigenereCipher.autokey("queenly"),
+                        VigenereCipher.autokey("\u03B1\u03B2q", RANGES))
+                .map(cipher -> new Object[] { cipher })
+                .toArray(Object[][]::new);
+    }
+
+    @DataProvider
+    private static Object[][] invalidKeysProvider()
+    {
+        return new Object[][] { { "" }, { "two words" }, { "caf\u00E9" } };
+    }
+}